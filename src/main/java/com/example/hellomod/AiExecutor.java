@@ -1,26 +1,53 @@
 package com.example.hellomod;
 
+import com.example.hellomod.build.BuildJob;
+import com.example.hellomod.build.BuildJobQueue;
+import com.example.hellomod.build.BuildOp;
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.block.Blocks;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * AiExecutor – перевіряє дії/кроки, компілює їх у BuildOp і ставить BuildJob у BuildJobQueue.
+ *
+ * Самі level.setBlock тут більше не робляться: черга виконує план шматками по тиках,
+ * щоб великий скрипт не підвісив сервер.
+ */
 public class AiExecutor {
 
     /**
      * Виконати ОДНУ дію AiAction.
      */
     public static void execute(ServerLevel level, net.minecraft.server.level.ServerPlayer player, AiAction action) {
+        List<BuildOp> ops = new ArrayList<>();
+        String doneMessage;
+
         switch (action.type) {
-            case BUILD_BOX -> buildBox(level, player, action.width, action.height, action.depth);
-            case CLEAR_AROUND -> clearAround(level, player, action.radius);
-            case PLACE_BLOCK -> placeBlock(level, player, action.block, action.offset);   // ← тут тепер є реалізація
-            default -> player.sendMessage(
-                    new net.minecraft.network.chat.TextComponent("Не зрозумів запит. Приклади: ai: build box 5 4 6 | ai: clear around 5"),
-                    player.getUUID()
-            );
+            case BUILD_BOX -> {
+                if (!buildBox(player, action.width, action.height, action.depth, ops)) return;
+                doneMessage = "AI виконав: BUILD_BOX " + action.width + "×" + action.height + "×" + action.depth;
+            }
+            case CLEAR_AROUND -> {
+                if (!clearAround(player, action.radius, ops)) return;
+                doneMessage = "AI виконав: CLEAR_AROUND radius=" + action.radius;
+            }
+            case PLACE_BLOCK -> {
+                placeBlock(player, action.block, action.offset, ops);
+                doneMessage = null;
+            }
+            default -> {
+                player.sendMessage(
+                        new net.minecraft.network.chat.TextComponent("Не зрозумів запит. Приклади: ai: build box 5 4 6 | ai: clear around 5"),
+                        player.getUUID()
+                );
+                return;
+            }
         }
+
+        BuildJobQueue.submit(player, new BuildJob(level, player, ops, doneMessage));
     }
 
     /**
@@ -35,19 +62,22 @@ public class AiExecutor {
             return;
         }
 
+        List<BuildOp> ops = new ArrayList<>();
         for (AiAction action : actions) {
-            execute(level, player, action);
+            switch (action.type) {
+                case BUILD_BOX -> buildBox(player, action.width, action.height, action.depth, ops);
+                case CLEAR_AROUND -> clearAround(player, action.radius, ops);
+                case PLACE_BLOCK -> placeBlock(player, action.block, action.offset, ops);
+                default -> { /* невідомі дії пропускаємо, як і раніше */ }
+            }
         }
 
-        player.sendMessage(
-                new net.minecraft.network.chat.TextComponent("AI виконав план. Кроків: " + actions.size()),
-                player.getUUID()
-        );
+        BuildJobQueue.submit(player, new BuildJob(level, player, ops,
+                "AI виконав план. Кроків: " + actions.size()));
     }
 
     /**
      * Виконання плану AiPlan/AiStep (твоя більш просунута система).
-     * Її я не чіпав — залишаємо як є.
      */
     public static void executePlan(ServerLevel level, net.minecraft.server.level.ServerPlayer player, AiPlan plan) {
         if (plan == null || plan.steps.isEmpty()) {
@@ -71,40 +101,28 @@ public class AiExecutor {
             return;
         }
 
+        List<BuildOp> ops = new ArrayList<>();
         for (AiStep step : plan.steps) {
             switch (step.type) {
-                case BOX -> buildBoxStep(level, player, origin, step);
-                case CLEAR_AROUND -> clearAroundStep(level, player, origin, step);
+                case BOX -> buildBoxStep(player, origin, step, ops);
+                case CLEAR_AROUND -> clearAroundStep(player, origin, step, ops);
             }
         }
 
-        player.sendMessage(
-                new net.minecraft.network.chat.TextComponent("AI план виконано. Кроків: " + plan.steps.size()),
-                player.getUUID()
-        );
+        BuildJobQueue.submit(player, new BuildJob(level, player, ops,
+                "AI план виконано. Кроків: " + plan.steps.size()));
     }
 
     // ───────────────────────────
-    // НИЖЧЕ ТВОЇ ВЖЕ ІСНУЮЧІ МЕТОДИ
+    // Компіляція дій у BuildOp (координати фіксуються зараз, поки гравець стоїть на місці)
     // ───────────────────────────
 
-    private static void buildBox(ServerLevel level, net.minecraft.server.level.ServerPlayer player, int w, int h, int d) {
-        if (!validSize(player, w, h, d)) return;
+    private static boolean buildBox(net.minecraft.server.level.ServerPlayer player, int w, int h, int d, List<BuildOp> ops) {
+        if (!validSize(player, w, h, d)) return false;
 
         BlockPos base = player.blockPosition().offset(2, 0, 2);
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                for (int z = 0; z < d; z++) {
-                    level.setBlock(base.offset(x, y, z), Blocks.STONE_BRICKS.defaultBlockState(), 3);
-                }
-            }
-        }
-
-        player.sendMessage(
-                new net.minecraft.network.chat.TextComponent("AI виконав: BUILD_BOX " + w + "×" + h + "×" + d),
-                player.getUUID()
-        );
+        ops.add(BuildOp.box(base, w, h, d, false, Blocks.STONE_BRICKS.defaultBlockState()));
+        return true;
     }
 
     private static boolean validSize(net.minecraft.server.level.ServerPlayer player, int w, int h, int d) {
@@ -118,40 +136,22 @@ public class AiExecutor {
         return true;
     }
 
-    private static void clearAround(ServerLevel level, net.minecraft.server.level.ServerPlayer player, int radius) {
+    private static boolean clearAround(net.minecraft.server.level.ServerPlayer player, int radius, List<BuildOp> ops) {
         if (radius < 1 || radius > 15) {
             player.sendMessage(
                     new net.minecraft.network.chat.TextComponent("Радіус має бути 1–15."),
                     player.getUUID()
             );
-            return;
+            return false;
         }
 
-        BlockPos c = player.blockPosition();
-        int y1 = c.getY();
-        int y2 = c.getY() + 10;
-
         // Безпечно: чистимо тільки "листя/траву/квіти" поки що — не чіпаємо камінь/будівлі.
-        for (int x = -radius; x <= radius; x++) {
-            for (int z = -radius; z <= radius; z++) {
-                for (int y = 0; y <= (y2 - y1); y++) {
-                    BlockPos p = c.offset(x, y, z);
-                    var state = level.getBlockState(p);
-                    if (state.is(Blocks.TALL_GRASS) || state.is(Blocks.GRASS) || state.is(Blocks.DANDELION) || state.is(Blocks.POPPY) || state.is(Blocks.OAK_LEAVES)) {
-                        level.setBlock(p, Blocks.AIR.defaultBlockState(), 3);
-                    }
-                }
-            }
-        }
-
-        player.sendMessage(
-                new net.minecraft.network.chat.TextComponent("AI виконав: CLEAR_AROUND radius=" + radius),
-                player.getUUID()
-        );
+        ops.add(BuildOp.clearVegetation(player.blockPosition(), radius, 10));
+        return true;
     }
 
-    private static void buildBoxStep(ServerLevel level, net.minecraft.server.level.ServerPlayer player,
-                                     net.minecraft.core.BlockPos origin, AiStep step) {
+    private static void buildBoxStep(net.minecraft.server.level.ServerPlayer player,
+                                     net.minecraft.core.BlockPos origin, AiStep step, List<BuildOp> ops) {
 
         int w = step.width, h = step.height, d = step.depth;
         if (w <= 0 || h <= 0 || d <= 0 || w > 50 || h > 50 || d > 50) {
@@ -165,21 +165,11 @@ public class AiExecutor {
         net.minecraft.core.BlockPos base = origin.offset(step.dx, step.dy, step.dz);
 
         // якщо hollow=true — будуємо тільки оболонку
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                for (int z = 0; z < d; z++) {
-
-                    boolean isShell = (x == 0 || x == w - 1 || y == 0 || y == h - 1 || z == 0 || z == d - 1);
-                    if (step.hollow && !isShell) continue;
-
-                    level.setBlock(base.offset(x, y, z), net.minecraft.world.level.block.Blocks.STONE_BRICKS.defaultBlockState(), 3);
-                }
-            }
-        }
+        ops.add(BuildOp.box(base, w, h, d, step.hollow, Blocks.STONE_BRICKS.defaultBlockState()));
     }
 
-    private static void clearAroundStep(ServerLevel level, net.minecraft.server.level.ServerPlayer player,
-                                        net.minecraft.core.BlockPos origin, AiStep step) {
+    private static void clearAroundStep(net.minecraft.server.level.ServerPlayer player,
+                                        net.minecraft.core.BlockPos origin, AiStep step, List<BuildOp> ops) {
 
         int radius = step.radius;
         if (radius < 1 || radius > 15) {
@@ -191,39 +181,22 @@ public class AiExecutor {
         }
 
         net.minecraft.core.BlockPos center = origin.offset(step.dx, step.dy, step.dz);
-        int y1 = center.getY();
-        int y2 = center.getY() + 10;
 
         // Твій “безпечний” варіант: чистимо тільки деякі блоки рослинності
-        for (int x = -radius; x <= radius; x++) {
-            for (int z = -radius; z <= radius; z++) {
-                for (int y = y1; y <= y2; y++) {
-                    net.minecraft.core.BlockPos p = new net.minecraft.core.BlockPos(center.getX() + x, y, center.getZ() + z);
-                    var state = level.getBlockState(p);
-
-                    if (state.is(net.minecraft.world.level.block.Blocks.TALL_GRASS)
-                            || state.is(net.minecraft.world.level.block.Blocks.GRASS)
-                            || state.is(net.minecraft.world.level.block.Blocks.DANDELION)
-                            || state.is(net.minecraft.world.level.block.Blocks.POPPY)
-                            || state.is(net.minecraft.world.level.block.Blocks.OAK_LEAVES)) {
-                        level.setBlock(p, net.minecraft.world.level.block.Blocks.AIR.defaultBlockState(), 3);
-                    }
-                }
-            }
-        }
+        ops.add(BuildOp.clearVegetation(center, radius, 10));
     }
 
     /**
-     * НОВИЙ МЕТОД: поставити один блок відносно позиції гравця.
+     * Поставити один блок відносно позиції гравця.
      */
-    private static void placeBlock(ServerLevel level,
-                                   net.minecraft.server.level.ServerPlayer player,
+    private static void placeBlock(net.minecraft.server.level.ServerPlayer player,
                                    net.minecraft.world.level.block.Block block,
-                                   BlockPos offset) {
+                                   BlockPos offset,
+                                   List<BuildOp> ops) {
 
         BlockPos base = player.blockPosition();
         BlockPos target = base.offset(offset.getX(), offset.getY(), offset.getZ());
 
-        level.setBlock(target, block.defaultBlockState(), 3);
+        ops.add(BuildOp.single(target, block.defaultBlockState()));
     }
 }
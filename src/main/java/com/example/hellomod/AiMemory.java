@@ -1,18 +1,20 @@
 package com.example.hellomod;
 
+import com.example.hellomod.dsl.DslProgram;
+
 import java.util.*;
 
 public class AiMemory {
 
-    private static final Map<UUID, List<String>> LAST_VALID_SCRIPTS = new HashMap<>();
+    // Зберігаємо вже скомпільовану програму — exec_last не парсить рядки вдруге (DslProgram незмінний)
+    private static final Map<UUID, DslProgram> LAST_VALID_SCRIPTS = new HashMap<>();
 
-    public static void saveLastValid(UUID playerId, List<String> lines) {
-        LAST_VALID_SCRIPTS.put(playerId, new ArrayList<>(lines));
+    public static void saveLastValid(UUID playerId, DslProgram program) {
+        LAST_VALID_SCRIPTS.put(playerId, program);
     }
 
-    public static List<String> getLastValid(UUID playerId) {
-        List<String> lines = LAST_VALID_SCRIPTS.get(playerId);
-        return (lines == null) ? null : new ArrayList<>(lines);
+    public static DslProgram getLastValid(UUID playerId) {
+        return LAST_VALID_SCRIPTS.get(playerId);
     }
 
     private AiMemory() {}
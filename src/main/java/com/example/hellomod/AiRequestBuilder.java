@@ -1,5 +1,6 @@
 package com.example.hellomod;
 
+import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 
@@ -35,6 +36,17 @@ public class AiRequestBuilder {
      * @return готовий промпт для ШІ
      */
     public static String buildRequest(ServerLevel level, ServerPlayer player, String userPrompt) {
+        BlockPos origin = player.blockPosition();
+        return buildRequest(snapshot(level, origin), origin, userPrompt);
+    }
+
+    /** Фаза 1 (server thread): копія області WORLD_SCAN навколо origin. */
+    public static WorldSnapshot snapshot(ServerLevel level, BlockPos origin) {
+        return WorldScanner.snapshot(level, origin, SCAN_RADIUS, SCAN_UP, SCAN_DOWN);
+    }
+
+    /** Фаза 2 (будь-який потік): той самий запит, але по готовому знімку. */
+    public static String buildRequest(WorldSnapshot scan, BlockPos origin, String userPrompt) {
         StringBuilder sb = new StringBuilder();
 
         // 1) Заголовок
@@ -42,7 +54,7 @@ public class AiRequestBuilder {
 
         // 2) WORLD_SCAN
         sb.append("### WORLD_SCAN").append("\n");
-        String worldScan = WorldScanner.scanAround(level, player, SCAN_RADIUS, SCAN_UP, SCAN_DOWN);
+        String worldScan = WorldScanner.render(scan, origin, SCAN_RADIUS, SCAN_UP, SCAN_DOWN);
         if (worldScan != null && !worldScan.isEmpty()) {
             sb.append(worldScan);
             if (!worldScan.endsWith("\n")) {
@@ -1,5 +1,7 @@
 package com.example.hellomod;
 
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.server.level.ServerPlayer;
 
@@ -27,18 +29,20 @@ public class AiScriptValidator {
     }
 
     public static Report validateLines(List<String> lines) {
-        Report r = new Report();
+        return validate(DslCompiler.compile(lines));
+    }
 
-        for (String raw : lines) {
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
-            if (line.startsWith("#") || line.startsWith("//")) continue;
-            if (line.endsWith(";")) line = line.substring(0, line.length() - 1).trim();
-            if (line.isEmpty()) continue;
+    /** Перевірка вже скомпільованої програми (без повторного парсингу рядків). */
+    public static Report validate(DslProgram program) {
+        Report r = new Report();
 
-            String[] parts = line.split("\\s+");
-            String cmd = parts[0].toUpperCase();
+        // Дозволеність блоків рахуємо раз на запис палітри, а не на кожен PLACE_BLOCK
+        boolean[] allowed = new boolean[program.paletteSize()];
+        for (int b = 0; b < allowed.length; b++) {
+            allowed[b] = AiPolicy.ALLOWED_BLOCKS.contains(program.paletteEntry(b));
+        }
 
+        for (int i = 0; i < program.size(); i++) {
             // Рахуємо дії (включно з невідомими, щоб не засипали сервер сміттям)
             r.totalActions++;
 
@@ -47,11 +51,11 @@ public class AiScriptValidator {
                 break;
             }
 
-            switch (cmd) {
-                case "PLACE_BLOCK" -> validatePlaceBlock(parts, line, r);
-                case "CLEAR_AROUND" -> validateClearAround(parts, line, r);
-                case "BUILD_BOX" -> validateBuildBox(parts, line, r);
-                default -> r.errors.add("Невідома команда: " + cmd + " у рядку: " + line);
+            switch (program.op(i)) {
+                case DslProgram.OP_PLACE_BLOCK -> validatePlaceBlock(program, i, allowed, r);
+                case DslProgram.OP_CLEAR_AROUND -> validateClearAround(program, i, r);
+                case DslProgram.OP_BUILD_BOX -> validateBuildBox(program, i, r);
+                default -> r.errors.add("Невідома команда: " + program.commandToken(i) + " у рядку: " + program.line(i));
             }
         }
 
@@ -68,34 +72,30 @@ public class AiScriptValidator {
         return r;
     }
 
-    private static void validatePlaceBlock(String[] parts, String line, Report r) {
+    private static void validatePlaceBlock(DslProgram program, int i, boolean[] allowed, Report r) {
         // PLACE_BLOCK block dx dy dz
-        if (parts.length != 5) {
-            r.errors.add("PLACE_BLOCK формат: PLACE_BLOCK block dx dy dz. Рядок: " + line);
+        if (program.status(i) == DslProgram.BAD_ARITY) {
+            r.errors.add("PLACE_BLOCK формат: PLACE_BLOCK block dx dy dz. Рядок: " + program.line(i));
             return;
         }
 
-        String rawBlockToken = parts[1].toLowerCase();
-        String normalizedBlock = normalizeBlockToken(rawBlockToken);
-
-        if (!AiPolicy.ALLOWED_BLOCKS.contains(normalizedBlock)) {
+        if (!allowed[program.arg(i, 0)]) {
             r.errors.add(
-                    "PLACE_BLOCK заборонений блок '" + rawBlockToken +
-                            "' (нормалізовано як '" + normalizedBlock + "'). Дозволені: " + AiPolicy.ALLOWED_BLOCKS
+                    "PLACE_BLOCK заборонений блок '" + program.rawBlockToken(i).toLowerCase() +
+                            "' (нормалізовано як '" + program.block(i) + "'). Дозволені: " + AiPolicy.ALLOWED_BLOCKS
             );
             return;
         }
 
-        int dx, dy, dz;
-        try {
-            dx = Integer.parseInt(parts[2]);
-            dy = Integer.parseInt(parts[3]);
-            dz = Integer.parseInt(parts[4]);
-        } catch (NumberFormatException e) {
-            r.errors.add("PLACE_BLOCK: dx/dy/dz мають бути числа. Рядок: " + line);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            r.errors.add("PLACE_BLOCK: dx/dy/dz мають бути числа. Рядок: " + program.line(i));
             return;
         }
 
+        int dx = program.arg(i, 1);
+        int dy = program.arg(i, 2);
+        int dz = program.arg(i, 3);
+
         r.placeBlocks++;
 
         r.maxAbsDx = Math.max(r.maxAbsDx, Math.abs(dx));
@@ -103,20 +103,19 @@ public class AiScriptValidator {
         r.maxAbsDz = Math.max(r.maxAbsDz, Math.abs(dz));
     }
 
-    private static void validateClearAround(String[] parts, String line, Report r) {
-        if (parts.length != 2) {
-            r.errors.add("CLEAR_AROUND формат: CLEAR_AROUND radius. Рядок: " + line);
+    private static void validateClearAround(DslProgram program, int i, Report r) {
+        if (program.status(i) == DslProgram.BAD_ARITY) {
+            r.errors.add("CLEAR_AROUND формат: CLEAR_AROUND radius. Рядок: " + program.line(i));
             return;
         }
 
-        int radius;
-        try {
-            radius = Integer.parseInt(parts[1]);
-        } catch (NumberFormatException e) {
-            r.errors.add("CLEAR_AROUND: radius має бути числом. Рядок: " + line);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            r.errors.add("CLEAR_AROUND: radius має бути числом. Рядок: " + program.line(i));
             return;
         }
 
+        int radius = program.arg(i, 0);
+
         r.clearAroundCount++;
         r.maxClearRadius = Math.max(r.maxClearRadius, radius);
 
@@ -125,22 +124,21 @@ public class AiScriptValidator {
         }
     }
 
-    private static void validateBuildBox(String[] parts, String line, Report r) {
-        if (parts.length != 4) {
-            r.errors.add("BUILD_BOX формат: BUILD_BOX w h d. Рядок: " + line);
+    private static void validateBuildBox(DslProgram program, int i, Report r) {
+        if (program.status(i) == DslProgram.BAD_ARITY) {
+            r.errors.add("BUILD_BOX формат: BUILD_BOX w h d. Рядок: " + program.line(i));
             return;
         }
 
-        int w, h, d;
-        try {
-            w = Integer.parseInt(parts[1]);
-            h = Integer.parseInt(parts[2]);
-            d = Integer.parseInt(parts[3]);
-        } catch (NumberFormatException e) {
-            r.errors.add("BUILD_BOX: w/h/d мають бути числа. Рядок: " + line);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            r.errors.add("BUILD_BOX: w/h/d мають бути числа. Рядок: " + program.line(i));
             return;
         }
 
+        int w = program.arg(i, 0);
+        int h = program.arg(i, 1);
+        int d = program.arg(i, 2);
+
         r.buildBoxCount++;
 
         if (w < 1 || h < 1 || d < 1
@@ -153,23 +151,6 @@ public class AiScriptValidator {
         }
     }
 
-    /**
-     * Нормалізує токен блока з/без namespace для перевірки політики.
-     *
-     * Приклади:
-     *   "stone" -> "stone"
-     *   "minecraft:oak_fence" -> "oak_fence"
-     *   "my_datapack:custom_block" -> "custom_block"
-     */
-    private static String normalizeBlockToken(String token) {
-        String name = token.toLowerCase();
-        int idx = name.indexOf(':');
-        if (idx >= 0 && idx < name.length() - 1) {
-            name = name.substring(idx + 1);  // відрізаємо "minecraft:" або інший namespace
-        }
-        return name;
-    }
-
     public static void sendReportToPlayer(ServerPlayer player, Report r) {
         // Короткий summary
         player.sendMessage(new TextComponent(
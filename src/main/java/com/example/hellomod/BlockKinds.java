@@ -0,0 +1,123 @@
+package com.example.hellomod;
+
+import net.minecraft.tags.BlockTags;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.Material;
+
+/**
+ * Таблиця "id стану (Block.BLOCK_STATE_REGISTRY) -> біти категорій" для гарячих циклів:
+ * замість ланцюжків state.is(...) / endsWith по імені — одне читання з масиву.
+ *
+ * Будується на старті сервера (HelloMod.onServerStarted) і заново після перезавантаження тегів
+ * (TagsUpdatedEvent): LOG / LEAVES / PLANKS беруться з тегів, тож і модові дерева/дошки сюди потрапляють.
+ * Таблиця після побудови незмінна і публікується через volatile — читати можна з будь-якого потоку.
+ *
+ * of(state) — це ще й пошук id в IdMapper (identity hash) на кожен виклик. Глобальних id з палітри секції
+ * в 1.18 не дістати (PalettedContainer.Data приватний), тож гарячі цикли беруть Lookup: він пам'ятає
+ * останній стан і його id, а сусідні клітинки майже завжди однакові (повітря, камінь, вода) —
+ * тоді це одне порівняння посилань і одне читання з масиву.
+ */
+public final class BlockKinds {
+
+    public static final int AIR = 1;
+    public static final int WATER = 1 << 1;           // саме блок води
+    public static final int WATER_MATERIAL = 1 << 2;  // Material.WATER (вода, бульбашкові стовпи)
+    public static final int LAVA = 1 << 3;
+    public static final int LOG = 1 << 4;             // #logs (колоди, wood, stripped)
+    public static final int LEAVES = 1 << 5;          // #leaves
+    public static final int SAND = 1 << 6;
+    public static final int DIRT = 1 << 7;
+    public static final int SOLID = 1 << 8;           // камінь / бруківка / кам'яна цегла
+    public static final int PLANKS = 1 << 9;          // #planks
+    public static final int VEGETATION_CLEARABLE = 1 << 10; // що безпечно зносить CLEAR_AROUND
+
+    public static final int TREE = LOG | LEAVES;
+
+    private static volatile int[] table;
+
+    private BlockKinds() {}
+
+    /** Біти категорій стану (0 — нічого з переліченого). Пошук id на кожен виклик — для циклів є Lookup. */
+    public static int of(BlockState state) {
+        return ofId(Block.BLOCK_STATE_REGISTRY.getId(state));
+    }
+
+    public static int ofId(int id) {
+        int[] t = table();
+        return (id < 0 || id >= t.length) ? 0 : t[id];
+    }
+
+    /** Чи має стан хоч одну з категорій kinds. */
+    public static boolean is(BlockState state, int kinds) {
+        return (of(state) & kinds) != 0;
+    }
+
+    /**
+     * Id і категорії стану з пам'яттю на останній стан. Не потокобезпечний: один на цикл / потік / BuildOp.
+     */
+    public static final class Lookup {
+        private BlockState last;
+        private int lastId = -1;
+
+        /** Id стану в BLOCK_STATE_REGISTRY (-1 — невідомий). */
+        public int id(BlockState state) {
+            if (state != last) {
+                last = state;
+                lastId = Block.BLOCK_STATE_REGISTRY.getId(state);
+            }
+            return lastId;
+        }
+
+        public int of(BlockState state) {
+            return ofId(id(state));
+        }
+
+        public boolean is(BlockState state, int kinds) {
+            return (of(state) & kinds) != 0;
+        }
+    }
+
+    /** Уся таблиця для циклів по id (не змінювати; після rebuild() — новий масив). */
+    public static int[] table() {
+        int[] t = table;
+        if (t == null) {
+            rebuild();
+            t = table;
+        }
+        return t;
+    }
+
+    /** Перебудувати таблицю (старт сервера, перезавантаження тегів). */
+    public static void rebuild() {
+        int size = Block.BLOCK_STATE_REGISTRY.size();
+        int[] t = new int[size];
+        for (int id = 0; id < size; id++) {
+            BlockState s = Block.BLOCK_STATE_REGISTRY.byId(id);
+            t[id] = (s == null) ? 0 : classify(s);
+        }
+        table = t;
+    }
+
+    private static int classify(BlockState s) {
+        int k = 0;
+        if (s.isAir()) k |= AIR;
+        if (s.is(Blocks.WATER)) k |= WATER;
+        if (s.getMaterial() == Material.WATER) k |= WATER_MATERIAL;
+        if (s.is(Blocks.LAVA)) k |= LAVA;
+        if (s.is(BlockTags.LOGS)) k |= LOG;
+        if (s.is(BlockTags.LEAVES)) k |= LEAVES;
+        if (s.is(Blocks.SAND) || s.is(Blocks.RED_SAND)) k |= SAND;
+        if (s.is(Blocks.DIRT) || s.is(Blocks.COARSE_DIRT) || s.is(Blocks.GRASS_BLOCK)) k |= DIRT;
+        if (s.is(Blocks.STONE) || s.is(Blocks.COBBLESTONE) || s.is(Blocks.STONE_BRICKS)) k |= SOLID;
+        if (s.is(BlockTags.PLANKS)) k |= PLANKS;
+
+        // Безпечно: лише "листя/траву/квіти" — не чіпаємо камінь/будівлі
+        if (s.is(Blocks.TALL_GRASS) || s.is(Blocks.GRASS) || s.is(Blocks.DANDELION)
+                || s.is(Blocks.POPPY) || s.is(Blocks.OAK_LEAVES)) {
+            k |= VEGETATION_CLEARABLE;
+        }
+        return k;
+    }
+}
@@ -1,7 +1,14 @@
 package com.example.hellomod;
 
+import com.example.hellomod.build.BuildJobQueue;
+import com.example.hellomod.llm.LlmBackendPool;
+import com.example.hellomod.llm.LlmClientProvider;
+import com.example.hellomod.llm.LlmRequestScheduler;
+import com.example.hellomod.llm.LlmResponseCache;
+import com.example.hellomod.llm.LlmWarmup;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.TextComponent;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.block.Blocks;
@@ -15,9 +22,18 @@ import java.util.UUID;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.ServerChatEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.ExplosionEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.server.ServerLifecycleHooks;
 
 @Mod("hellomod")
 public class HelloMod {
@@ -46,6 +62,86 @@ public class HelloMod {
         ModCommands.register(event.getDispatcher());
     }
 
+    // ─────────────────────────────────────────
+    // Подія: тик сервера — крутимо чергу будівництва
+    // ─────────────────────────────────────────
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        BuildJobQueue.tick();
+    }
+
+    // ─────────────────────────────────────────
+    // Подія: сервер піднявся — прогріваємо модель, поки ніхто не чекає
+    // ─────────────────────────────────────────
+    @SubscribeEvent
+    public void onServerStarted(ServerStartedEvent event) {
+        BlockKinds.rebuild();
+        LlmWarmup.start();
+    }
+
+    // ─────────────────────────────────────────
+    // Подія: теги перезавантажились (/reload, датапаки) — перебудовуємо BlockKinds
+    // ─────────────────────────────────────────
+    @SubscribeEvent
+    public void onTagsUpdated(TagsUpdatedEvent event) {
+        BlockKinds.rebuild();
+
+        // Подія буває й на клієнтському потоці — кеш зведень чистимо лише на server thread
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server != null) server.execute(TerrainSummaryCache::clear);
+    }
+
+    @SubscribeEvent
+    public void onServerStopping(ServerStoppingEvent event) {
+        LlmWarmup.stop();
+        BuildJobQueue.clear();
+        LlmRequestScheduler.clear();
+        LlmResponseCache.save();
+        LlmBackendPool.shutdown();
+        LlmClientProvider.shutdown();
+        TerrainSummaryCache.clear();
+    }
+
+    // ─────────────────────────────────────────
+    // Події світу: зміни блоків / вибухи / вивантаження — скидаємо зведення чанків (TerrainSummaryCache)
+    // ─────────────────────────────────────────
+    @SubscribeEvent
+    public void onBlockBreak(BlockEvent.BreakEvent event) {
+        TerrainSummaryCache.invalidate(event.getWorld(), event.getPos());
+    }
+
+    @SubscribeEvent
+    public void onBlockPlace(BlockEvent.EntityPlaceEvent event) {
+        TerrainSummaryCache.invalidate(event.getWorld(), event.getPos());
+    }
+
+    @SubscribeEvent
+    public void onFluidPlace(BlockEvent.FluidPlaceBlockEvent event) {
+        TerrainSummaryCache.invalidate(event.getWorld(), event.getPos());
+    }
+
+    // Будь-який setBlock з оновленням сусідів: команди, ScriptRunner, ріст, поршні
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        TerrainSummaryCache.invalidateIfAffects(event.getWorld(), event.getPos());
+    }
+
+    @SubscribeEvent
+    public void onExplosion(ExplosionEvent.Detonate event) {
+        TerrainSummaryCache.invalidate(event.getWorld(), event.getAffectedBlocks());
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        TerrainSummaryCache.invalidate(event.getWorld(), event.getChunk().getPos().x, event.getChunk().getPos().z);
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        TerrainSummaryCache.unload(event.getWorld());
+    }
+
     // ─────────────────────────────────────────
     // Подія: гравець зайшов у світ
     // ─────────────────────────────────────────
@@ -55,6 +151,16 @@ public class HelloMod {
                 new TextComponent("Привіт Minecraft від мого мода!"),
                 event.getPlayer().getUUID()
         );
+        LlmWarmup.playerJoined();
+    }
+
+    // ─────────────────────────────────────────
+    // Подія: гравець вийшов — його LLM-запити в черзі вже нікому не потрібні
+    // ─────────────────────────────────────────
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        LlmRequestScheduler.cancel(event.getPlayer().getUUID());
+        LlmWarmup.playerLeft();
     }
 
     // ─────────────────────────────────────────
@@ -71,31 +177,34 @@ public class HelloMod {
             // Якщо гравець пише END або EXEC — завершуємо режим
             if (msg.equalsIgnoreCase("END") || msg.equalsIgnoreCase("EXEC")) {
                 List<String> lines = SCRIPT_BUFFERS.remove(id);
-
-                ServerLevel level = (ServerLevel) player.getLevel();
-
-                // 1) DRY-RUN
-                AiScriptValidator.Report report = AiScriptValidator.validateLines(lines);
-                AiScriptValidator.sendReportToPlayer(player, report);
-
-                // 2) Якщо все OK — зберігаємо як "останній валідний скрипт"
-                if (report.ok()) {
-                    AiMemory.saveLastValid(id, lines);
-                    player.sendMessage(
-                            new TextComponent("Збережено як останній валідний скрипт. Виконати: /ai exec_last"),
-                            player.getUUID()
-                    );
-                }
-
-                // 3) Якщо EXEC і OK — виконуємо
-                if (msg.equalsIgnoreCase("EXEC") && report.ok()) {
-                    ScriptRunner.run(level, player, lines);
-                } else if (msg.equalsIgnoreCase("EXEC")) {
-                    player.sendMessage(
-                            new TextComponent("Виконання скасовано через помилки у DRY-RUN."),
-                            player.getUUID()
-                    );
-                }
+                final boolean exec = msg.equalsIgnoreCase("EXEC");
+
+                // compile + DRY-RUN — на воркері; server thread лише звітує і будує
+                ScriptPipeline.submit(player.getLevel().getServer(), id, "ai run",
+                        () -> ScriptPipeline.prepare(lines),
+                        (p, prepared) -> {
+                            // 1) DRY-RUN
+                            AiScriptValidator.sendReportToPlayer(p, prepared.report);
+
+                            // 2) Якщо все OK — зберігаємо як "останній валідний скрипт"
+                            if (prepared.ok()) {
+                                AiMemory.saveLastValid(p.getUUID(), prepared.program);
+                                p.sendMessage(
+                                        new TextComponent("Збережено як останній валідний скрипт. Виконати: /ai exec_last"),
+                                        p.getUUID()
+                                );
+                            }
+
+                            // 3) Якщо EXEC і OK — виконуємо
+                            if (exec && prepared.ok()) {
+                                ScriptRunner.run(p.getLevel(), p, prepared.program);
+                            } else if (exec) {
+                                p.sendMessage(
+                                        new TextComponent("Виконання скасовано через помилки у DRY-RUN."),
+                                        p.getUUID()
+                                );
+                            }
+                        });
 
                 event.setCanceled(true);
                 return;
@@ -1,6 +1,10 @@
 package com.example.hellomod;
 
 import com.example.hellomod.ai.local.AiBuildLocalService;
+import com.example.hellomod.build.BuildJob;
+import com.example.hellomod.build.BuildJobQueue;
+import com.example.hellomod.dsl.DslProgram;
+import com.example.hellomod.llm.LlmBackendPool;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import net.minecraft.commands.CommandSourceStack;
@@ -117,27 +121,92 @@ public class ModCommands {
                         .then(Commands.literal("exec_last")
                                 .executes(ctx -> {
                                     ServerPlayer player = ctx.getSource().getPlayerOrException();
-                                    ServerLevel level = ctx.getSource().getLevel();
-
-                                    List<String> lines = AiMemory.getLastValid(player.getUUID());
-                                    if (lines == null || lines.isEmpty()) {
+                                    DslProgram program = AiMemory.getLastValid(player.getUUID());
+                                    if (program == null || program.isEmpty()) {
                                         player.sendMessage(new TextComponent(
                                                 "Немає збереженого валідного скрипта. Спочатку зроби ai run: ... END або EXEC."
                                         ), player.getUUID());
                                         return 1;
                                     }
 
-                                    AiScriptValidator.Report report = AiScriptValidator.validateLines(lines);
-                                    AiScriptValidator.sendReportToPlayer(player, report);
+                                    // Повторна валідація — на воркері, будівництво — на server thread
+                                    ScriptPipeline.submit(ctx.getSource().getServer(), player.getUUID(), "exec_last",
+                                            () -> ScriptPipeline.prepare(program),
+                                            (p, prepared) -> {
+                                                AiScriptValidator.sendReportToPlayer(p, prepared.report);
+
+                                                if (!prepared.ok()) {
+                                                    p.sendMessage(new TextComponent(
+                                                            "exec_last: скрипт більше не проходить валідацію (виконання скасовано)."
+                                                    ), p.getUUID());
+                                                    return;
+                                                }
+
+                                                ScriptRunner.run(p.getLevel(), p, prepared.program);
+                                            });
+                                    return 1;
+                                })
+                        )
 
-                                    if (!report.ok()) {
+                        // /ai jobs — прогрес будівництва гравця
+                        .then(Commands.literal("jobs")
+                                .executes(ctx -> {
+                                    ServerPlayer player = ctx.getSource().getPlayerOrException();
+
+                                    List<BuildJob> jobs = BuildJobQueue.jobsOf(player.getUUID());
+                                    if (jobs.isEmpty()) {
                                         player.sendMessage(new TextComponent(
-                                                "exec_last: скрипт більше не проходить валідацію (виконання скасовано)."
+                                                "Немає активних будівельних завдань (всього в черзі: " + BuildJobQueue.size() + ")."
                                         ), player.getUUID());
                                         return 1;
                                     }
 
-                                    ScriptRunner.run(level, player, lines);
+                                    for (int i = 0; i < jobs.size(); i++) {
+                                        BuildJob job = jobs.get(i);
+                                        player.sendMessage(new TextComponent(
+                                                (i + 1) + ") " + job.progressPercent() + "% ("
+                                                        + job.processedCells() + "/" + job.totalCells()
+                                                        + "), змінено: " + job.writes()
+                                                        + ", без змін: " + job.skipped()
+                                        ), player.getUUID());
+                                    }
+                                    return 1;
+                                })
+                        )
+
+                        // /ai cancel — скасувати своє будівництво
+                        .then(Commands.literal("cancel")
+                                .executes(ctx -> {
+                                    ServerPlayer player = ctx.getSource().getPlayerOrException();
+
+                                    int removed = BuildJobQueue.cancel(player.getUUID());
+                                    player.sendMessage(new TextComponent(
+                                            "Скасовано будівельних завдань: " + removed
+                                    ), player.getUUID());
+                                    return 1;
+                                })
+                        )
+
+                        // /ai llm_status — стан локального LLM (конфіг, кеш)
+                        .then(Commands.literal("llm_status")
+                                .executes(ctx -> {
+                                    ServerPlayer player = ctx.getSource().getPlayerOrException();
+
+                                    for (String line : AiBuildLocalService.statusLines()) {
+                                        player.sendMessage(new TextComponent(line), player.getUUID());
+                                    }
+                                    return 1;
+                                })
+                        )
+
+                        // /ai llm_breaker — стан circuit breaker по бекендах
+                        .then(Commands.literal("llm_breaker")
+                                .executes(ctx -> {
+                                    ServerPlayer player = ctx.getSource().getPlayerOrException();
+
+                                    for (String line : LlmBackendPool.get().breakerStatus()) {
+                                        player.sendMessage(new TextComponent(line), player.getUUID());
+                                    }
                                     return 1;
                                 })
                         )
@@ -168,15 +237,22 @@ public class ModCommands {
 
                                     String intent = StringArgumentType.getString(ctx, "intent");
 
-                                    String request = AiRequestBuilder.buildRequest(level, player, intent);
-                                    System.out.println(request);
-
-                                    player.sendMessage(
-                                            new TextComponent(
-                                                    "AI request згенеровано. Відкрий консоль сервера/IDE та скопіюй блок між === AI REQUEST START === і === AI REQUEST END ===."
-                                            ),
-                                            player.getUUID()
-                                    );
+                                    // Копія світу — тут, скан і текст запиту — на воркері
+                                    BlockPos origin = player.blockPosition();
+                                    WorldSnapshot scan = AiRequestBuilder.snapshot(level, origin);
+
+                                    ScriptPipeline.submit(level.getServer(), player.getUUID(), "ai_build",
+                                            () -> AiRequestBuilder.buildRequest(scan, origin, intent),
+                                            (p, request) -> {
+                                                System.out.println(request);
+
+                                                p.sendMessage(
+                                                        new TextComponent(
+                                                                "AI request згенеровано. Відкрий консоль сервера/IDE та скопіюй блок між === AI REQUEST START === і === AI REQUEST END ===."
+                                                        ),
+                                                        p.getUUID()
+                                                );
+                                            });
 
                                     return 1;
                                 })
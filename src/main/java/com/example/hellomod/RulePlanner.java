@@ -8,9 +8,11 @@ import net.minecraft.world.phys.Vec3;
 
 public class RulePlanner {
 
+    public static final int DEFAULT_PLATFORM_SIZE = 7;
+
     public static String plan(ServerLevel level, ServerPlayer player, String thing) {
         return switch (thing) {
-            case "platform" -> planPlatform(level, player);
+            case "platform" -> planPlatform(DEFAULT_PLATFORM_SIZE);
             case "bridge" -> planBridge(level, player);
             default -> """
                 # Unknown build type
@@ -20,21 +22,23 @@ public class RulePlanner {
         };
     }
 
-    // 1) Платформа 7x7 під ногами (вирівнює та робить настил)
-    private static String planPlatform(ServerLevel level, ServerPlayer player) {
-        int size = 7;
-        int half = size / 2;
+    // 1) Платформа size x size під ногами (вирівнює та робить настил)
+    public static String planPlatform(int size) {
+        return planPlatform(size, size);
+    }
 
+    // Платформа width x depth (по X / по Z) з гравцем у центрі; парна сторона — на клітинку більше в "+"
+    public static String planPlatform(int width, int depth) {
         StringBuilder sb = new StringBuilder();
-        sb.append("# PLATFORM ").append(size).append("x").append(size).append("\n");
+        sb.append("# PLATFORM ").append(width).append("x").append(depth).append("\n");
 
         // Очистимо рослинність навколо, щоб було видно
-        sb.append("CLEAR_AROUND 6\n");
+        sb.append("CLEAR_AROUND ").append(Math.max(width, depth) / 2 + 3).append("\n");
 
         // Ставимо дошки на рівні ніг гравця (y)
         // (простий варіант: будуємо на поточному Y гравця)
-        for (int dx = -half; dx <= half; dx++) {
-            for (int dz = -half; dz <= half; dz++) {
+        for (int dx = -(width - 1) / 2; dx <= width / 2; dx++) {
+            for (int dz = -(depth - 1) / 2; dz <= depth / 2; dz++) {
                 sb.append("PLACE_BLOCK oak_planks ").append(dx).append(" 0 ").append(dz).append("\n");
             }
         }
@@ -42,7 +46,7 @@ public class RulePlanner {
     }
 
     // 2) Міст: шукаємо воду в напрямку погляду гравця і кладемо настил через неї
-    private static String planBridge(ServerLevel level, ServerPlayer player) {
+    public static String planBridge(ServerLevel level, ServerPlayer player) {
         BlockPos origin = player.blockPosition();
 
         // 1) Визначаємо напрямок "вперед" за поглядом гравця (лише по X/Z, до найближчої з 4 сторін)
@@ -68,10 +72,14 @@ public class RulePlanner {
         int waterStart = -1;
         int waterEnd = -1;
 
+        // Вода під ногами (y-1) — перевіряємо сам блок, а не heightmap колонки: вода під листям,
+        // лататтям чи навісом у heightmap-і не "зверху". Читаємо прямо з секції чанка (TerrainQuery.stateAt).
+        TerrainQuery terrain = TerrainQuery.of(level);
+        int waterY = origin.getY() - 1;
+
         // 2) Шукаємо перший блок води в напрямку погляду (трохи нижче за ноги гравця)
         for (int f = 1; f <= maxForward; f++) {
-            BlockPos p = origin.offset(fx * f, -1, fz * f);
-            if (level.getBlockState(p).is(Blocks.WATER)) {
+            if (terrain.stateAt(origin.getX() + fx * f, waterY, origin.getZ() + fz * f).is(Blocks.WATER)) {
                 waterStart = f;
                 break;
             }
@@ -85,8 +93,7 @@ public class RulePlanner {
 
         // 3) Знаходимо, де вода закінчується
         for (int f = waterStart; f <= maxForward; f++) {
-            BlockPos p = origin.offset(fx * f, -1, fz * f);
-            if (!level.getBlockState(p).is(Blocks.WATER)) {
+            if (!terrain.stateAt(origin.getX() + fx * f, waterY, origin.getZ() + fz * f).is(Blocks.WATER)) {
                 waterEnd = f - 1;
                 break;
             }
@@ -0,0 +1,103 @@
+package com.example.hellomod;
+
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * ScriptPipeline – підготовка скриптів поза server thread.
+ *
+ * parse/compile/validate/estimate крутяться на пулі воркерів, а server thread отримує
+ * вже готовий результат і робить тільки те, що мусить: повідомлення гравцю + зміну світу.
+ *
+ * Воркери не чіпають світ і гравця — лише рядки/DslProgram. Гравця шукаємо заново по UUID
+ * вже на server thread (міг вийти, поки скрипт готувався).
+ */
+public final class ScriptPipeline {
+    private static final Logger LOGGER = LogManager.getLogger(ScriptPipeline.class);
+
+    // Кількість воркерів (-Dai.dsl.workers=N)
+    private static final int WORKERS = Math.max(1, Integer.getInteger("ai.dsl.workers",
+            Math.min(2, Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread t = new Thread(r, "hellomod-dsl-" + THREAD_ID.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Результат підготовки: скомпільована програма + звіт DRY-RUN. */
+    public static final class Prepared {
+        public final DslProgram program;
+        public final AiScriptValidator.Report report;
+
+        private Prepared(DslProgram program, AiScriptValidator.Report report) {
+            this.program = program;
+            this.report = report;
+        }
+
+        public boolean ok() {
+            return report.ok();
+        }
+    }
+
+    private ScriptPipeline() {}
+
+    /** compile + validate (викликати з воркера). */
+    public static Prepared prepare(List<String> lines) {
+        return prepare(DslCompiler.compile(lines));
+    }
+
+    /** validate вже скомпільованої програми (викликати з воркера). */
+    public static Prepared prepare(DslProgram program) {
+        return new Prepared(program, AiScriptValidator.validate(program));
+    }
+
+    /**
+     * work() виконується на воркері, apply(player, result) — на server thread.
+     * Якщо гравець уже вийшов — результат просто відкидаємо.
+     */
+    public static <T> void submit(MinecraftServer server, UUID playerId, String label,
+                                  Supplier<T> work, BiConsumer<ServerPlayer, T> apply) {
+        EXECUTOR.execute(() -> {
+            final T result;
+            try {
+                result = work.get();
+            } catch (Exception e) {
+                LOGGER.error("[{}] script preparation failed", label, e);
+                server.execute(() -> {
+                    ServerPlayer p = server.getPlayerList().getPlayer(playerId);
+                    if (p == null) return;
+                    p.sendMessage(new TextComponent(label + ": не вдалося підготувати скрипт: " + safeMsg(e)), p.getUUID());
+                });
+                return;
+            }
+
+            server.execute(() -> {
+                ServerPlayer p = server.getPlayerList().getPlayer(playerId);
+                if (p == null) return;
+                apply.accept(p, result);
+            });
+        });
+    }
+
+    private static String safeMsg(Exception e) {
+        String m = (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
+        if (m.length() > 220) m = m.substring(0, 220) + "...";
+        return m;
+    }
+}
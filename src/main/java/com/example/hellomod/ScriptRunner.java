@@ -1,5 +1,7 @@
 package com.example.hellomod;
 
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.server.level.ServerLevel;
@@ -83,37 +85,29 @@ public class ScriptRunner {
      * Головний метод запуску скрипта з уже готового списку рядків.
      */
     public static void run(ServerLevel level, ServerPlayer player, List<String> lines) {
+        run(level, player, DslCompiler.compile(lines));
+    }
 
-        List<AiAction> actions = new ArrayList<>();
+    /**
+     * Запуск уже скомпільованої програми (рядки не парсяться вдруге).
+     */
+    public static void run(ServerLevel level, ServerPlayer player, DslProgram program) {
 
-        for (String rawLine : lines) {
-            String line = rawLine.trim();
-            if (line.isEmpty()) continue;          // пропускаємо пусті
-            if (line.startsWith("#")) continue;    // # коментар
-            if (line.startsWith("//")) continue;   // // коментар
+        List<AiAction> actions = new ArrayList<>();
 
-            // Дозволимо ставити ; в кінці рядка (LLM іноді любить таке)
-            if (line.endsWith(";")) {
-                line = line.substring(0, line.length() - 1).trim();
-                if (line.isEmpty()) continue;
-            }
+        // Блоки палітри резолвимо один раз на запис, а не на кожен PLACE_BLOCK
+        Block[] blocks = new Block[program.paletteSize()];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = parseBlock(program.paletteEntry(b));
+        }
 
-            String[] parts = line.split("\\s+");
-            String cmd = parts[0].toUpperCase(Locale.ROOT);
-
-            try {
-                switch (cmd) {
-                    case "PLACE_BLOCK" -> parsePlaceBlock(parts, line, actions, player);
-                    case "CLEAR_AROUND" -> parseClearAround(parts, line, actions, player);
-                    case "BUILD_BOX" -> parseBuildBox(parts, line, actions, player);
-                    default -> player.sendMessage(
-                            new TextComponent("Невідома команда у скрипті: '" + cmd + "'. Рядок: " + line),
-                            player.getUUID()
-                    );
-                }
-            } catch (NumberFormatException e) {
-                player.sendMessage(
-                        new TextComponent("Помилка числа в рядку скрипта: " + line),
+        for (int i = 0; i < program.size(); i++) {
+            switch (program.op(i)) {
+                case DslProgram.OP_PLACE_BLOCK -> parsePlaceBlock(program, i, blocks, actions, player);
+                case DslProgram.OP_CLEAR_AROUND -> parseClearAround(program, i, actions, player);
+                case DslProgram.OP_BUILD_BOX -> parseBuildBox(program, i, actions, player);
+                default -> player.sendMessage(
+                        new TextComponent("Невідома команда у скрипті: '" + program.commandToken(i) + "'. Рядок: " + program.line(i)),
                         player.getUUID()
                 );
             }
@@ -141,59 +135,69 @@ public class ScriptRunner {
     }
 
     // ─────────────────────────────────────
-    // Парсери окремих команд
+    // Перетворення інструкцій у AiAction
     // ─────────────────────────────────────
 
-    private static void parsePlaceBlock(String[] parts,
-                                        String line,
+    private static void parsePlaceBlock(DslProgram program,
+                                        int i,
+                                        Block[] blocks,
                                         List<AiAction> actions,
                                         ServerPlayer player) {
 
         // Формат: PLACE_BLOCK blockName dx dy dz
-        if (parts.length != 5) {
+        if (program.status(i) == DslProgram.BAD_ARITY) {
             player.sendMessage(
-                    new TextComponent("PLACE_BLOCK формат: PLACE_BLOCK block dx dy dz. Пропускаю: " + line),
+                    new TextComponent("PLACE_BLOCK формат: PLACE_BLOCK block dx dy dz. Пропускаю: " + program.line(i)),
                     player.getUUID()
             );
             return;
         }
 
-        String blockToken = parts[1]; // залишаємо як є, parseBlock сам нормалізує
-        Block block = parseBlock(blockToken);
+        Block block = blocks[program.arg(i, 0)];
         if (block == null) {
             player.sendMessage(
-                    new TextComponent("Невідомий блок '" + blockToken + "' у рядку: " + line),
+                    new TextComponent("Невідомий блок '" + program.rawBlockToken(i) + "' у рядку: " + program.line(i)),
                     player.getUUID()
             );
             return;
         }
 
-        int dx = Integer.parseInt(parts[2]);
-        int dy = Integer.parseInt(parts[3]);
-        int dz = Integer.parseInt(parts[4]);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            numberError(program, i, player);
+            return;
+        }
+
+        int dx = program.arg(i, 1);
+        int dy = program.arg(i, 2);
+        int dz = program.arg(i, 3);
 
         actions.add(AiAction.placeBlock(block, new BlockPos(dx, dy, dz)));
     }
 
-    private static void parseClearAround(String[] parts,
-                                         String line,
+    private static void parseClearAround(DslProgram program,
+                                         int i,
                                          List<AiAction> actions,
                                          ServerPlayer player) {
 
         // Формат: CLEAR_AROUND radius
-        if (parts.length != 2) {
+        if (program.status(i) == DslProgram.BAD_ARITY) {
             player.sendMessage(
-                    new TextComponent("CLEAR_AROUND формат: CLEAR_AROUND radius. Пропускаю: " + line),
+                    new TextComponent("CLEAR_AROUND формат: CLEAR_AROUND radius. Пропускаю: " + program.line(i)),
                     player.getUUID()
             );
             return;
         }
 
-        int radius = Integer.parseInt(parts[1]);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            numberError(program, i, player);
+            return;
+        }
+
+        int radius = program.arg(i, 0);
         if (radius < 1 || radius > MAX_RADIUS) {
             player.sendMessage(
                     new TextComponent("CLEAR_AROUND: радіус має бути 1–" + MAX_RADIUS +
-                            ". Пропускаю: " + line),
+                            ". Пропускаю: " + program.line(i)),
                     player.getUUID()
             );
             return;
@@ -202,30 +206,35 @@ public class ScriptRunner {
         actions.add(AiAction.clearAround(radius));
     }
 
-    private static void parseBuildBox(String[] parts,
-                                      String line,
+    private static void parseBuildBox(DslProgram program,
+                                      int i,
                                       List<AiAction> actions,
                                       ServerPlayer player) {
 
         // Формат: BUILD_BOX w h d
-        if (parts.length != 4) {
+        if (program.status(i) == DslProgram.BAD_ARITY) {
             player.sendMessage(
-                    new TextComponent("BUILD_BOX формат: BUILD_BOX width height depth. Пропускаю: " + line),
+                    new TextComponent("BUILD_BOX формат: BUILD_BOX width height depth. Пропускаю: " + program.line(i)),
                     player.getUUID()
             );
             return;
         }
 
-        int w = Integer.parseInt(parts[1]);
-        int h = Integer.parseInt(parts[2]);
-        int d = Integer.parseInt(parts[3]);
+        if (program.status(i) == DslProgram.BAD_NUMBER) {
+            numberError(program, i, player);
+            return;
+        }
+
+        int w = program.arg(i, 0);
+        int h = program.arg(i, 1);
+        int d = program.arg(i, 2);
 
         if (w < 1 || h < 1 || d < 1 ||
                 w > MAX_BOX_SIZE || h > MAX_BOX_SIZE || d > MAX_BOX_SIZE) {
 
             player.sendMessage(
                     new TextComponent("BUILD_BOX: розміри мають бути 1–" + MAX_BOX_SIZE +
-                            ". Пропускаю: " + line),
+                            ". Пропускаю: " + program.line(i)),
                     player.getUUID()
             );
             return;
@@ -234,6 +243,13 @@ public class ScriptRunner {
         actions.add(AiAction.buildBox(w, h, d));
     }
 
+    private static void numberError(DslProgram program, int i, ServerPlayer player) {
+        player.sendMessage(
+                new TextComponent("Помилка числа в рядку скрипта: " + program.line(i)),
+                player.getUUID()
+        );
+    }
+
     // ─────────────────────────────────────
     // Мапа блоків – тут можна додавати нові
     // ─────────────────────────────────────
@@ -249,13 +265,8 @@ public class ScriptRunner {
      *  - та інші з цього списку.
      */
     private static Block parseBlock(String name) {
-        String id = name.toLowerCase(Locale.ROOT);
-
-        // Відрізаємо namespace, якщо є (minecraft: або будь-який інший)
-        int idx = id.indexOf(':');
-        if (idx >= 0 && idx < id.length() - 1) {
-            id = id.substring(idx + 1);
-        }
+        // Нижній регістр + без namespace (minecraft: або будь-який інший)
+        String id = DslCompiler.normalizeBlockToken(name);
 
         return switch (id) {
             case "stone" -> Blocks.STONE;
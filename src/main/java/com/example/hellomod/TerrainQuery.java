@@ -0,0 +1,128 @@
+package com.example.hellomod;
+
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+/**
+ * Запити до рельєфу по heightmap-ах чанка — O(1) на колонку замість проходу getBlockState згори вниз.
+ *
+ * Minecraft і так тримає для кожного чанка:
+ * - WORLD_SURFACE   — найвищий не-повітряний блок (трава, листя, вода, квіти — все);
+ * - MOTION_BLOCKING — найвищий блок, що блокує рух, або рідина (вода рахується, трава — ні);
+ * - OCEAN_FLOOR     — найвищий блок, що блокує рух (без рідин) — дно під водою.
+ *
+ * Звідси: поверхня, глибина води (MOTION_BLOCKING - OCEAN_FLOOR, якщо зверху вода) і "твердий ґрунт"
+ * (зверху не рідина). Усі Y — абсолютні, Y самого блока (не перший вільний над ним).
+ *
+ * Відповіді по колонках беруться зі зведень TerrainSummaryCache (по одному на чанк, поки чанк не змінився).
+ * Один екземпляр на один скан: LevelChunk і зведення кешуються (скан 17x17 — максимум 2x2 чанки).
+ * Лише server thread; чанки беруться через level.getChunk, як у WorldContextProvider / SectionBatchWriter.
+ */
+public final class TerrainQuery {
+
+    /** Колонка порожня (лише повітря) / води немає. */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private final ServerLevel level;
+
+    private int lastCx = Integer.MIN_VALUE;
+    private int lastCz = Integer.MIN_VALUE;
+    private LevelChunk lastChunk;
+    private TerrainSummaryCache.ChunkSummary lastSummary;
+
+    private TerrainQuery(ServerLevel level) {
+        this.level = level;
+    }
+
+    public static TerrainQuery of(ServerLevel level) {
+        return new TerrainQuery(level);
+    }
+
+    public ServerLevel level() {
+        return level;
+    }
+
+    /** Чанк під блоковою колонкою (x, z); сусідні запити зазвичай в тому ж чанку. */
+    public LevelChunk chunkAt(int x, int z) {
+        int cx = SectionPos.blockToSectionCoord(x);
+        int cz = SectionPos.blockToSectionCoord(z);
+        if (lastChunk == null || cx != lastCx || cz != lastCz) {
+            lastChunk = level.getChunk(cx, cz);
+            lastSummary = null;
+            lastCx = cx;
+            lastCz = cz;
+        }
+        return lastChunk;
+    }
+
+    /** Зведення чанка під колонкою (x, z). */
+    public TerrainSummaryCache.ChunkSummary summaryAt(int x, int z) {
+        LevelChunk chunk = chunkAt(x, z);
+        if (lastSummary == null) lastSummary = TerrainSummaryCache.get(level, chunk, lastCx, lastCz);
+        return lastSummary;
+    }
+
+    /** Найвищий не-повітряний блок колонки (WORLD_SURFACE) або NONE. */
+    public int surfaceY(int x, int z) {
+        return summaryAt(x, z).surfaceY[TerrainSummaryCache.ChunkSummary.index(x, z)];
+    }
+
+    /** Стан блока на surfaceY (повітря, якщо колонка порожня). */
+    public BlockState surfaceState(int x, int z) {
+        return summaryAt(x, z).surface[TerrainSummaryCache.ChunkSummary.index(x, z)];
+    }
+
+    /** Найвищий блок, що блокує рух, або рідина (MOTION_BLOCKING), або NONE. */
+    public int motionBlockingY(int x, int z) {
+        int y = chunkAt(x, z).getHeight(Heightmap.Types.MOTION_BLOCKING, x & 15, z & 15);
+        return (y < level.getMinBuildHeight()) ? NONE : y;
+    }
+
+    /** Найвищий твердий блок без урахування рідин (OCEAN_FLOOR) або NONE. */
+    public int oceanFloorY(int x, int z) {
+        return summaryAt(x, z).floorY[TerrainSummaryCache.ChunkSummary.index(x, z)];
+    }
+
+    /** Y верхнього блока води в колонці (якщо зверху вода), інакше NONE. */
+    public int waterSurfaceY(int x, int z) {
+        return summaryAt(x, z).waterY[TerrainSummaryCache.ChunkSummary.index(x, z)];
+    }
+
+    /** Скільки блоків води над дном (0 — води немає). */
+    public int waterDepth(int x, int z) {
+        int water = waterSurfaceY(x, z);
+        if (water == NONE) return 0;
+        int floor = oceanFloorY(x, z);
+        return (floor == NONE) ? water - level.getMinBuildHeight() + 1 : water - floor;
+    }
+
+    /** Чи блок (x, y, z) — у стовпі води між дном і поверхнею води. */
+    public boolean isWater(int x, int y, int z) {
+        int water = waterSurfaceY(x, z);
+        return water != NONE && y <= water && y > oceanFloorY(x, z);
+    }
+
+    /** Зверху колонки тверде (не рідина): можна стати/будувати без мосту. */
+    public boolean isSolidGround(int x, int z) {
+        return (summaryAt(x, z).flags[TerrainSummaryCache.ChunkSummary.index(x, z)] & TerrainSummaryCache.F_SOLID) != 0;
+    }
+
+    /** Верх колонки — колода або листя. */
+    public boolean isTreeTop(int x, int z) {
+        return (summaryAt(x, z).flags[TerrainSummaryCache.ChunkSummary.index(x, z)] & TerrainSummaryCache.F_TREE) != 0;
+    }
+
+    /** Стан блока прямо з секції чанка (без getBlockState світу). */
+    public BlockState stateAt(int x, int y, int z) {
+        if (level.isOutsideBuildHeight(y)) return Blocks.AIR.defaultBlockState();
+        LevelChunk chunk = chunkAt(x, z);
+        LevelChunkSection section = chunk.getSection(chunk.getSectionIndex(y));
+        if (section == null || section.hasOnlyAir()) return Blocks.AIR.defaultBlockState();
+        return section.getBlockState(x & 15, y & 15, z & 15);
+    }
+}
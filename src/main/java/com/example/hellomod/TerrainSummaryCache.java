@@ -0,0 +1,254 @@
+package com.example.hellomod;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кеш зведень по чанках для TerrainQuery: на кожну з 256 колонок — верх (WORLD_SURFACE) і його блок,
+ * дно (OCEAN_FLOOR), верх води та прапорці (вода / дерево / твердий ґрунт).
+ *
+ * Повторні /ai build_local, /ai scan, /ai_build біля того самого гравця беруть готові зведення,
+ * а перераховують лише "брудні" чанки. Інвалідація (HelloMod):
+ * - BlockEvent (break, place, fluid place, neighbor notify — останнє ловить і setBlock з команд/скриптів);
+ *   neighbor notify — найчастіша подія (редстоун, течія води, ферми), тому по ній інвалідуємо лише
+ *   тоді, коли зміна зачепила верх колонки або зсунула її heightmap-и (див. invalidateIfAffects);
+ * - ExplosionEvent.Detonate — кожен чанк зі списку зруйнованих блоків;
+ * - ChunkEvent.Unload / WorldEvent.Unload;
+ * - SectionBatchWriter — наш прямий запис у секції подій не шле, тому інвалідує сам.
+ *
+ * - TagsUpdatedEvent — прапорець дерева залежить від тегів (BlockKinds), тож після reload кеш скидаємо весь.
+ *
+ * Налаштування: ai.terrain.cache.chunks — максимум чанків на світ (LRU, 0 = кеш вимкнено), дефолт 1024.
+ * Лише server thread.
+ */
+public final class TerrainSummaryCache {
+
+    private static final int MAX_CHUNKS = Math.max(0, Integer.getInteger("ai.terrain.cache.chunks", 1024));
+
+    // Прапорці колонки
+    public static final byte F_WATER = 1; // зверху (MOTION_BLOCKING) вода
+    public static final byte F_TREE = 2;  // верх колонки — колода / листя
+    public static final byte F_SOLID = 4; // зверху тверде, не рідина
+
+    /** Приблизний розмір одного зведення: 4 int[256] + посилання на стани + byte[256] + заголовки. */
+    private static final int SUMMARY_BYTES = 256 * (4 * 4 + 4 + 1) + 96;
+
+    /** Зведення одного чанка; індекс колонки = (z & 15) << 4 | (x & 15). Y абсолютні, NONE = немає. */
+    public static final class ChunkSummary {
+        public final int[] surfaceY = new int[256];
+        public final BlockState[] surface = new BlockState[256];
+        public final int[] floorY = new int[256];
+        public final int[] motionY = new int[256];
+        public final int[] waterY = new int[256];
+        public final byte[] flags = new byte[256];
+
+        public static int index(int x, int z) {
+            return ((z & 15) << 4) | (x & 15);
+        }
+    }
+
+    private static final class LevelCache extends LinkedHashMap<Long, ChunkSummary> {
+        LevelCache() {
+            super(64, 0.75f, true); // accessOrder -> LRU
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ChunkSummary> eldest) {
+            if (size() > MAX_CHUNKS) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final Map<LevelAccessor, LevelCache> LEVELS = new IdentityHashMap<>();
+
+    private static long hits;
+    private static long misses;
+    private static long invalidations;
+    private static long notifiesIgnored;
+    private static long evictions;
+
+    private TerrainSummaryCache() {}
+
+    /** Зведення чанка (з кешу або щойно пораховане). */
+    public static ChunkSummary get(ServerLevel level, LevelChunk chunk, int cx, int cz) {
+        if (MAX_CHUNKS == 0) {
+            misses++;
+            return build(level, chunk);
+        }
+
+        LevelCache cache = LEVELS.computeIfAbsent(level, k -> new LevelCache());
+        long key = ChunkPos.asLong(cx, cz);
+        ChunkSummary s = cache.get(key);
+        if (s != null) {
+            hits++;
+            return s;
+        }
+
+        misses++;
+        s = build(level, chunk);
+        cache.put(key, s);
+        return s;
+    }
+
+    // ─────────────────────────────────────────
+    // Інвалідація
+    // ─────────────────────────────────────────
+
+    // Клієнтські світи (інтегрований сервер шле ті самі події з client thread) не кешуємо — і мапу звідти не чіпаємо
+    public static void invalidate(LevelAccessor level, int cx, int cz) {
+        if (!(level instanceof ServerLevel)) return;
+        LevelCache cache = LEVELS.get(level);
+        if (cache != null) remove(cache, cx, cz);
+    }
+
+    public static void invalidate(LevelAccessor level, BlockPos pos) {
+        invalidate(level, SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+    }
+
+    /**
+     * Neighbor notify: зведення тримає лише heightmap-и колонки, її верхній блок і верх води.
+     * Тож інвалідуємо, коли змінився верхній блок / блок на рівні води, або коли heightmap-и чанка
+     * (setBlock оновлює їх ще до події) вже не збігаються зі зведенням. Зміна нижче дна — пропускаємо одразу.
+     */
+    public static void invalidateIfAffects(LevelAccessor level, BlockPos pos) {
+        if (!(level instanceof ServerLevel server)) return;
+        LevelCache cache = LEVELS.get(level);
+        if (cache == null) return;
+
+        int cx = SectionPos.blockToSectionCoord(pos.getX());
+        int cz = SectionPos.blockToSectionCoord(pos.getZ());
+        ChunkSummary s = cache.get(ChunkPos.asLong(cx, cz));
+        if (s == null) return;
+
+        int i = ChunkSummary.index(pos.getX(), pos.getZ());
+        int y = pos.getY();
+        boolean stale;
+        if (s.floorY[i] != TerrainQuery.NONE && y < s.floorY[i]) {
+            stale = false;
+        } else if (s.surfaceY[i] == TerrainQuery.NONE || y >= s.surfaceY[i] || y == s.waterY[i]) {
+            stale = true;
+        } else {
+            LevelChunk chunk = server.getChunk(cx, cz);
+            int lx = pos.getX() & 15;
+            int lz = pos.getZ() & 15;
+            stale = height(server, chunk, Heightmap.Types.WORLD_SURFACE, lx, lz) != s.surfaceY[i]
+                    || height(server, chunk, Heightmap.Types.MOTION_BLOCKING, lx, lz) != s.motionY[i]
+                    || height(server, chunk, Heightmap.Types.OCEAN_FLOOR, lx, lz) != s.floorY[i];
+        }
+
+        if (stale) {
+            remove(cache, cx, cz);
+        } else {
+            notifiesIgnored++;
+        }
+    }
+
+    private static int height(ServerLevel level, LevelChunk chunk, Heightmap.Types type, int lx, int lz) {
+        int y = chunk.getHeight(type, lx, lz);
+        return (y < level.getMinBuildHeight()) ? TerrainQuery.NONE : y;
+    }
+
+    /** Вибух: сотні блоків, але чанків — одиниці. */
+    public static void invalidate(LevelAccessor level, Iterable<BlockPos> positions) {
+        if (!(level instanceof ServerLevel)) return;
+        LevelCache cache = LEVELS.get(level);
+        if (cache == null) return;
+        for (BlockPos p : positions) {
+            remove(cache, SectionPos.blockToSectionCoord(p.getX()), SectionPos.blockToSectionCoord(p.getZ()));
+        }
+    }
+
+    private static void remove(LevelCache cache, int cx, int cz) {
+        if (cache.remove(ChunkPos.asLong(cx, cz)) != null) invalidations++;
+    }
+
+    public static void unload(LevelAccessor level) {
+        if (!(level instanceof ServerLevel)) return;
+        LevelCache cache = LEVELS.remove(level);
+        if (cache != null) invalidations += cache.size();
+    }
+
+    public static void clear() {
+        LEVELS.clear();
+    }
+
+    /** Для /ai llm_status: hit rate, скільки чанків і скільки це приблизно в пам'яті. */
+    public static String stats() {
+        int chunks = 0;
+        for (LevelCache c : LEVELS.values()) chunks += c.size();
+        long total = hits + misses;
+
+        return "terrain cache: chunks=" + chunks + " (max " + MAX_CHUNKS + "/level)"
+                + " hits=" + hits + " misses=" + misses
+                + (total == 0 ? "" : " (" + (hits * 100 / total) + "% hit)")
+                + " invalidated=" + invalidations
+                + " notifiesIgnored=" + notifiesIgnored
+                + " evicted=" + evictions
+                + " mem~" + (chunks * (long) SUMMARY_BYTES / 1024) + "KB";
+    }
+
+    // ─────────────────────────────────────────
+    // Побудова зведення з heightmap-ів чанка
+    // ─────────────────────────────────────────
+
+    private static ChunkSummary build(ServerLevel level, LevelChunk chunk) {
+        ChunkSummary s = new ChunkSummary();
+        int minY = level.getMinBuildHeight();
+        BlockKinds.Lookup kinds = new BlockKinds.Lookup();
+
+        for (int lz = 0; lz < 16; lz++) {
+            for (int lx = 0; lx < 16; lx++) {
+                int i = (lz << 4) | lx;
+
+                // ChunkAccess.getHeight повертає Y верхнього блока; порожня колонка — minBuildHeight - 1
+                int top = chunk.getHeight(Heightmap.Types.WORLD_SURFACE, lx, lz);
+                int motion = chunk.getHeight(Heightmap.Types.MOTION_BLOCKING, lx, lz);
+                int floor = chunk.getHeight(Heightmap.Types.OCEAN_FLOOR, lx, lz);
+
+                s.surfaceY[i] = (top < minY) ? TerrainQuery.NONE : top;
+                s.floorY[i] = (floor < minY) ? TerrainQuery.NONE : floor;
+                s.motionY[i] = (motion < minY) ? TerrainQuery.NONE : motion;
+                s.waterY[i] = TerrainQuery.NONE;
+
+                BlockState surface = (top < minY) ? Blocks.AIR.defaultBlockState() : stateAt(chunk, lx, top, lz);
+                s.surface[i] = surface;
+
+                byte f = 0;
+                if (motion >= minY && motion != floor) {
+                    // над дном є рідина: вода, якщо верхній такий блок — вода
+                    BlockState m = (motion == top) ? surface : stateAt(chunk, lx, motion, lz);
+                    if (kinds.is(m, BlockKinds.WATER)) {
+                        s.waterY[i] = motion;
+                        f |= F_WATER;
+                    }
+                } else if (floor >= minY) {
+                    f |= F_SOLID;
+                }
+                if (kinds.is(surface, BlockKinds.TREE)) f |= F_TREE;
+                s.flags[i] = f;
+            }
+        }
+        return s;
+    }
+
+    private static BlockState stateAt(LevelChunk chunk, int lx, int y, int lz) {
+        LevelChunkSection section = chunk.getSection(chunk.getSectionIndex(y));
+        if (section == null || section.hasOnlyAir()) return Blocks.AIR.defaultBlockState();
+        return section.getBlockState(lx, y & 15, lz);
+    }
+}
@@ -5,7 +5,6 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 
 import java.util.Locale;
@@ -31,30 +30,45 @@ public class WorldScanner {
      * ВАЖЛИВО:
      *  - заголовок типу "# WORLD_SCAN ..." тут більше не додається,
      *    щоб AiRequestBuilder сам керував секціями.
+     *
+     * Те саме, що render(snapshot(...)); команди роблять snapshot на server thread, а render — на воркері.
      */
     public static String scanAround(ServerLevel level, ServerPlayer player,
                                     int radius, int up, int down) {
-
         BlockPos origin = player.blockPosition();
-        int originY = origin.getY();
+        return render(snapshot(level, origin, radius, up, down), origin, radius, up, down);
+    }
+
+    /** Фаза 1 (server thread): копія колонок [-radius..radius] x [originY-down..originY+up]. */
+    public static WorldSnapshot snapshot(ServerLevel level, BlockPos origin, int radius, int up, int down) {
+        return WorldSnapshot.capture(level,
+                origin.getX() - radius, origin.getY() - down, origin.getZ() - radius,
+                origin.getX() + radius, origin.getY() + up, origin.getZ() + radius);
+    }
 
+    /** Фаза 2 (будь-який потік): рядки "cell ..." по знімку. Світ не чіпає. */
+    public static String render(WorldSnapshot snap, BlockPos origin, int radius, int up, int down) {
+        int originY = origin.getY();
         StringBuilder sb = new StringBuilder();
+        BlockKinds.Lookup kinds = new BlockKinds.Lookup();
 
         for (int dz = -radius; dz <= radius; dz++) {
             for (int dx = -radius; dx <= radius; dx++) {
 
-                BlockPos surface = findSurface(level, origin, dx, dz, up, down);
-                if (surface == null) {
+                int x = origin.getX() + dx;
+                int z = origin.getZ() + dz;
+                int surfaceY = findSurface(snap, x, z, originY + up, originY - down);
+                if (surfaceY == TerrainQuery.NONE) {
                     // Якщо в колонці взагалі нічого немає (лише повітря) – пропускаємо.
                     continue;
                 }
 
-                BlockState state = level.getBlockState(surface);
+                BlockState state = snap.state(x, surfaceY, z);
                 Block block = state.getBlock();
-                String kind = classifyBlock(state);
+                String kind = classifyBlock(kinds.of(state));
                 String name = blockName(block);
 
-                int dy = surface.getY() - originY;
+                int dy = surfaceY - originY;
 
                 // Формат, який легко читати ШІ: key=value, стабільний порядок полів.
                 sb.append("cell ")
@@ -71,58 +85,38 @@ public class WorldScanner {
     }
 
     /**
-     * Шукає "поверхню" в колонці (dx, dz): перший не-повітряний блок при скануванні згори вниз.
+     * Шукає "поверхню" в колонці (x, z): перший не-повітряний блок при скануванні згори вниз
+     * у межах [endY..startY]; TerrainQuery.NONE, якщо там лише повітря.
+     *
+     * Зазвичай відповідь дає heightmap WORLD_SURFACE (у знімку) за O(1). Прохід по блоках лишається лише тоді,
+     * коли над вікном скану щось є (крона, печера, навіс) — тоді верх колонки нам не підходить.
      */
-    private static BlockPos findSurface(ServerLevel level, BlockPos origin,
-                                        int dx, int dz, int up, int down) {
-
-        int startY = origin.getY() + up;
-        int endY = origin.getY() - down;
+    private static int findSurface(WorldSnapshot snap, int x, int z, int startY, int endY) {
+        int top = snap.surfaceY(x, z);
+        if (top == TerrainQuery.NONE || top < endY) return TerrainQuery.NONE;
+        if (top <= startY) return top;
 
         for (int y = startY; y >= endY; y--) {
-            BlockPos p = new BlockPos(origin.getX() + dx, y, origin.getZ() + dz);
-            BlockState state = level.getBlockState(p);
-            if (!state.isAir()) {
-                return p;
+            if (!snap.state(x, y, z).isAir()) {
+                return y;
             }
         }
-        return null;
+        return TerrainQuery.NONE;
     }
 
     /**
      * Груба класифікація блоків у категорії, які буде легко зрозуміти ШІ.
+     * k — біти BlockKinds стану (BlockKinds.Lookup на весь скан); порядок перевірок — пріоритет.
      */
-    private static String classifyBlock(BlockState state) {
-        Block b = state.getBlock();
-
-        if (state.is(Blocks.WATER)) return "WATER";
-        if (state.is(Blocks.LAVA)) return "LAVA";
-
-        if (state.is(Blocks.OAK_LEAVES) || state.is(Blocks.SPRUCE_LEAVES)
-                || state.is(Blocks.BIRCH_LEAVES) || state.is(Blocks.JUNGLE_LEAVES)
-                || state.is(Blocks.ACACIA_LEAVES) || state.is(Blocks.DARK_OAK_LEAVES)) {
-            return "LEAVES";
-        }
-
-        if (state.is(Blocks.OAK_LOG) || state.is(Blocks.SPRUCE_LOG)
-                || state.is(Blocks.BIRCH_LOG) || state.is(Blocks.JUNGLE_LOG)
-                || state.is(Blocks.ACACIA_LOG) || state.is(Blocks.DARK_OAK_LOG)) {
-            return "LOG";
-        }
-
-        if (state.is(Blocks.SAND) || state.is(Blocks.RED_SAND)) return "SAND";
-        if (state.is(Blocks.DIRT) || state.is(Blocks.COARSE_DIRT) || state.is(Blocks.GRASS_BLOCK)) return "DIRT";
-
-        if (state.is(Blocks.STONE) || state.is(Blocks.COBBLESTONE)
-                || state.is(Blocks.STONE_BRICKS)) {
-            return "SOLID";
-        }
-
-        if (state.is(Blocks.OAK_PLANKS) || state.is(Blocks.SPRUCE_PLANKS)
-                || state.is(Blocks.BIRCH_PLANKS) || state.is(Blocks.JUNGLE_PLANKS)
-                || state.is(Blocks.ACACIA_PLANKS) || state.is(Blocks.DARK_OAK_PLANKS)) {
-            return "PLANKS";
-        }
+    private static String classifyBlock(int k) {
+        if ((k & BlockKinds.WATER) != 0) return "WATER";
+        if ((k & BlockKinds.LAVA) != 0) return "LAVA";
+        if ((k & BlockKinds.LEAVES) != 0) return "LEAVES";
+        if ((k & BlockKinds.LOG) != 0) return "LOG";
+        if ((k & BlockKinds.SAND) != 0) return "SAND";
+        if ((k & BlockKinds.DIRT) != 0) return "DIRT";
+        if ((k & BlockKinds.SOLID) != 0) return "SOLID";
+        if ((k & BlockKinds.PLANKS) != 0) return "PLANKS";
 
         // Можна додавати ще, але для початку достатньо
         return "OTHER";
@@ -148,25 +142,31 @@ public class WorldScanner {
      * Допоміжна команда: відсканувати й написати в лог + коротке повідомлення гравцю.
      *
      * Тут ми додаємо свій заголовок, щоб у консолі було видно параметри скану.
+     * Копію світу робимо тут (server thread), а сам скан і текст — на воркері ScriptPipeline.
      */
     public static void scanAndReport(ServerLevel level, ServerPlayer player) {
         int radius = 8;
         int up = 6;
         int down = 4;
 
-        String snapshot = scanAround(level, player, radius, up, down);
-
-        // Лог у консоль сервера / IDE — з коротким заголовком.
-        System.out.println("# WORLD_SCAN radius=" + radius
-                + " up=" + up
-                + " down=" + down
-                + " originY=" + player.blockPosition().getY());
-        System.out.println(snapshot);
-
-        int lines = snapshot.isEmpty() ? 0 : snapshot.split("\\r?\\n").length;
-        player.sendMessage(
-                new TextComponent("WORLD SCAN готово. Рядків: " + lines + " (дивись консоль сервера)."),
-                player.getUUID()
-        );
+        BlockPos origin = player.blockPosition();
+        WorldSnapshot snap = snapshot(level, origin, radius, up, down);
+
+        ScriptPipeline.submit(level.getServer(), player.getUUID(), "ai scan",
+                () -> render(snap, origin, radius, up, down),
+                (p, snapshot) -> {
+                    // Лог у консоль сервера / IDE — з коротким заголовком.
+                    System.out.println("# WORLD_SCAN radius=" + radius
+                            + " up=" + up
+                            + " down=" + down
+                            + " originY=" + origin.getY());
+                    System.out.println(snapshot);
+
+                    int lines = snapshot.isEmpty() ? 0 : snapshot.split("\\r?\\n").length;
+                    p.sendMessage(
+                            new TextComponent("WORLD SCAN готово. Рядків: " + lines + " (дивись консоль сервера)."),
+                            p.getUUID()
+                    );
+                });
     }
 }
@@ -0,0 +1,145 @@
+package com.example.hellomod;
+
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Знімок області світу для аналізу поза server thread.
+ *
+ * Фаза 1 (server thread, capture): на кожну потрібну LevelChunkSection — PalettedContainer.copy()
+ * (палітра + упаковані дані, кілька КБ на секцію), плюс верх кожної колонки і його стан зі зведень
+ * TerrainSummaryCache. Секції вище за найвищу поверхню в чанку не копіюємо — там лише повітря.
+ * Фаза 2 (будь-який потік): класифікація, ранжування і текст — лише по копіях, світ не чіпаємо.
+ *
+ * Знімок незмінний після capture, тож одним можуть користуватися кілька воркерів одночасно.
+ */
+public final class WorldSnapshot {
+
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    /** Межі області (абсолютні, включно). */
+    public final int minX, minY, minZ, maxX, maxY, maxZ;
+
+    private final int sizeX;
+    private final int minSx, minSy, minSz;
+    private final int countSx, countSy, countSz;
+
+    // [(sz * countSy + sy) * countSx + sx] відносно minS*; null — лише повітря / поза висотою світу
+    private final PalettedContainer<BlockState>[] sections;
+
+    // Верх колонки [(z - minZ) * sizeX + (x - minX)] — як у TerrainQuery (NONE = порожня)
+    private final int[] surfaceY;
+    private final BlockState[] surfaceState;
+
+    private int copiedSections;
+
+    @SuppressWarnings("unchecked")
+    private WorldSnapshot(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+
+        this.sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+
+        this.minSx = SectionPos.blockToSectionCoord(minX);
+        this.minSy = SectionPos.blockToSectionCoord(minY);
+        this.minSz = SectionPos.blockToSectionCoord(minZ);
+        this.countSx = SectionPos.blockToSectionCoord(maxX) - minSx + 1;
+        this.countSy = SectionPos.blockToSectionCoord(maxY) - minSy + 1;
+        this.countSz = SectionPos.blockToSectionCoord(maxZ) - minSz + 1;
+
+        this.sections = new PalettedContainer[countSx * countSy * countSz];
+        this.surfaceY = new int[sizeX * sizeZ];
+        this.surfaceState = new BlockState[sizeX * sizeZ];
+    }
+
+    /** Копіює область [min..max] (server thread). */
+    public static WorldSnapshot capture(ServerLevel level, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        WorldSnapshot snap = new WorldSnapshot(minX, minY, minZ, maxX, maxY, maxZ);
+        TerrainQuery terrain = TerrainQuery.of(level);
+
+        for (int sz = 0; sz < snap.countSz; sz++) {
+            for (int sx = 0; sx < snap.countSx; sx++) {
+                int cx = snap.minSx + sx;
+                int cz = snap.minSz + sz;
+
+                // 1) Колонки цього чанка в межах області: верх і його стан
+                int x0 = Math.max(minX, SectionPos.sectionToBlockCoord(cx));
+                int x1 = Math.min(maxX, SectionPos.sectionToBlockCoord(cx) + 15);
+                int z0 = Math.max(minZ, SectionPos.sectionToBlockCoord(cz));
+                int z1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(cz) + 15);
+
+                int highest = TerrainQuery.NONE;
+                for (int z = z0; z <= z1; z++) {
+                    for (int x = x0; x <= x1; x++) {
+                        int col = snap.column(x, z);
+                        snap.surfaceY[col] = terrain.surfaceY(x, z);
+                        snap.surfaceState[col] = terrain.surfaceState(x, z);
+                        highest = Math.max(highest, snap.surfaceY[col]);
+                    }
+                }
+
+                // 2) Секції: копія палітри + даних, лише до найвищої поверхні
+                LevelChunk chunk = terrain.chunkAt(x0, z0);
+                for (int sy = 0; sy < snap.countSy; sy++) {
+                    int blockY = SectionPos.sectionToBlockCoord(snap.minSy + sy);
+                    if (blockY > highest || level.isOutsideBuildHeight(blockY)) continue;
+
+                    LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(snap.minSy + sy));
+                    if (section == null || section.hasOnlyAir()) continue;
+
+                    snap.sections[snap.sectionIndex(sx, sy, sz)] = section.getStates().copy();
+                    snap.copiedSections++;
+                }
+            }
+        }
+        return snap;
+    }
+
+    /** Стан блока з копії; поза областю або над поверхнею — повітря. */
+    public BlockState state(int x, int y, int z) {
+        if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) return AIR;
+
+        int col = column(x, z);
+        int top = surfaceY[col];
+        if (y > top) return AIR;
+        if (y == top) return surfaceState[col];
+
+        PalettedContainer<BlockState> data = sections[sectionIndex(
+                SectionPos.blockToSectionCoord(x) - minSx,
+                SectionPos.blockToSectionCoord(y) - minSy,
+                SectionPos.blockToSectionCoord(z) - minSz)];
+        return (data == null) ? AIR : data.get(x & 15, y & 15, z & 15);
+    }
+
+    /** Найвищий не-повітряний блок колонки (у всьому світі, не лише в області) або TerrainQuery.NONE. */
+    public int surfaceY(int x, int z) {
+        return surfaceY[column(x, z)];
+    }
+
+    public BlockState surfaceState(int x, int z) {
+        return surfaceState[column(x, z)];
+    }
+
+    /** Скільки секцій скопійовано (для логів). */
+    public int copiedSections() {
+        return copiedSections;
+    }
+
+    private int column(int x, int z) {
+        return (z - minZ) * sizeX + (x - minX);
+    }
+
+    private int sectionIndex(int sx, int sy, int sz) {
+        return (sz * countSy + sy) * countSx + sx;
+    }
+}
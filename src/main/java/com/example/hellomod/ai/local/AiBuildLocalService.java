@@ -2,8 +2,18 @@ package com.example.hellomod.ai.local;
 
 import com.example.hellomod.AiMemory;
 import com.example.hellomod.AiScriptValidator;
+import com.example.hellomod.ScriptPipeline;
 import com.example.hellomod.ScriptRunner;
+import com.example.hellomod.TerrainSummaryCache;
+import com.example.hellomod.WorldSnapshot;
 import com.example.hellomod.ai.AiRateLimiter;
+import com.example.hellomod.dsl.DslProgram;
+import com.example.hellomod.llm.LlmBackendPool;
+import com.example.hellomod.llm.LlmClientProvider;
+import com.example.hellomod.llm.LlmPrompt;
+import com.example.hellomod.llm.LlmRequestScheduler;
+import com.example.hellomod.llm.LlmResponseCache;
+import com.example.hellomod.llm.LlmSingleFlight;
 import com.example.hellomod.llm.LocalLlmClient;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.TextComponent;
@@ -13,10 +23,13 @@ import net.minecraft.server.level.ServerPlayer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public final class AiBuildLocalService {
     private static final Logger LOGGER = LogManager.getLogger(AiBuildLocalService.class);
@@ -31,13 +44,6 @@ public final class AiBuildLocalService {
     private static final long PREVIEW_COOLDOWN_MS = 5_000;
     private static final long EXECUTE_COOLDOWN_MS = 20_000;
 
-    // Окремий потік для LLM-запитів (щоб не підвісити server thread)
-    private static final ExecutorService LLM_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "hellomod-llm");
-        t.setDaemon(true);
-        return t;
-    });
-
     // Скільки рядків DSL показуємо в чаті як preview (щоб не заспамити)
     private static final int CHAT_PREVIEW_MAX_LINES = 20;
 
@@ -58,6 +64,9 @@ public final class AiBuildLocalService {
     private static final long STRICT_MAX_CHANGED_BLOCKS = 8000;
     // =====================================================
 
+    // Однакові промпти в польоті — один запит на всіх
+    private static final LlmSingleFlight<LlmOutcome> FLIGHTS = new LlmSingleFlight<>();
+
     private AiBuildLocalService() {}
 
     public static void start(ServerLevel level, ServerPlayer player, BlockPos origin, String thing, ExecMode mode) {
@@ -68,6 +77,9 @@ public final class AiBuildLocalService {
         final String safeThing = (thing == null) ? "" : thing.trim();
         final ExecMode safeMode = (mode == null) ? ExecMode.PREVIEW : mode;
 
+        // Відомі прості запити (платформа, міст, box, clear...) — правилами, без LLM
+        final IntentRouter.Match route = IntentRouter.route(level, player, safeThing);
+
         // ===== COOLDOWN (anti-spam) =====
         AiRateLimiter.Channel channel = (safeMode == ExecMode.EXECUTE)
                 ? AiRateLimiter.Channel.EXECUTE
@@ -87,128 +99,448 @@ public final class AiBuildLocalService {
         }
         // ===============================
 
-        // Prompt (worldContext поки порожній — пункт 2.6)
-        final String worldContext = WorldContextProvider.buildContextText(level, origin);
-        final String prompt = BuildLocalPromptBuilder.buildPrompt(safeThing, worldContext);
+        if (route != null) {
+            LOGGER.info("[ai build_local] rule '{}' matched thing='{}' lines={}", route.rule, safeThing, route.lines.size());
+            player.sendMessage(new TextComponent("build_local: matched rule '" + route.rule + "' (no LLM)"), player.getUUID());
+
+            LlmResponseParser.ParseResult parsed = new LlmResponseParser.ParseResult(
+                    true, false, route.lines, List.of("Planned by rule '" + route.rule + "'."));
+            ScriptPipeline.submit(server, playerId, "build_local",
+                    () -> prepareResponse(parsed, List.of(), safeMode, null, null),
+                    (p, plan) -> applyOnServerThread(p, plan, safeMode));
+            return;
+        }
+
+        // Контекст світу: копія секцій — тут (server thread), аналіз, текст, кеш відповідей і промпт — на воркері
+        final WorldSnapshot snapshot = WorldContextProvider.snapshot(level, origin);
+        final String clientKey = LlmBackendPool.get().configKey();
+        ScriptPipeline.submit(server, playerId, "build_local",
+                () -> {
+                    String worldContext = WorldContextProvider.render(snapshot, origin);
+                    String cacheKey = LlmResponseCache.key(clientKey, safeThing, worldContext);
+                    String cached = LlmResponseCache.get(cacheKey);
+                    LlmPrompt prompt = (cached != null) ? null : BuildLocalPromptBuilder.build(safeThing, worldContext);
+                    return new ContextPrompt(prompt, cacheKey, cached);
+                },
+                (p, ctx) -> {
+                    if (ctx.cached != null) {
+                        deliverCached(server, playerId, safeMode, ctx);
+                    } else {
+                        startLlm(server, p, origin, safeThing, safeMode, ctx);
+                    }
+                });
+    }
+
+    /** Готовий промпт або відповідь з кешу (рахуються на воркері з контексту світу). */
+    private static final class ContextPrompt {
+        final LlmPrompt prompt;   // null, якщо є cached
+        final String cacheKey;
+        final String cached;      // != null -> відповідь з LlmResponseCache, LLM не потрібен
+
+        ContextPrompt(LlmPrompt prompt, String cacheKey, String cached) {
+            this.prompt = prompt;
+            this.cacheKey = cacheKey;
+            this.cached = cached;
+        }
+    }
+
+    /** Server thread: влучання в кеш — одразу в deliver, повз breaker, single-flight і чергу LLM. */
+    private static void deliverCached(MinecraftServer server, UUID playerId, ExecMode safeMode, ContextPrompt ctx) {
+        LOGGER.info("[ai build_local] response cache hit");
+        LlmOutcome out = new LlmOutcome();
+        out.parsed = LlmResponseParser.parse(ctx.cached);
+        out.streamed = List.of();
+        out.streamedTo = playerId;
+        out.cacheKey = ctx.cacheKey;
+        deliver(server, playerId, safeMode, out, null);
+    }
+
+    /** Server thread: breaker, single-flight і черга LLM для вже готового промпту. */
+    private static void startLlm(MinecraftServer server, ServerPlayer player, BlockPos origin,
+                                 String safeThing, ExecMode safeMode, ContextPrompt ctx) {
+        final UUID playerId = player.getUUID();
+        final LlmPrompt prompt = ctx.prompt;
+
+        // Breaker відкритий на всіх бекендах — відмовляємо одразу, без черги
+        long unavailableMs = LlmBackendPool.get().unavailableForMs();
+        if (unavailableMs > 0) {
+            player.sendMessage(new TextComponent("build_local: "
+                    + new LlmBackendPool.BackendUnavailableException(unavailableMs).getMessage()), player.getUUID());
+            return;
+        }
 
         LOGGER.info("[ai build_local] start mode={} player={} dim={} origin=({}, {}, {}) thing='{}'",
                 safeMode,
                 player.getGameProfile().getName(),
-                level.dimension().location(),
+                player.getLevel().dimension().location(),
                 origin.getX(), origin.getY(), origin.getZ(),
                 safeThing
         );
 
-        // LLM — off-thread
-        LLM_EXECUTOR.execute(() -> {
+        // Однаковий промпт уже генерується (напр. кілька гравців після оголошення) — чекаємо той самий результат
+        final String flightKey = LlmSingleFlight.key(LlmClientProvider.get().config().key(), prompt.text());
+        boolean leader = FLIGHTS.join(flightKey, playerId, (outcome, error) -> deliver(server, playerId, safeMode, outcome, error));
+        if (!leader) {
+            player.sendMessage(new TextComponent("build_local: the same request is already generating, sharing its result."), player.getUUID());
+            return;
+        }
+
+        LlmRequestScheduler.Ticket ticket = submitFlight(server, playerId, flightKey, safeThing, ctx.cacheKey, prompt);
+        if (!ticket.accepted) {
+            FLIGHTS.complete(flightKey, null, new RejectedExecutionException(ticket.rejectReason));
+        } else if (ticket.position > 0) {
+            player.sendMessage(new TextComponent("build_local: waiting for LLM (queue position " + ticket.position + ")"), player.getUUID());
+        }
+    }
+
+    /**
+     * LLM — off-thread, через чергу зі слотами бекенду (справедливо між гравцями), від імені лідера flightKey.
+     * Якщо задачу лідера викинули з черги (вийшов з гри), запит переходить до наступного гравця в мережі,
+     * що чекає на той самий промпт, — інші гравці не втрачають свій запит через чужий вихід.
+     */
+    private static LlmRequestScheduler.Ticket submitFlight(MinecraftServer server, UUID leaderId, String flightKey,
+                                                          String safeThing, String cacheKey, LlmPrompt prompt) {
+        return LlmRequestScheduler.submit(leaderId, () -> {
+            LlmOutcome outcome = null;
+            Exception error = null;
             try {
-                LocalLlmClient client = LocalLlmClient.createDefault();
+                outcome = generate(LlmBackendPool.get(), server, leaderId, safeThing, cacheKey, prompt);
+            } catch (LlmBackendPool.BackendUnavailableException e) {
+                LOGGER.warn("[ai build_local] {}", e.getMessage());
+                error = e;
+            } catch (Exception e) {
+                LOGGER.error("[ai build_local] LLM request failed", e);
+                error = e;
+            }
+            FLIGHTS.complete(flightKey, outcome, error);
+        }, () -> {
+            CancellationException dropped = new CancellationException("request dropped from the LLM queue");
+            if (!server.isRunning()) {
+                // Зупинка сервера — передавати нікому
+                FLIGHTS.complete(flightKey, null, dropped);
+                return;
+            }
 
-                LOGGER.info("[ai build_local] LLM cfg: {}", client.describe());
-                LOGGER.info("[ai build_local] Prompt chars={}", prompt.length());
+            // Той, хто вже вийшов з гри, лідером не стає — його очікування теж знімаємо
+            UUID next = FLIGHTS.handOff(flightKey, leaderId, dropped);
+            while (next != null && server.getPlayerList().getPlayer(next) == null) {
+                next = FLIGHTS.handOff(flightKey, next, dropped);
+            }
+            if (next == null) return;
 
-                String rawResponse = client.sendBlocking(prompt);
+            LOGGER.info("[ai build_local] leader left the queue, request handed over to {}", next);
+            LlmRequestScheduler.Ticket t = submitFlight(server, next, flightKey, safeThing, cacheKey, prompt);
+            if (!t.accepted) {
+                FLIGHTS.complete(flightKey, null, new RejectedExecutionException(t.rejectReason));
+            }
+        });
+    }
 
-                LOGGER.info("[ai build_local] Response chars={}", rawResponse == null ? 0 : rawResponse.length());
+    /** Сира відповідь LLM (спільна для всіх, хто чекав на той самий промпт). */
+    private static final class LlmOutcome {
+        LlmResponseParser.ParseResult parsed;
+        UUID streamedTo;          // кому показували live preview
+        List<String> streamed;    // які рядки показали
+        String cacheKey;
+        String toCache;           // null -> не кешуємо (вже з кешу або генерацію обірвано)
+        String abortReason;       // != null -> стрім обірвали на невалідному рядку: скрипт неповний
+    }
 
-                // Back to server thread
-                server.execute(() -> handleResponseOnServerThread(server, playerId, rawResponse, safeMode));
+    /**
+     * LLM-потік: (stream | blocking) запит на бекенді з пулу (з failover) -> parse.
+     * Кеш відповідей перевіряється ще на воркері (start), сюди доходять лише промахи.
+     */
+    private static LlmOutcome generate(LlmBackendPool pool, MinecraftServer server, UUID playerId,
+                                       String thing, String cacheKey, LlmPrompt prompt) throws Exception {
+        LOGGER.info("[ai build_local] Prompt chars={} (static prefix {}, dynamic {})",
+                prompt.length(), prompt.system.length(), prompt.user.length());
+
+        // При hedging дві спроби можуть стрімити одночасно — live preview веде лише та, що почала першою
+        AtomicReference<StreamPreview> previewOwner = new AtomicReference<>();
+        LlmOutcome out = pool.call(
+                (client, attempt) -> requestOnce(client, attempt, server, playerId, prompt, previewOwner),
+                o -> o.parsed.ok() && o.abortReason == null
+        );
+        // Обірваний стрім не ремонтуємо: після поганого рядка скрипт просто не догенерований
+        if (out.abortReason == null) repairInvalidLines(pool, thing, out);
 
-            } catch (Exception e) {
-                LOGGER.error("[ai build_local] LLM request failed", e);
+        out.streamedTo = playerId;
+        out.cacheKey = cacheKey;
+        LOGGER.info("[ai build_local] DSL lines={} streamedLines={}", out.parsed.dslLines().size(), out.streamed.size());
+        return out;
+    }
 
-                server.execute(() -> {
-                    ServerPlayer p = server.getPlayerList().getPlayer(playerId);
-                    if (p == null) return;
-                    p.sendMessage(new TextComponent("build_local: LLM request failed: " + safeMsg(e)), p.getUUID());
-                });
+    /**
+     * Частковий ремонт: якщо валідатор відхиляє лише кілька рядків — просимо модель виправити тільки їх
+     * (короткий follow-up промпт), вставляємо на місце і перевіряємо знову.
+     * Не вийшло — лишаємо відповідь як була, гравець побачить звичайні помилки валідатора.
+     */
+    private static void repairInvalidLines(LlmBackendPool pool, String thing, LlmOutcome out) {
+        if (!out.parsed.ok()) return;
+
+        List<String> lines = out.parsed.dslLines();
+        DslRepair.Plan plan = DslRepair.find(lines);
+        if (plan == null) return;
+
+        LOGGER.info("[ai build_local] repairing {} of {} line(s): {}", plan.size(), lines.size(), plan.lines);
+        LlmPrompt repairPrompt = BuildLocalPromptBuilder.buildRepair(thing, plan);
+
+        List<String> spliced = null;
+        try {
+            String raw = pool.call((client, attempt) -> {
+                LlmPrompt constrained = DslGrammar.constrain(repairPrompt, client);
+                String text = client.sendBlocking(constrained);
+                return client.usesJsonSchema() ? DslGrammar.toDsl(text) : text;
+            }, r -> true);
+
+            LlmResponseParser.ParseResult fixed = LlmResponseParser.parse(raw);
+            if (fixed.ok()) spliced = DslRepair.splice(lines, plan, fixed.dslLines());
+        } catch (Exception e) {
+            LOGGER.warn("[ai build_local] repair request failed: {}", e.toString());
+        }
+
+        boolean success = spliced != null && AiScriptValidator.validateLines(spliced).ok();
+        DslRepair.recordAttempt(success);
+        if (!success) {
+            LOGGER.info("[ai build_local] repair did not produce a valid script, keeping the original");
+            return;
+        }
+
+        List<String> warnings = new ArrayList<>(out.parsed.warnings());
+        warnings.add("Repaired " + plan.size() + " invalid line(s) with a follow-up request.");
+        out.parsed = new LlmResponseParser.ParseResult(true, true, List.copyOf(spliced), List.copyOf(warnings));
+
+        // Відповідь з кешу (toCache == null) назад не пишемо
+        if (out.toCache != null) {
+            out.toCache = LlmResponseParser.BEGIN + "\n" + String.join("\n", spliced) + "\n" + LlmResponseParser.END;
+        }
+        LOGGER.info("[ai build_local] repaired {} line(s)", plan.size());
+    }
+
+    /** Одна спроба на конкретному бекенді. */
+    private static LlmOutcome requestOnce(LocalLlmClient client, LlmBackendPool.Attempt attempt,
+                                          MinecraftServer server, UUID playerId, LlmPrompt prompt,
+                                          AtomicReference<StreamPreview> previewOwner) throws Exception {
+        LOGGER.info("[ai build_local] LLM cfg: {}", client.describe());
+
+        // Граматика DSL (якщо Config.grammar): GBNF для llama.cpp або JSON schema для Ollama
+        LlmPrompt constrained = DslGrammar.constrain(prompt, client);
+
+        LlmOutcome out = new LlmOutcome();
+        int candidates = client.config().candidates;
+        if (candidates > 1) {
+            // Кілька варіантів ("n" / вільні слоти бекенда, решта хвилями) — лишаємо найкращий за валідатором і оцінкою
+            List<String> texts = new ArrayList<>();
+            int extra = attempt.reserveSlots(candidates - 1);
+            try {
+                for (String raw : client.sendCandidates(constrained, candidates, 1 + extra)) {
+                    texts.add(client.usesJsonSchema() ? DslGrammar.toDsl(raw) : raw);
+                }
+            } finally {
+                attempt.releaseSlots(extra);
             }
-        });
+            DslCandidates.Score best = DslCandidates.pick(texts);
+            LOGGER.info("[ai build_local] {} candidate(s), picked {}", texts.size(), best);
+
+            out.parsed = LlmResponseParser.parse(best.text);
+            out.streamed = List.of();
+            out.toCache = best.text;
+        } else if (client.usesJsonSchema()) {
+            // JSON за схемою по рядках не стрімиться — чекаємо повну відповідь і переводимо в DSL
+            String dsl = DslGrammar.toDsl(client.sendBlocking(constrained));
+            out.parsed = LlmResponseParser.parse(dsl);
+            out.streamed = List.of();
+            out.toCache = dsl;
+        } else if (client.isStreaming()) {
+            // Preview рядок за рядком, поки модель ще генерує
+            StreamPreview preview = new StreamPreview(server, playerId, previewOwner);
+            StreamingDslParser stream = new StreamingDslParser(preview);
+            String rawResponse = client.sendStreaming(constrained, chunk -> {
+                attempt.markStarted();
+                if (attempt.cancelled()) return false; // програли hedge-гонку
+                return stream.feed(chunk);
+            });
+            out.parsed = stream.finish();
+            out.streamed = preview.owns() ? stream.emittedLines() : List.of();
+            out.abortReason = stream.abortReason();
+            out.toCache = (out.abortReason == null) ? rawResponse : null;
+
+            if (stream.abortReason() != null) {
+                LOGGER.info("[ai build_local] generation aborted on invalid line: {}", stream.abortReason());
+            } else if (stream.ended()) {
+                LOGGER.info("[ai build_local] generation stopped at {}", LlmResponseParser.END);
+            }
+        } else {
+            String rawResponse = client.sendBlocking(constrained);
+            out.parsed = LlmResponseParser.parse(rawResponse);
+            out.streamed = List.of();
+            out.toCache = rawResponse;
+        }
+        return out;
+    }
+
+    /** Результат для одного гравця: compile/validate/strict — на воркері, далі server thread. */
+    private static void deliver(MinecraftServer server, UUID playerId, ExecMode mode, LlmOutcome outcome, Throwable error) {
+        if (error != null) {
+            String msg;
+            if (error instanceof RejectedExecutionException) {
+                msg = "build_local: rejected: " + error.getMessage();
+            } else if (error instanceof LlmBackendPool.BackendUnavailableException) {
+                msg = "build_local: " + error.getMessage();
+            } else {
+                msg = "build_local: LLM request failed: " + safeMsg(error);
+            }
+            server.execute(() -> {
+                ServerPlayer p = server.getPlayerList().getPlayer(playerId);
+                if (p == null) return;
+                p.sendMessage(new TextComponent(msg), p.getUUID());
+            });
+            return;
+        }
+
+        // Live preview бачив тільки лідер; решті показуємо повний preview
+        List<String> streamed = playerId.equals(outcome.streamedTo) ? outcome.streamed : List.of();
+
+        ScriptPipeline.submit(server, playerId, "build_local",
+                () -> {
+                    LocalPlan plan = prepareResponse(outcome.parsed, streamed, mode, outcome.cacheKey, outcome.toCache);
+                    plan.incomplete = outcome.abortReason;
+                    return plan;
+                },
+                (p, plan) -> applyOnServerThread(p, plan, mode));
+    }
+
+    /** Рядки для /ai llm_status. */
+    public static List<String> statusLines() {
+        List<String> out = new ArrayList<>();
+        out.add("llm: " + LlmClientProvider.get().describe());
+        out.addAll(LlmBackendPool.get().stats());
+        out.add("llm " + LlmRequestScheduler.stats());
+        out.add("llm " + LlmResponseCache.stats());
+        out.add("llm " + FLIGHTS.stats());
+        out.add("llm " + DslRepair.stats());
+        out.add("llm " + DslCandidates.stats());
+        out.add("llm " + IntentRouter.stats());
+        out.add(TerrainSummaryCache.stats());
+        return out;
+    }
+
+    /** Результат обробки відповіді LLM (готується поза server thread). */
+    private static final class LocalPlan {
+        String parseError;                 // != null -> відповідь не розібралась
+        List<String> lines;                // DSL як прийшов від LLM (для preview)
+        int alreadyPreviewed;              // скільки перших рядків уже показали під час стріму
+        ScriptPipeline.Prepared prepared;  // compile + DRY-RUN
+        String strictFail;                 // тільки для EXECUTE: причина відмови strict-гейта
+        String incomplete;                 // != null -> генерацію обірвано (причина); не зберігаємо і не виконуємо
     }
 
     /**
-     * Однакові кроки після відповіді LLM:
-     * parse -> validate -> save last -> preview
-     * Різниця лише в кінці: PREVIEW message або EXECUTE через "exec_last" механізм.
+     * Воркер: parse -> compile -> validate (+ strict для EXECUTE).
+     * Світ тут не чіпаємо — лише рядки/DslProgram.
      */
-    private static void handleResponseOnServerThread(MinecraftServer server, UUID playerId, String rawResponse, ExecMode mode) {
-        ServerPlayer p = server.getPlayerList().getPlayer(playerId);
-        if (p == null) return;
+    private static LocalPlan prepareResponse(LlmResponseParser.ParseResult parsed, List<String> streamed, ExecMode mode,
+                                             String cacheKey, String toCache) {
+        LocalPlan plan = new LocalPlan();
 
         // 1) Parse -> DSL
-        LlmResponseParser.ParseResult parsed = LlmResponseParser.parse(rawResponse);
         if (!parsed.ok()) {
-            p.sendMessage(new TextComponent("build_local: invalid LLM response: " + parsed.error()), p.getUUID());
-            return;
+            plan.parseError = parsed.error();
+            return plan;
         }
 
-        List<String> lines = parsed.dslLines();
+        plan.lines = parsed.dslLines();
+        plan.alreadyPreviewed = previewedPrefix(streamed, plan.lines);
 
         LOGGER.info("[ai build_local] mode={} DSL lines={} usedMarkers={} warnings={}\n{}",
                 mode,
-                lines.size(),
+                plan.lines.size(),
                 parsed.usedMarkers(),
                 parsed.warnings(),
-                String.join("\n", lines)
+                String.join("\n", plan.lines)
         );
 
-        // 2) Validate (легкий)
-        AiScriptValidator.Report report = AiScriptValidator.validateLines(lines);
+        // 2) Compile once + validate (легкий); strict/estimate/run читають ту саму програму
+        plan.prepared = ScriptPipeline.prepare(plan.lines);
+
+        // У кеш — тільки те, що пройшло DRY-RUN
+        if (toCache != null && plan.prepared.ok()) {
+            LlmResponseCache.put(cacheKey, toCache);
+        }
+
+        // 3) Додатковий strict-гейт ТІЛЬКИ для auto-exec
+        if (mode == ExecMode.EXECUTE && plan.prepared.ok()) {
+            plan.strictFail = strictSafetyCheck(plan.prepared.program);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Server thread: однакові кроки після відповіді LLM:
+     * report -> save last -> preview
+     * Різниця лише в кінці: PREVIEW message або EXECUTE (як exec_last, але зі strict-гейтом).
+     */
+    private static void applyOnServerThread(ServerPlayer p, LocalPlan plan, ExecMode mode) {
+        if (plan.parseError != null) {
+            p.sendMessage(new TextComponent("build_local: invalid LLM response: " + plan.parseError), p.getUUID());
+            return;
+        }
+
+        // Обірвана генерація — лише початок скрипта; навіть якщо він валідний, це не весь план
+        if (plan.incomplete != null) {
+            p.sendMessage(new TextComponent("build_local: generation stopped early on an invalid line ("
+                    + plan.incomplete + "). The script is incomplete and was NOT saved or executed. Preview:"), p.getUUID());
+            sendPreviewToChat(p, plan.lines, plan.alreadyPreviewed);
+            p.sendMessage(new TextComponent("build_local: run the request again to regenerate it."), p.getUUID());
+            return;
+        }
+
+        AiScriptValidator.Report report = plan.prepared.report;
         if (!report.ok()) {
             p.sendMessage(new TextComponent("build_local: script blocked by validator (NOT saved). Preview:"), p.getUUID());
-            sendPreviewToChat(p, lines);
+            sendPreviewToChat(p, plan.lines, plan.alreadyPreviewed);
             AiScriptValidator.sendReportToPlayer(p, report);
             return;
         }
 
-        // 3) Save (last script)
-        AiMemory.saveLastValid(p.getUUID(), lines);
+        // Save (last script)
+        AiMemory.saveLastValid(p.getUUID(), plan.prepared.program);
 
-        // 4) Preview (always)
+        // Preview (always)
         p.sendMessage(new TextComponent("build_local: last script saved. Preview:"), p.getUUID());
-        sendPreviewToChat(p, lines);
+        sendPreviewToChat(p, plan.lines, plan.alreadyPreviewed);
 
-        // 5) Difference only here
+        // Difference only here
         if (mode == ExecMode.PREVIEW) {
             p.sendMessage(new TextComponent("Saved as last script. Use /ai exec_last"), p.getUUID());
             return;
         }
 
-        // EXECUTE: як exec_last, але зі strict-гейтом
-        executeViaExecLastMechanism(p, true);
+        executePrepared(p, plan);
     }
 
-    private static void executeViaExecLastMechanism(ServerPlayer p, boolean strict) {
-        List<String> lines = AiMemory.getLastValid(p.getUUID());
-        if (lines == null || lines.isEmpty()) {
+    private static void executePrepared(ServerPlayer p, LocalPlan plan) {
+        DslProgram program = plan.prepared.program;
+        if (program.isEmpty()) {
             p.sendMessage(new TextComponent("build_local: nothing to execute (last script is empty)."), p.getUUID());
             return;
         }
 
-        // Як у /ai exec_last: validate + report
-        AiScriptValidator.Report report = AiScriptValidator.validateLines(lines);
-        AiScriptValidator.sendReportToPlayer(p, report);
+        // Як у /ai exec_last: report
+        AiScriptValidator.sendReportToPlayer(p, plan.prepared.report);
 
-        if (!report.ok()) {
-            p.sendMessage(new TextComponent("build_local: exec canceled (validator failed)."), p.getUUID());
+        if (plan.strictFail != null) {
+            p.sendMessage(new TextComponent("build_local_exec: STRICT safety check failed: " + plan.strictFail), p.getUUID());
+            p.sendMessage(new TextComponent("build_local_exec: saved as last script, but NOT executed. Use /ai exec_last if you still want to run it manually."), p.getUUID());
             return;
         }
 
-        // Додатковий strict-гейт ТІЛЬКИ для auto-exec
-        if (strict) {
-            String strictFail = strictSafetyCheck(lines);
-            if (strictFail != null) {
-                p.sendMessage(new TextComponent("build_local_exec: STRICT safety check failed: " + strictFail), p.getUUID());
-                p.sendMessage(new TextComponent("build_local_exec: saved as last script, but NOT executed. Use /ai exec_last if you still want to run it manually."), p.getUUID());
-                return;
-            }
-        }
-
         try {
             ServerLevel level = p.getLevel();
             p.sendMessage(new TextComponent("build_local: executing last script..."), p.getUUID());
-            ScriptRunner.run(level, p, lines);
-            p.sendMessage(new TextComponent("build_local: done."), p.getUUID());
+            ScriptRunner.run(level, p, program);
+            p.sendMessage(new TextComponent("build_local: queued (progress: /ai jobs)."), p.getUUID());
         } catch (Exception e) {
             LOGGER.error("[ai build_local] EXECUTE failed during execution", e);
             p.sendMessage(new TextComponent("build_local: execution failed: " + safeMsg(e)), p.getUUID());
@@ -219,24 +551,19 @@ public final class AiBuildLocalService {
      * Строгіший “гейт” для auto-exec.
      * Повертає null якщо OK, або текст причини відмови.
      */
-    private static String strictSafetyCheck(List<String> lines) {
-        if (lines.size() > STRICT_MAX_TOTAL_LINES) {
-            return "too many DSL lines (" + lines.size() + " > " + STRICT_MAX_TOTAL_LINES + ")";
+    private static String strictSafetyCheck(DslProgram program) {
+        if (program.size() > STRICT_MAX_TOTAL_LINES) {
+            return "too many DSL lines (" + program.size() + " > " + STRICT_MAX_TOTAL_LINES + ")";
         }
 
         int placeCount = 0;
         long totalCost = 0;
 
-        for (String raw : lines) {
-            if (raw == null) continue;
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
-
-            String[] parts = line.split("\\s+");
-            String cmd = parts[0].toUpperCase();
+        for (int i = 0; i < program.size(); i++) {
+            int status = program.status(i);
 
-            switch (cmd) {
-                case "PLACE_BLOCK" -> {
+            switch (program.op(i)) {
+                case DslProgram.OP_PLACE_BLOCK -> {
                     placeCount++;
                     if (placeCount > STRICT_MAX_PLACE_BLOCK) {
                         return "too many PLACE_BLOCK commands (" + placeCount + " > " + STRICT_MAX_PLACE_BLOCK + ")";
@@ -244,10 +571,12 @@ public final class AiBuildLocalService {
                     totalCost += 1; // 1 блок = 1
                 }
 
-                case "CLEAR_AROUND" -> {
-                    if (parts.length < 2) return "CLEAR_AROUND missing radius";
-                    int r = parseIntSafe(parts[1], -1);
-                    if (r < 0) return "CLEAR_AROUND invalid radius: " + parts[1];
+                case DslProgram.OP_CLEAR_AROUND -> {
+                    if (status == DslProgram.BAD_ARITY) return "CLEAR_AROUND missing radius";
+                    int r = program.arg(i, 0);
+                    if (status == DslProgram.BAD_NUMBER || r < 0) {
+                        return "CLEAR_AROUND invalid radius: " + program.line(i);
+                    }
                     if (r > STRICT_MAX_CLEAR_AROUND_RADIUS) {
                         return "CLEAR_AROUND radius too large (" + r + " > " + STRICT_MAX_CLEAR_AROUND_RADIUS + ")";
                     }
@@ -257,12 +586,12 @@ public final class AiBuildLocalService {
                     totalCost += area;
                 }
 
-                case "BUILD_BOX" -> {
-                    if (parts.length < 4) return "BUILD_BOX missing sizes";
-                    int w = parseIntSafe(parts[1], -1);
-                    int h = parseIntSafe(parts[2], -1);
-                    int d = parseIntSafe(parts[3], -1);
-                    if (w < 1 || h < 1 || d < 1) return "BUILD_BOX invalid sizes";
+                case DslProgram.OP_BUILD_BOX -> {
+                    if (status == DslProgram.BAD_ARITY) return "BUILD_BOX missing sizes";
+                    int w = program.arg(i, 0);
+                    int h = program.arg(i, 1);
+                    int d = program.arg(i, 2);
+                    if (status == DslProgram.BAD_NUMBER || w < 1 || h < 1 || d < 1) return "BUILD_BOX invalid sizes";
                     if (w > STRICT_MAX_BOX_W || h > STRICT_MAX_BOX_H || d > STRICT_MAX_BOX_D) {
                         return "BUILD_BOX too large (" + w + "x" + h + "x" + d + ") max=("
                                 + STRICT_MAX_BOX_W + "x" + STRICT_MAX_BOX_H + "x" + STRICT_MAX_BOX_D + ")";
@@ -283,7 +612,7 @@ public final class AiBuildLocalService {
         }
 
         // --- Plan estimator checks (bbox / distance / changed blocks) ---
-        DslPlanEstimator.PlanEstimate est = DslPlanEstimator.estimate(lines);
+        DslPlanEstimator.PlanEstimate est = DslPlanEstimator.estimate(program);
         if (est.failReason != null) {
             return "plan estimate failed: " + est.failReason;
         }
@@ -307,19 +636,61 @@ public final class AiBuildLocalService {
         return null;
     }
 
-    private static int parseIntSafe(String s, int def) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignored) {
-            return def;
+    /**
+     * Потоковий preview: кожен завершений DSL-рядок одразу в чат (на server thread),
+     * але не більше CHAT_PREVIEW_MAX_LINES. Викликається з LLM-потоку.
+     */
+    private static final class StreamPreview implements Consumer<String> {
+        private final MinecraftServer server;
+        private final UUID playerId;
+        private final AtomicReference<StreamPreview> owner;
+        private int count;
+
+        StreamPreview(MinecraftServer server, UUID playerId, AtomicReference<StreamPreview> owner) {
+            this.server = server;
+            this.playerId = playerId;
+            this.owner = owner;
+        }
+
+        boolean owns() {
+            return owner.get() == this;
+        }
+
+        @Override
+        public void accept(String line) {
+            if (!owner.compareAndSet(null, this) && !owns()) return;
+
+            int n = ++count;
+            if (n > CHAT_PREVIEW_MAX_LINES) return;
+
+            server.execute(() -> {
+                ServerPlayer p = server.getPlayerList().getPlayer(playerId);
+                if (p == null) return;
+                if (n == 1) {
+                    p.sendMessage(new TextComponent("build_local: generating... (live preview)"), p.getUUID());
+                }
+                p.sendMessage(new TextComponent(n + ") " + line), p.getUUID());
+            });
         }
     }
 
-    private static void sendPreviewToChat(ServerPlayer p, List<String> lines) {
+    /** Скільки перших рядків фінального DSL збігаються з уже показаними під час стріму. */
+    private static int previewedPrefix(List<String> streamed, List<String> lines) {
+        int max = Math.min(Math.min(streamed.size(), lines.size()), CHAT_PREVIEW_MAX_LINES);
+        int n = 0;
+        while (n < max && streamed.get(n).equals(lines.get(n))) n++;
+        return n;
+    }
+
+    private static void sendPreviewToChat(ServerPlayer p, List<String> lines, int alreadyShown) {
         int total = lines == null ? 0 : lines.size();
         int max = Math.min(total, CHAT_PREVIEW_MAX_LINES);
 
-        for (int i = 0; i < max; i++) {
+        if (alreadyShown >= max && max > 0) {
+            p.sendMessage(new TextComponent("(see live preview above)"), p.getUUID());
+        }
+
+        for (int i = alreadyShown; i < max; i++) {
             p.sendMessage(new TextComponent((i + 1) + ") " + lines.get(i)), p.getUUID());
         }
 
@@ -328,7 +699,7 @@ public final class AiBuildLocalService {
         }
     }
 
-    private static String safeMsg(Exception e) {
+    private static String safeMsg(Throwable e) {
         String m = (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
         if (m.length() > 220) m = m.substring(0, 220) + "...";
         return m;
@@ -1,6 +1,7 @@
 package com.example.hellomod.ai.local;
 
 import com.example.hellomod.AiPolicy;
+import com.example.hellomod.llm.LlmPrompt;
 
 import java.util.Locale;
 import java.util.StringJoiner;
@@ -12,36 +13,66 @@ import java.util.StringJoiner;
  * when it is in the allowed list.
  *
  * Contract: DSL strictly between BEGIN_DSL and END_DSL.
+ *
+ * Layout: byte-stable static prefix (system part) first, then world context and the player request.
+ * Keeping the request out of the prefix lets llama.cpp / Ollama reuse the prefix KV cache.
  */
 public final class BuildLocalPromptBuilder {
 
     private BuildLocalPromptBuilder() {}
 
+    // Keep prompt small to reduce latency.
+    static final int PROMPT_MAX_TOTAL_CMDS = 40;
+    private static final int PROMPT_MAX_PLACE_BLOCK = 25;
+
+    /**
+     * Everything that does not depend on the request: rules, DSL, allowed blocks, examples.
+     * Built once and never changes, so the backend can reuse its KV cache for this prefix.
+     * Do not put anything request-specific here.
+     */
+    private static final String STATIC_PREFIX = buildStaticPrefix();
+
+    /** Static prefix as system part + player request / world context as user part. */
+    public static LlmPrompt build(String thing, String worldContext) {
+        return new LlmPrompt(STATIC_PREFIX, buildDynamic(thing, worldContext));
+    }
+
+    /** Whole prompt as one text (same content as build(...)). */
     public static String buildPrompt(String thing, String worldContext) {
+        return build(thing, worldContext).text();
+    }
+
+    /**
+     * Follow-up prompt for DslRepair: same static prefix (its KV cache is still warm),
+     * then only the rejected lines with their validator errors.
+     */
+    public static LlmPrompt buildRepair(String thing, DslRepair.Plan plan) {
         String safeThing = thing == null ? "" : thing.trim();
-        String safeWorld = worldContext == null ? "" : worldContext.trim();
 
-        // Keep prompt small to reduce latency.
-        final int PROMPT_MAX_TOTAL_CMDS = 40;
-        final int PROMPT_MAX_PLACE_BLOCK = 25;
+        StringBuilder sb = new StringBuilder();
+        sb.append("PLAYER_REQUEST:\n");
+        sb.append(safeThing.isEmpty() ? "(empty)\n" : safeThing).append("\n\n");
 
-        // Detect if the user clearly asked for a specific allowed block (best effort).
-        // This is only used to bias the prompt, not to enforce in code.
-        String requestedBlock = tryDetectRequestedAllowedBlock(safeThing);
+        sb.append("REPAIR_REQUEST:\n");
+        sb.append("Some lines of your script were rejected by the validator.\n");
+        sb.append("Fix ONLY these lines. Return exactly ").append(plan.size())
+                .append(" corrected line(s), in the same order, one DSL command per line.\n\n");
+
+        for (int k = 0; k < plan.size(); k++) {
+            sb.append(k + 1).append(") ").append(plan.lines.get(k)).append("\n");
+            sb.append("   error: ").append(plan.errors.get(k)).append("\n");
+        }
+        sb.append("\nReturn ONLY DSL between BEGIN_DSL and END_DSL.\n");
 
+        return new LlmPrompt(STATIC_PREFIX, sb.toString());
+    }
+
+    private static String buildStaticPrefix() {
         StringBuilder sb = new StringBuilder();
         sb.append("You are a Minecraft building SCRIPT generator.\n");
         sb.append("Generate a SHORT script in the DSL below.\n");
         sb.append("Return ONLY DSL between markers. No extra text.\n\n");
 
-        sb.append("PLAYER_REQUEST:\n");
-        sb.append(safeThing.isEmpty() ? "(empty)\n" : safeThing).append("\n\n");
-
-        if (!safeWorld.isEmpty()) {
-            sb.append("### WORLD_CONTEXT\n");
-            sb.append(safeWorld).append("\n\n");
-        }
-
         sb.append("HARD RULES (STRICT):\n");
         sb.append("- Do not place blocks in water unless the player explicitly requests building in/over water.\n");
         sb.append("- Avoid replacing or clearing existing trees unless the player explicitly requests it.\n");
@@ -77,12 +108,6 @@ public final class BuildLocalPromptBuilder {
                 .append(", |dy| <= ").append(AiPolicy.MAX_ABS_DY)
                 .append(", |dz| <= ").append(AiPolicy.MAX_ABS_DZ).append("\n\n");
 
-        if (requestedBlock != null) {
-            sb.append("REQUESTED_BLOCK_HINT:\n");
-            sb.append("- The user asked for block: ").append(requestedBlock).append("\n");
-            sb.append("- Use it exactly in PLACE_BLOCK.\n\n");
-        }
-
         sb.append("EXAMPLES (FORMAT + BEHAVIOR):\n");
         sb.append("Example A (torch above player):\n");
         sb.append("BEGIN_DSL\n");
@@ -105,6 +130,34 @@ public final class BuildLocalPromptBuilder {
         return sb.toString();
     }
 
+    /** Request-specific part; always after the static prefix. */
+    private static String buildDynamic(String thing, String worldContext) {
+        String safeThing = thing == null ? "" : thing.trim();
+        String safeWorld = worldContext == null ? "" : worldContext.trim();
+
+        // Detect if the user clearly asked for a specific allowed block (best effort).
+        // This is only used to bias the prompt, not to enforce in code.
+        String requestedBlock = tryDetectRequestedAllowedBlock(safeThing);
+
+        StringBuilder sb = new StringBuilder();
+        if (!safeWorld.isEmpty()) {
+            sb.append("### WORLD_CONTEXT\n");
+            sb.append(safeWorld).append("\n\n");
+        }
+
+        if (requestedBlock != null) {
+            sb.append("REQUESTED_BLOCK_HINT:\n");
+            sb.append("- The user asked for block: ").append(requestedBlock).append("\n");
+            sb.append("- Use it exactly in PLACE_BLOCK.\n\n");
+        }
+
+        sb.append("PLAYER_REQUEST:\n");
+        sb.append(safeThing.isEmpty() ? "(empty)\n" : safeThing).append("\n\n");
+        sb.append("Return ONLY DSL between BEGIN_DSL and END_DSL.\n");
+
+        return sb.toString();
+    }
+
     private static String joinAllowedBlocks() {
         StringJoiner j = new StringJoiner(", ");
         for (String b : AiPolicy.ALLOWED_BLOCKS) j.add(b);
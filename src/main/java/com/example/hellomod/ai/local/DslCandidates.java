@@ -0,0 +1,98 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiScriptValidator;
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Вибір найкращої з кількох відповідей LLM (Config.candidates > 1).
+ *
+ * Порядок (кращий — перший):
+ * 1) розібралась і пройшла AiScriptValidator + DslPlanEstimator без failReason;
+ * 2) менше помилок валідатора (серед невалідних — ту, що ближча до валідної, ще й DslRepair полатає);
+ * 3) менше змінених блоків (оцінка DslPlanEstimator);
+ * 4) менший bounding box.
+ * При рівності лишається перша — порядок відповіді сервера.
+ */
+public final class DslCandidates {
+
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static final AtomicLong CANDIDATES = new AtomicLong();
+    private static final AtomicLong VALID = new AtomicLong();
+
+    /** Оцінка одного кандидата. */
+    static final class Score {
+        final int index;
+        final String text;
+        final boolean parsed;
+        final int errors;
+        final boolean valid;
+        final long changedBlocks;
+        final long bboxVolume;
+
+        Score(int index, String text) {
+            this.index = index;
+            this.text = text;
+
+            LlmResponseParser.ParseResult p = LlmResponseParser.parse(text);
+            this.parsed = p.ok();
+            if (!parsed) {
+                errors = Integer.MAX_VALUE;
+                valid = false;
+                changedBlocks = Long.MAX_VALUE;
+                bboxVolume = Long.MAX_VALUE;
+                return;
+            }
+
+            DslProgram program = DslCompiler.compile(p.dslLines());
+            AiScriptValidator.Report report = AiScriptValidator.validate(program);
+            DslPlanEstimator.PlanEstimate est = DslPlanEstimator.estimate(program);
+
+            errors = report.errors.size() + (est.failReason != null ? 1 : 0);
+            valid = errors == 0;
+            changedBlocks = est.changedBlocks;
+            bboxVolume = est.bboxVolume;
+        }
+
+        boolean betterThan(Score o) {
+            if (valid != o.valid) return valid;
+            if (errors != o.errors) return errors < o.errors;
+            if (changedBlocks != o.changedBlocks) return changedBlocks < o.changedBlocks;
+            return bboxVolume < o.bboxVolume;
+        }
+
+        @Override
+        public String toString() {
+            if (!parsed) return "#" + index + " unparsed";
+            return "#" + index + (valid ? " valid" : " errors=" + errors)
+                    + " blocks=" + changedBlocks + " bbox=" + bboxVolume;
+        }
+    }
+
+    private DslCandidates() {}
+
+    /** Найкращий кандидат (DSL-текст, як прийшов). Список не порожній. */
+    static Score pick(List<String> texts) {
+        Score best = null;
+        boolean anyValid = false;
+        for (int i = 0; i < texts.size(); i++) {
+            Score s = new Score(i, texts.get(i));
+            anyValid |= s.valid;
+            if (best == null || s.betterThan(best)) best = s;
+        }
+
+        REQUESTS.incrementAndGet();
+        CANDIDATES.addAndGet(texts.size());
+        if (anyValid) VALID.incrementAndGet();
+        return best;
+    }
+
+    /** Для /ai llm_status. */
+    public static String stats() {
+        return "candidates: requests=" + REQUESTS.get() + " generated=" + CANDIDATES.get()
+                + " withValid=" + VALID.get();
+    }
+}
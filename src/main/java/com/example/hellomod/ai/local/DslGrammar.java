@@ -0,0 +1,221 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiPolicy;
+import com.example.hellomod.llm.LlmPrompt;
+import com.example.hellomod.llm.LocalLlmClient;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Формальна граматика DSL для обмеженої генерації (Config.grammar).
+ *
+ * GBNF (llama.cpp) — той самий текстовий формат, що й у промпті:
+ *   BEGIN_DSL, 1..PROMPT_MAX_TOTAL_CMDS рядків, END_DSL;
+ *   PLACE_BLOCK лише з AiPolicy.ALLOWED_BLOCKS і dx/dy/dz у межах AiPolicy.MAX_ABS_*;
+ *   CLEAR_AROUND 1..MAX_CLEAR_RADIUS; BUILD_BOX 1..MAX_BOX_SIZE.
+ * JSON schema (Ollama format) — ті самі команди й межі, але як {"commands":[{...}]};
+ * toDsl(...) перетворює таку відповідь назад у BEGIN_DSL/END_DSL текст, тож далі все як завжди.
+ *
+ * Обидві граматики будуються один раз (AiPolicy — константи) і однакові між запитами.
+ */
+public final class DslGrammar {
+
+    private static final Gson GSON = new Gson();
+
+    private static final String GBNF = buildGbnf();
+    private static final String JSON_SCHEMA = GSON.toJson(buildJsonSchema());
+
+    // Ollama радить згадати JSON у промпті — інакше модель гірше тримає схему
+    private static final String JSON_HINT = "\nAnswer as JSON {\"commands\":[...]}, one object per DSL command "
+            + "(op, block/dx/dy/dz for PLACE_BLOCK, radius for CLEAR_AROUND, width/height/depth for BUILD_BOX).\n";
+
+    private DslGrammar() {}
+
+    /** Промпт з граматикою під конкретний бекенд (або як є, якщо обмеження вимкнено). */
+    public static LlmPrompt constrain(LlmPrompt prompt, LocalLlmClient client) {
+        if (client.usesGrammar()) return prompt.withGrammar(GBNF);
+        if (client.usesJsonSchema()) return prompt.withJsonSchema(JSON_SCHEMA, JSON_HINT);
+        return prompt;
+    }
+
+    public static String gbnf() {
+        return GBNF;
+    }
+
+    public static String jsonSchema() {
+        return JSON_SCHEMA;
+    }
+
+    /**
+     * JSON-відповідь за схемою -> "BEGIN_DSL\n...\nEND_DSL".
+     * Якщо це не наш JSON — повертаємо як є, нехай LlmResponseParser / валідатор скажуть, що не так.
+     */
+    public static String toDsl(String json) {
+        if (json == null) return "";
+        JsonObject obj;
+        try {
+            obj = GSON.fromJson(json.trim(), JsonObject.class);
+        } catch (RuntimeException e) {
+            return json;
+        }
+        if (obj == null || !obj.has("commands") || !obj.get("commands").isJsonArray()) return json;
+
+        StringBuilder sb = new StringBuilder(LlmResponseParser.BEGIN).append('\n');
+        for (JsonElement el : obj.getAsJsonArray("commands")) {
+            if (!el.isJsonObject()) continue;
+            JsonObject c = el.getAsJsonObject();
+            String op = str(c, "op");
+            switch (op) {
+                case "PLACE_BLOCK" -> sb.append("PLACE_BLOCK ").append(str(c, "block"))
+                        .append(' ').append(str(c, "dx"))
+                        .append(' ').append(str(c, "dy"))
+                        .append(' ').append(str(c, "dz"));
+                case "CLEAR_AROUND" -> sb.append("CLEAR_AROUND ").append(str(c, "radius"));
+                case "BUILD_BOX" -> sb.append("BUILD_BOX ").append(str(c, "width"))
+                        .append(' ').append(str(c, "height"))
+                        .append(' ').append(str(c, "depth"));
+                default -> sb.append(op); // невідома команда — хай валідатор відхилить
+            }
+            sb.append('\n');
+        }
+        return sb.append(LlmResponseParser.END).toString();
+    }
+
+    private static String str(JsonObject o, String key) {
+        JsonElement e = o.get(key);
+        return (e == null || e.isJsonNull()) ? "" : e.getAsString();
+    }
+
+    // ─────────────────────────────────────────
+    // GBNF
+    // ─────────────────────────────────────────
+
+    private static String buildGbnf() {
+        StringBuilder g = new StringBuilder();
+        g.append("root ::= \"").append(LlmResponseParser.BEGIN).append("\\n\" line{1,")
+                .append(BuildLocalPromptBuilder.PROMPT_MAX_TOTAL_CMDS).append("} \"")
+                .append(LlmResponseParser.END).append("\"\n");
+        g.append("line ::= (place | clear | box) \"\\n\"\n");
+        g.append("place ::= \"PLACE_BLOCK \" block \" \" dx \" \" dy \" \" dz\n");
+        g.append("clear ::= \"CLEAR_AROUND \" radius\n");
+        g.append("box ::= \"BUILD_BOX \" size \" \" size \" \" size\n");
+        g.append("block ::= ").append(alternatives(allowedBlocks())).append('\n');
+        g.append("dx ::= ").append(alternatives(range(-AiPolicy.MAX_ABS_DX, AiPolicy.MAX_ABS_DX))).append('\n');
+        g.append("dy ::= ").append(alternatives(range(-AiPolicy.MAX_ABS_DY, AiPolicy.MAX_ABS_DY))).append('\n');
+        g.append("dz ::= ").append(alternatives(range(-AiPolicy.MAX_ABS_DZ, AiPolicy.MAX_ABS_DZ))).append('\n');
+        g.append("radius ::= ").append(alternatives(range(1, AiPolicy.MAX_CLEAR_RADIUS))).append('\n');
+        g.append("size ::= ").append(alternatives(range(1, AiPolicy.MAX_BOX_SIZE))).append('\n');
+        return g.toString();
+    }
+
+    /**
+     * Числа перелічуємо явно: діапазони маленькі (до ~80 значень), а так межі точні
+     * без складних правил на цифри.
+     */
+    private static List<String> range(int min, int max) {
+        List<String> out = new ArrayList<>(max - min + 1);
+        for (int i = min; i <= max; i++) out.add(Integer.toString(i));
+        return out;
+    }
+
+    private static String alternatives(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String v : values) {
+            if (sb.length() > 0) sb.append(" | ");
+            sb.append('"').append(v).append('"');
+        }
+        return sb.toString();
+    }
+
+    /** Set.of не має стабільного порядку — сортуємо, щоб граматика була однакова між запусками. */
+    private static List<String> allowedBlocks() {
+        List<String> blocks = new ArrayList<>(AiPolicy.ALLOWED_BLOCKS);
+        blocks.sort(null);
+        return blocks;
+    }
+
+    // ─────────────────────────────────────────
+    // JSON schema
+    // ─────────────────────────────────────────
+
+    private static JsonObject buildJsonSchema() {
+        JsonArray anyOf = new JsonArray();
+        anyOf.add(command("PLACE_BLOCK",
+                "block", blockSchema(),
+                "dx", intSchema(-AiPolicy.MAX_ABS_DX, AiPolicy.MAX_ABS_DX),
+                "dy", intSchema(-AiPolicy.MAX_ABS_DY, AiPolicy.MAX_ABS_DY),
+                "dz", intSchema(-AiPolicy.MAX_ABS_DZ, AiPolicy.MAX_ABS_DZ)));
+        anyOf.add(command("CLEAR_AROUND",
+                "radius", intSchema(1, AiPolicy.MAX_CLEAR_RADIUS)));
+        anyOf.add(command("BUILD_BOX",
+                "width", intSchema(1, AiPolicy.MAX_BOX_SIZE),
+                "height", intSchema(1, AiPolicy.MAX_BOX_SIZE),
+                "depth", intSchema(1, AiPolicy.MAX_BOX_SIZE)));
+
+        JsonObject items = new JsonObject();
+        items.add("anyOf", anyOf);
+
+        JsonObject commands = new JsonObject();
+        commands.addProperty("type", "array");
+        commands.addProperty("minItems", 1);
+        commands.addProperty("maxItems", BuildLocalPromptBuilder.PROMPT_MAX_TOTAL_CMDS);
+        commands.add("items", items);
+
+        JsonObject props = new JsonObject();
+        props.add("commands", commands);
+
+        JsonObject root = new JsonObject();
+        root.addProperty("type", "object");
+        root.add("properties", props);
+        root.add("required", strings("commands"));
+        return root;
+    }
+
+    /** {"type":"object","properties":{"op":{"enum":[op]}, ...fields},"required":[...]} */
+    private static JsonObject command(String op, Object... fields) {
+        JsonObject props = new JsonObject();
+        JsonObject opSchema = new JsonObject();
+        opSchema.add("enum", strings(op));
+        props.add("op", opSchema);
+
+        List<String> required = new ArrayList<>();
+        required.add("op");
+        for (int i = 0; i < fields.length; i += 2) {
+            String name = (String) fields[i];
+            props.add(name, (JsonObject) fields[i + 1]);
+            required.add(name);
+        }
+
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "object");
+        o.add("properties", props);
+        o.add("required", strings(required.toArray(new String[0])));
+        return o;
+    }
+
+    private static JsonObject intSchema(int min, int max) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "integer");
+        o.addProperty("minimum", min);
+        o.addProperty("maximum", max);
+        return o;
+    }
+
+    private static JsonObject blockSchema() {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "string");
+        o.add("enum", strings(allowedBlocks().toArray(new String[0])));
+        return o;
+    }
+
+    private static JsonArray strings(String... values) {
+        JsonArray a = new JsonArray();
+        for (String v : values) a.add(v);
+        return a;
+    }
+}
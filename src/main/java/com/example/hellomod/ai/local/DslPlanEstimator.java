@@ -1,5 +1,8 @@
 package com.example.hellomod.ai.local;
 
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
+
 import java.util.List;
 
 /**
@@ -18,49 +21,47 @@ public final class DslPlanEstimator {
     private DslPlanEstimator() {}
 
     public static PlanEstimate estimate(List<String> lines) {
-        PlanEstimate e = new PlanEstimate();
-        if (lines == null) return e;
-
-        for (String raw : lines) {
-            if (raw == null) continue;
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
+        if (lines == null) return new PlanEstimate();
+        return estimate(DslCompiler.compile(lines));
+    }
 
-            String[] parts = line.split("\\s+");
-            if (parts.length == 0) continue;
+    public static PlanEstimate estimate(DslProgram program) {
+        PlanEstimate e = new PlanEstimate();
+        if (program == null) return e;
 
-            String cmd = parts[0].toUpperCase();
+        for (int i = 0; i < program.size(); i++) {
+            int status = program.status(i);
 
-            switch (cmd) {
-                case "PLACE_BLOCK" -> {
+            switch (program.op(i)) {
+                case DslProgram.OP_PLACE_BLOCK -> {
                     // PLACE_BLOCK block dx dy dz
-                    if (parts.length < 5) {
+                    if (status == DslProgram.BAD_ARITY) {
                         e.failReason = "PLACE_BLOCK invalid format";
                         return e;
                     }
-                    int dx = parseIntSafe(parts[2], Integer.MIN_VALUE);
-                    int dy = parseIntSafe(parts[3], Integer.MIN_VALUE);
-                    int dz = parseIntSafe(parts[4], Integer.MIN_VALUE);
-                    if (dx == Integer.MIN_VALUE || dy == Integer.MIN_VALUE || dz == Integer.MIN_VALUE) {
+                    if (status == DslProgram.BAD_NUMBER) {
                         e.failReason = "PLACE_BLOCK invalid coords";
                         return e;
                     }
+                    int dx = program.arg(i, 1);
+                    int dy = program.arg(i, 2);
+                    int dz = program.arg(i, 3);
 
                     e.changedBlocks += 1;
                     e.expandBbox(dx, dy, dz, dx, dy, dz);
                     e.updateMaxDistByBox(dx, dy, dz, dx, dy, dz);
                 }
 
-                case "BUILD_BOX" -> {
+                case DslProgram.OP_BUILD_BOX -> {
                     // BUILD_BOX w h d, base = (2,0,2)
-                    if (parts.length < 4) {
+                    if (status == DslProgram.BAD_ARITY) {
                         e.failReason = "BUILD_BOX invalid format";
                         return e;
                     }
-                    int w = parseIntSafe(parts[1], Integer.MIN_VALUE);
-                    int h = parseIntSafe(parts[2], Integer.MIN_VALUE);
-                    int d = parseIntSafe(parts[3], Integer.MIN_VALUE);
-                    if (w <= 0 || h <= 0 || d <= 0) {
+                    int w = program.arg(i, 0);
+                    int h = program.arg(i, 1);
+                    int d = program.arg(i, 2);
+                    if (status == DslProgram.BAD_NUMBER || w <= 0 || h <= 0 || d <= 0) {
                         e.failReason = "BUILD_BOX invalid sizes";
                         return e;
                     }
@@ -79,14 +80,14 @@ public final class DslPlanEstimator {
                     e.updateMaxDistByBox(minX, minY, minZ, maxX, maxY, maxZ);
                 }
 
-                case "CLEAR_AROUND" -> {
+                case DslProgram.OP_CLEAR_AROUND -> {
                     // CLEAR_AROUND r, affects x/z [-r..r], y [0..10]
-                    if (parts.length < 2) {
+                    if (status == DslProgram.BAD_ARITY) {
                         e.failReason = "CLEAR_AROUND invalid format";
                         return e;
                     }
-                    int r = parseIntSafe(parts[1], Integer.MIN_VALUE);
-                    if (r <= 0) {
+                    int r = program.arg(i, 0);
+                    if (status == DslProgram.BAD_NUMBER || r <= 0) {
                         e.failReason = "CLEAR_AROUND invalid radius";
                         return e;
                     }
@@ -109,7 +110,7 @@ public final class DslPlanEstimator {
                 default -> {
                     // Якщо сюди потрапило — або нова команда, або шум.
                     // Валідатор зазвичай це відріже, але для strict-оцінки краще стопнути.
-                    e.failReason = "Unknown command in estimator: " + cmd;
+                    e.failReason = "Unknown command in estimator: " + program.commandToken(i);
                     return e;
                 }
             }
@@ -119,14 +120,6 @@ public final class DslPlanEstimator {
         return e;
     }
 
-    private static int parseIntSafe(String s, int def) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignored) {
-            return def;
-        }
-    }
-
     public static final class PlanEstimate {
         public long changedBlocks = 0;
 
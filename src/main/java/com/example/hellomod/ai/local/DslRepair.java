@@ -0,0 +1,92 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiScriptValidator;
+import com.example.hellomod.dsl.DslCompiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Частковий ремонт відповіді LLM: замість нової генерації всього скрипта
+ * відправляємо моделі лише рядки, які не пройшли AiScriptValidator, разом з помилками,
+ * і вставляємо виправлені рядки на їхні місця.
+ *
+ * Ремонтуємо лише помилки конкретних рядків (заборонений блок, координати, формат).
+ * Помилки на весь скрипт (забагато команд / PLACE_BLOCK) рядком не виправиш — там ремонту немає.
+ *
+ * ai.llm.repair.maxLines (дефолт 8, 0 = вимкнено) — якщо поганих рядків більше,
+ * дешевше згенерувати заново, ніж латати.
+ */
+public final class DslRepair {
+
+    private static final int MAX_REPAIR_LINES = Math.max(0, Integer.getInteger("ai.llm.repair.maxLines", 8));
+
+    private static final AtomicLong ATTEMPTS = new AtomicLong();
+    private static final AtomicLong REPAIRED = new AtomicLong();
+
+    /** Що саме ремонтуємо: індекси рядків у скрипті, самі рядки і помилки до них. */
+    public static final class Plan {
+        public final List<Integer> indices;
+        public final List<String> lines;
+        public final List<String> errors;
+
+        private Plan(List<Integer> indices, List<String> lines, List<String> errors) {
+            this.indices = indices;
+            this.lines = lines;
+            this.errors = errors;
+        }
+
+        public int size() {
+            return indices.size();
+        }
+    }
+
+    private DslRepair() {}
+
+    /** null — скрипт валідний, або ремонт рядками не допоможе / вимкнений. */
+    public static Plan find(List<String> lines) {
+        if (MAX_REPAIR_LINES == 0 || lines == null || lines.isEmpty()) return null;
+        if (AiScriptValidator.validateLines(lines).ok()) return null;
+
+        List<Integer> indices = new ArrayList<>();
+        List<String> bad = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            AiScriptValidator.Report r = AiScriptValidator.validate(DslCompiler.compile(Collections.singletonList(line)));
+            if (r.ok()) continue;
+
+            indices.add(i);
+            bad.add(line);
+            errors.add(String.join("; ", r.errors));
+            if (indices.size() > MAX_REPAIR_LINES) return null;
+        }
+
+        if (indices.isEmpty()) return null; // лише помилки на весь скрипт
+        return new Plan(indices, bad, errors);
+    }
+
+    /** Вставити виправлені рядки; null — модель повернула не стільки рядків, скільки просили. */
+    public static List<String> splice(List<String> lines, Plan plan, List<String> fixed) {
+        if (fixed == null || fixed.size() != plan.size()) return null;
+
+        List<String> out = new ArrayList<>(lines);
+        for (int k = 0; k < plan.size(); k++) {
+            out.set(plan.indices.get(k), fixed.get(k));
+        }
+        return out;
+    }
+
+    static void recordAttempt(boolean success) {
+        ATTEMPTS.incrementAndGet();
+        if (success) REPAIRED.incrementAndGet();
+    }
+
+    /** Для /ai llm_status. */
+    public static String stats() {
+        return "repair: maxLines=" + MAX_REPAIR_LINES + " attempts=" + ATTEMPTS.get() + " repaired=" + REPAIRED.get();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiPolicy;
+import com.example.hellomod.AiScriptValidator;
+import com.example.hellomod.RulePlanner;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Роутер намірів перед /ai build_local: прості, добре відомі запити збираємо правилами
+ * (RulePlanner, шаблони AiParser) за мікросекунди, і лише нове/складне йде в LLM.
+ *
+ * Правила перевіряються по черзі, перше, що спрацювало, — виграє. Правило, яке впізнало запит,
+ * але не змогло нічого побудувати (напр. міст без води попереду), повертає null — тоді йдемо в LLM.
+ * Так само йдемо в LLM, якщо план правила не проходить AiScriptValidator (ліміти AiPolicy):
+ * DRY-RUN не повинен відхиляти те, що роутер сам зібрав.
+ *
+ * Server thread (деякі правила читають світ, як RulePlanner.planBridge).
+ */
+public final class IntentRouter {
+
+    /** Результат: DSL-рядки від правила і його назва (для повідомлень і статистики). */
+    public static final class Match {
+        public final String rule;
+        public final List<String> lines;
+
+        Match(String rule, List<String> lines) {
+            this.rule = rule;
+            this.lines = lines;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Planner {
+        /** null — правило не змогло побудувати план. */
+        String plan(Matcher m, ServerLevel level, ServerPlayer player);
+    }
+
+    private static final class Rule {
+        final String name;
+        final Pattern pattern;
+        final Planner planner;
+        final AtomicLong hits = new AtomicLong();
+
+        Rule(String name, String regex, Planner planner) {
+            this.name = name;
+            this.pattern = Pattern.compile(regex);
+            this.planner = planner;
+        }
+    }
+
+    private static final List<Rule> RULES = new ArrayList<>();
+
+    static {
+        // "build box 5 4 6", "box 5x4x6" (як AiParser)
+        RULES.add(new Rule("box",
+                "^(?:build\\s+)?(?:a\\s+)?box\\s+(\\d{1,3})\\s*[x ]\\s*(\\d{1,3})\\s*[x ]\\s*(\\d{1,3})$",
+                (m, level, player) -> {
+                    int w = Integer.parseInt(m.group(1));
+                    int h = Integer.parseInt(m.group(2));
+                    int d = Integer.parseInt(m.group(3));
+                    if (!inRange(w, 1, AiPolicy.MAX_BOX_SIZE) || !inRange(h, 1, AiPolicy.MAX_BOX_SIZE)
+                            || !inRange(d, 1, AiPolicy.MAX_BOX_SIZE)) return null;
+                    return "BUILD_BOX " + w + " " + h + " " + d;
+                }));
+
+        // "clear around 5", "clear 5" (як AiParser)
+        RULES.add(new Rule("clear",
+                "^clear(?:\\s+around)?\\s+(\\d{1,3})$",
+                (m, level, player) -> {
+                    int r = Integer.parseInt(m.group(1));
+                    return inRange(r, 1, AiPolicy.MAX_CLEAR_RADIUS) ? "CLEAR_AROUND " + r : null;
+                }));
+
+        // "platform", "a 9x9 platform", "platform 5", "platform 5x9" (RulePlanner.planPlatform)
+        RULES.add(new Rule("platform",
+                "^(?:build\\s+)?(?:a\\s+)?(?:(\\d{1,2})\\s*x\\s*(\\d{1,2})\\s+)?(?:platform|floor)(?:\\s+(\\d{1,2})(?:\\s*x\\s*(\\d{1,2}))?)?$",
+                (m, level, player) -> {
+                    int w = RulePlanner.DEFAULT_PLATFORM_SIZE;
+                    int d = w;
+                    if (m.group(1) != null) {
+                        w = Integer.parseInt(m.group(1));
+                        d = Integer.parseInt(m.group(2));
+                    } else if (m.group(3) != null) {
+                        w = Integer.parseInt(m.group(3));
+                        d = (m.group(4) != null) ? Integer.parseInt(m.group(4)) : w;
+                    }
+                    // Дешева перевірка до генерації рядків; решту лімітів перевіряє route()
+                    if (w < 1 || d < 1 || w * d > AiPolicy.MAX_PLACE_BLOCKS) return null;
+                    return RulePlanner.planPlatform(w, d);
+                }));
+
+        // "bridge", "build a bridge" (RulePlanner.planBridge: шукає воду в напрямку погляду)
+        RULES.add(new Rule("bridge",
+                "^(?:build\\s+)?(?:a\\s+)?bridge(?:\\s+(?:here|across|over the water))?$",
+                (m, level, player) -> {
+                    String plan = RulePlanner.planBridge(level, player);
+                    return plan.contains("PLACE_BLOCK") ? plan : null;
+                }));
+
+        // "torch", "place a torch above me" (як Example A у промпті)
+        RULES.add(new Rule("torch",
+                "^(?:place\\s+|put\\s+)?(?:a\\s+)?torch(?:\\s+above\\s+me)?$",
+                (m, level, player) -> "PLACE_BLOCK torch 0 2 0"));
+    }
+
+    private static final AtomicLong ROUTED = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong ROUTE_NANOS = new AtomicLong();
+
+    private IntentRouter() {}
+
+    /** Правило під запит або null (тоді — LLM). */
+    public static Match route(ServerLevel level, ServerPlayer player, String thing) {
+        long start = System.nanoTime();
+        try {
+            String t = normalize(thing);
+            if (t.isEmpty()) {
+                MISSES.incrementAndGet();
+                return null;
+            }
+
+            for (Rule rule : RULES) {
+                Matcher m = rule.pattern.matcher(t);
+                if (!m.matches()) continue;
+
+                // Впізнали, але побудувати не вийшло або план не пройде DRY-RUN — нехай вирішує LLM
+                String plan = rule.planner.plan(m, level, player);
+                if (plan == null) break;
+                List<String> lines = toLines(plan);
+                if (!AiScriptValidator.validateLines(lines).ok()) break;
+
+                rule.hits.incrementAndGet();
+                ROUTED.incrementAndGet();
+                return new Match(rule.name, lines);
+            }
+
+            MISSES.incrementAndGet();
+            return null;
+        } finally {
+            ROUTE_NANOS.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /** Для /ai llm_status: частка запитів без LLM, середній час роутингу, хіти по правилах. */
+    public static String stats() {
+        long routed = ROUTED.get();
+        long total = routed + MISSES.get();
+        long avgUs = (total == 0) ? 0 : ROUTE_NANOS.get() / total / 1000;
+
+        Map<String, Long> perRule = new LinkedHashMap<>();
+        for (Rule r : RULES) perRule.put(r.name, r.hits.get());
+
+        return "router: rules=" + routed + "/" + total
+                + (total == 0 ? "" : " (" + (routed * 100 / total) + "%)")
+                + " llm=" + MISSES.get()
+                + " avg=" + avgUs + "us"
+                + " hits=" + perRule;
+    }
+
+    private static String normalize(String thing) {
+        if (thing == null) return "";
+        String t = thing.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        while (t.endsWith(".") || t.endsWith("!")) t = t.substring(0, t.length() - 1).trim();
+        return t;
+    }
+
+    private static boolean inRange(int v, int min, int max) {
+        return v >= min && v <= max;
+    }
+
+    /** DSL-текст правила -> рядки (без коментарів і порожніх, як їх бачить LLM-шлях). */
+    private static List<String> toLines(String plan) {
+        List<String> out = new ArrayList<>();
+        for (String line : plan.split("\n")) {
+            String s = line.trim();
+            if (s.isEmpty() || s.startsWith("#") || s.startsWith("//")) continue;
+            out.add(s);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiPolicy;
+import com.example.hellomod.AiScriptValidator;
+import com.example.hellomod.dsl.DslCompiler;
+import com.example.hellomod.dsl.DslProgram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Інкрементальний парсер DSL для потокової відповіді LLM.
+ *
+ * feed(chunk) приймає шматки тексту як прийшли з мережі і віддає в onLine кожен завершений DSL-рядок
+ * (по '\n'), не чекаючи кінця генерації. Правила ті самі, що в LlmResponseParser:
+ * - після BEGIN_DSL беремо всі змістовні рядки до END_DSL;
+ * - без маркерів віддаємо лише рядки, що схожі на команду DSL (балачки моделі в preview не потрапляють);
+ * - ``` і маркери-рядки пропускаємо.
+ *
+ * Ранній обрив: feed повертає false, щойно побачили END_DSL або рядок не пройшов правила
+ * AiScriptValidator (заборонений блок, координати поза лімітом, невідома команда всередині маркерів).
+ * Далі генерувати немає сенсу — клієнт закриває з'єднання і бекенд звільняється.
+ *
+ * Остаточний результат — finish(): той самий LlmResponseParser.parse по всьому тексту,
+ * тож виконання не залежить від того, як текст порізався на шматки.
+ */
+public final class StreamingDslParser {
+
+    private final Consumer<String> onLine;
+
+    private final StringBuilder raw = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private final List<String> emitted = new ArrayList<>();
+
+    private boolean inMarkers;
+    private boolean ended;
+    private String abortReason;
+
+    public StreamingDslParser(Consumer<String> onLine) {
+        this.onLine = onLine;
+    }
+
+    /** Черговий шматок тексту від LLM. false = далі читати не треба (END_DSL або невалідний рядок). */
+    public boolean feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) return !stopped();
+        if (stopped()) return false;
+        raw.append(chunk);
+
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '\n' || c == '\r') {
+                completeLine();
+                if (stopped()) return false;
+            } else {
+                pending.append(c);
+            }
+        }
+        return true;
+    }
+
+    /** Кінець потоку: дожовуємо хвіст без '\n' і робимо повний parse. */
+    public LlmResponseParser.ParseResult finish() {
+        if (!stopped()) completeLine();
+        return LlmResponseParser.parse(raw.toString());
+    }
+
+    /** Чи бачили END_DSL (далі рядки вже не емітимо). */
+    public boolean ended() {
+        return ended;
+    }
+
+    /** Причина раннього обриву через невалідний рядок (null — не обривали). */
+    public String abortReason() {
+        return abortReason;
+    }
+
+    private boolean stopped() {
+        return ended || abortReason != null;
+    }
+
+    /** Рядки, які вже віддали в onLine (для порівняння з фінальним preview). */
+    public List<String> emittedLines() {
+        return Collections.unmodifiableList(emitted);
+    }
+
+    private void completeLine() {
+        if (pending.length() == 0) return;
+        String t = pending.toString().trim();
+        pending.setLength(0);
+        if (t.isEmpty()) return;
+
+        if (!inMarkers) {
+            int begin = indexOfIgnoreCase(t, LlmResponseParser.BEGIN);
+            if (begin >= 0) {
+                inMarkers = true;
+                t = t.substring(begin + LlmResponseParser.BEGIN.length()).trim();
+                if (t.isEmpty()) return;
+            }
+        }
+
+        int end = indexOfIgnoreCase(t, LlmResponseParser.END);
+        if (end >= 0) {
+            ended = true;
+            t = t.substring(0, end).trim();
+            if (t.isEmpty()) return;
+        }
+
+        if (t.startsWith("```")) return;
+
+        DslProgram one = DslCompiler.compile(Collections.singletonList(t));
+        if (one.isEmpty()) return; // коментар
+
+        // Без маркерів — тільки рядки, що розбираються як відома команда
+        if (!inMarkers && one.op(0) == DslProgram.OP_UNKNOWN) return;
+
+        // Ті самі правила, що й у DRY-RUN, але на один рядок — фінальна валідація все одно буде
+        AiScriptValidator.Report r = AiScriptValidator.validate(one);
+        if (!r.ok()) {
+            abortReason = r.errors.get(0);
+            return;
+        }
+        if (emitted.size() >= AiPolicy.MAX_ACTIONS) {
+            abortReason = "Забагато команд (max " + AiPolicy.MAX_ACTIONS + ")";
+            return;
+        }
+
+        emitted.add(t);
+        onLine.accept(t);
+    }
+
+    private static int indexOfIgnoreCase(String haystack, String needle) {
+        return haystack.toLowerCase().indexOf(needle.toLowerCase());
+    }
+}
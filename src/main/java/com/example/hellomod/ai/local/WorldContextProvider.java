@@ -1,13 +1,16 @@
 package com.example.hellomod.ai.local;
 
+import com.example.hellomod.BlockKinds;
+import com.example.hellomod.TerrainQuery;
+import com.example.hellomod.WorldSnapshot;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Registry;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.material.Material;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * Компактний контекст світу для LLM (без "сирого списку блоків").
@@ -19,6 +22,14 @@ import java.util.*;
  * Формат:
  * 1) коротке резюме (1–5 рядків)
  * 2) топ-об'єкти/перешкоди (обмежено, з координатами)
+ *
+ * Дві фази:
+ * - snapshot(...) — server thread: WorldSnapshot (копії потрібних секцій + верх колонок з TerrainQuery);
+ * - render(...)   — будь-який потік: класифікація, ранжування й текст лише по знімку.
+ * buildContextText(...) робить обидві одразу — для викликів, яким не потрібен воркер.
+ *
+ * Колонки — у примітивних масивах; ім'я блока — з інтернованої таблиці по id стану,
+ * а air/water/tree — з BlockKinds по тому ж id.
  */
 public final class WorldContextProvider {
 
@@ -36,19 +47,67 @@ public final class WorldContextProvider {
 
     private WorldContextProvider() {}
 
+    private static final int SIZE = 2 * RADIUS_XZ + 1;       // 17
+    private static final int COLS = SIZE * SIZE;              // 289
+    private static final int LEVELS = Y_TO - Y_FROM + 1;      // 6
+    private static final int NONE = Integer.MIN_VALUE;
+
+    /** Інтернована таблиця "id стану -> id блока": рядок ключа реєстру будуємо раз на стан. */
+    private static final class StateTable {
+        final String[] names;
+        final int airId;
+
+        StateTable(String[] names, int airId) {
+            this.names = names;
+            this.airId = airId;
+        }
+    }
+
+    // Реєстри на цей момент заморожені, тож таблицю можна будувати з будь-якого потоку; гонка — лише зайва побудова
+    private static volatile StateTable table;
+
     /** Новий компактний формат (саме те, що просиш у 5.3) */
     public static String buildContextText(ServerLevel level, BlockPos feetOrigin) {
         if (level == null || feetOrigin == null) return "";
+        return render(snapshot(level, feetOrigin), feetOrigin);
+    }
+
+    /** Фаза 1 (server thread): копія об'єму 17x17 x [Y_FROM..Y_TO] навколо ніг. */
+    public static WorldSnapshot snapshot(ServerLevel level, BlockPos feetOrigin) {
+        return WorldSnapshot.capture(level,
+                feetOrigin.getX() - RADIUS_XZ, feetOrigin.getY() + Y_FROM, feetOrigin.getZ() - RADIUS_XZ,
+                feetOrigin.getX() + RADIUS_XZ, feetOrigin.getY() + Y_TO, feetOrigin.getZ() + RADIUS_XZ);
+    }
+
+    /** Фаза 2 (будь-який потік): текст контексту по знімку. Світ не чіпає. */
+    public static String render(WorldSnapshot snap, BlockPos feetOrigin) {
+        if (snap == null || feetOrigin == null) return "";
 
         final int ox = feetOrigin.getX();
         final int oy = feetOrigin.getY();
         final int oz = feetOrigin.getZ();
 
-        // Per-cell derived info
-        CellInfo[][] cells = new CellInfo[17][17];
-
-        // surface stats
-        Map<String, Integer> surfaceBlockCounts = new HashMap<>();
+        StateTable t = table();
+        String[] stateNames = t.names;
+        int[] kinds = BlockKinds.table(); // air/water/tree — біти з BlockKinds по тому ж id
+
+        // 1) Стани всього об'єму 17x17x6 зі знімка: id з BLOCK_STATE_REGISTRY, [col * LEVELS + (ry - Y_FROM)]
+        int[] states = new int[COLS * LEVELS];
+        readVolume(snap, t, ox, oy, oz, states);
+
+        // 2) Per-column — примітивні масиви замість CellInfo
+        int[] surfaceY = new int[COLS];
+        int[] surfaceState = new int[COLS];
+        int[] waterY = new int[COLS];
+        int[] waterState = new int[COLS];
+        int[] obstacleY = new int[COLS];
+        int[] obstacleState = new int[COLS];
+        boolean[] treeLike = new boolean[COLS];
+
+        // surface stats: інтерновані імена блоків -> лічильник (різних імен зазвичай кілька)
+        String[] surfaceNames = new String[COLS];
+        int[] surfaceCounts = new int[COLS];
+        int surfaceDistinct = 0;
         int minSurfaceY = Integer.MAX_VALUE;
         int maxSurfaceY = Integer.MIN_VALUE;
 
@@ -56,49 +115,59 @@ public final class WorldContextProvider {
         int obstacleCols = 0;
         int waterCols = 0;
 
-        // Gather candidate features
-        List<Feature> water = new ArrayList<>();
-        List<Feature> trees = new ArrayList<>();
-        List<Feature> otherObs = new ArrayList<>();
-
-        for (int dz = -RADIUS_XZ; dz <= RADIUS_XZ; dz++) {
-            for (int dx = -RADIUS_XZ; dx <= RADIUS_XZ; dx++) {
-                int ix = dx + RADIUS_XZ;
-                int iz = dz + RADIUS_XZ;
-
-                CellInfo ci = scanColumn(level, ox, oy, oz, dx, dz);
-                cells[iz][ix] = ci;
-
-                if (ci.surfaceYRel < minSurfaceY) minSurfaceY = ci.surfaceYRel;
-                if (ci.surfaceYRel > maxSurfaceY) maxSurfaceY = ci.surfaceYRel;
-
-                surfaceBlockCounts.merge(ci.surfaceBlockId, 1, Integer::sum);
-
-                if (ci.hasWater) {
-                    waterCols++;
-                    water.add(new Feature("water", dx, dz, ci.nearestWaterYRel, ci.nearestWaterBlockId, distChebyshev(dx, dz)));
-                } else if (ci.hasObstacle) {
-                    obstacleCols++;
-                    // classify
-                    if (ci.isTreeLike) {
-                        trees.add(new Feature("tree", dx, dz, ci.firstObstacleYRel, ci.firstObstacleBlockId, distChebyshev(dx, dz)));
-                    } else {
-                        otherObs.add(new Feature("obstacle", dx, dz, ci.firstObstacleYRel, ci.firstObstacleBlockId, distChebyshev(dx, dz)));
-                    }
+        // Кандидати: ключ сортування (dist, |dx|+|dz|, індекс колонки) упакований в int
+        int[] water = new int[COLS];
+        int[] trees = new int[COLS];
+        int[] otherObs = new int[COLS];
+        int waterN = 0, treesN = 0, otherN = 0;
+
+        for (int col = 0; col < COLS; col++) {
+            scanColumn(states, kinds, col, surfaceY, surfaceState, waterY, waterState, obstacleY, obstacleState, treeLike);
+
+            int dx = col % SIZE - RADIUS_XZ;
+            int dz = col / SIZE - RADIUS_XZ;
+
+            if (surfaceY[col] < minSurfaceY) minSurfaceY = surfaceY[col];
+            if (surfaceY[col] > maxSurfaceY) maxSurfaceY = surfaceY[col];
+
+            String name = (surfaceState[col] < 0) ? "minecraft:air" : stateNames[surfaceState[col]];
+            int k = 0;
+            while (k < surfaceDistinct && surfaceNames[k] != name) k++; // імена інтерновані — порівняння за посиланням
+            if (k == surfaceDistinct) surfaceNames[surfaceDistinct++] = name;
+            surfaceCounts[k]++;
+
+            int key = sortKey(dx, dz, col);
+            if (waterY[col] != NONE) {
+                waterCols++;
+                water[waterN++] = key;
+            } else if (obstacleY[col] != NONE) {
+                obstacleCols++;
+                if (treeLike[col]) {
+                    trees[treesN++] = key;
                 } else {
-                    emptyCols++;
+                    otherObs[otherN++] = key;
                 }
+            } else {
+                emptyCols++;
+            }
+        }
+
+        Arrays.sort(water, 0, waterN);
+        Arrays.sort(trees, 0, treesN);
+        Arrays.sort(otherObs, 0, otherN);
+
+        String surfaceTop = "minecraft:grass_block";
+        int best = 0;
+        for (int k = 0; k < surfaceDistinct; k++) {
+            if (surfaceCounts[k] > best) {
+                best = surfaceCounts[k];
+                surfaceTop = surfaceNames[k];
             }
         }
 
-        String surfaceTop = topKey(surfaceBlockCounts, "minecraft:grass_block");
         int slopeDelta = (maxSurfaceY == Integer.MIN_VALUE || minSurfaceY == Integer.MAX_VALUE) ? 0 : (maxSurfaceY - minSurfaceY);
         String slope = slopeText(slopeDelta);
 
-        // nearest water direction + dist
-        Feature nearestWater = pickNearest(water);
-        Feature nearestTree = pickNearest(trees);
-
         boolean freeSpaceYes = emptyCols >= 200; // ~69% of 289
         String freeSpace = freeSpaceYes ? "yes" : "no";
 
@@ -108,16 +177,19 @@ public final class WorldContextProvider {
         sb.append("WORLD_CONTEXT v2\n");
         sb.append("Surface: ").append(surfaceTop).append(", slope: ").append(slope).append(" (deltaY=").append(slopeDelta).append(")\n");
 
-        if (nearestWater != null) {
-            sb.append("Nearby: water (").append(dir(nearestWater.dx, nearestWater.dz))
-                    .append(" ~").append(nearestWater.dist).append(")\n");
+        // nearest water/tree = перший після сортування
+        if (waterN > 0) {
+            int col = colOf(water[0]);
+            sb.append("Nearby: water (").append(dir(dxOf(col), dzOf(col)))
+                    .append(" ~").append(distChebyshev(dxOf(col), dzOf(col))).append(")\n");
         } else {
             sb.append("Nearby: water (none in 17x17)\n");
         }
 
-        if (nearestTree != null) {
-            sb.append("Nearby: trees (").append(dir(nearestTree.dx, nearestTree.dz))
-                    .append(" ~").append(nearestTree.dist).append(")\n");
+        if (treesN > 0) {
+            int col = colOf(trees[0]);
+            sb.append("Nearby: trees (").append(dir(dxOf(col), dzOf(col)))
+                    .append(" ~").append(distChebyshev(dxOf(col), dzOf(col))).append(")\n");
         } else {
             sb.append("Nearby: trees (none)\n");
         }
@@ -131,9 +203,9 @@ public final class WorldContextProvider {
         sb.append("Top objects:\n");
 
         int lines = 0;
-        lines += appendTop(sb, "water edge", water, MAX_WATER_POINTS, lines);
-        lines += appendTop(sb, "tree", trees, MAX_TREE_POINTS, lines);
-        lines += appendTop(sb, "obstacle", otherObs, MAX_OTHER_OBS_POINTS, lines);
+        lines += appendTop(sb, stateNames, "water edge", water, waterN, waterY, waterState, MAX_WATER_POINTS, lines);
+        lines += appendTop(sb, stateNames, "tree", trees, treesN, obstacleY, obstacleState, MAX_TREE_POINTS, lines);
+        lines += appendTop(sb, stateNames, "obstacle", otherObs, otherN, obstacleY, obstacleState, MAX_OTHER_OBS_POINTS, lines);
 
         if (lines == 0) {
             sb.append("- none\n");
@@ -146,44 +218,136 @@ public final class WorldContextProvider {
 
     }
 
-    private static int appendTop(StringBuilder sb, String label, List<Feature> list, int max, int already) {
-        if (already >= MAX_FEATURE_LINES) return 0;
-        if (list == null || list.isEmpty()) return 0;
+    /**
+     * Читає стани [oy+Y_FROM..oy+Y_TO] для всіх колонок 17x17 зі знімка.
+     * Над поверхнею колонки — повітря без читання палітри, сама поверхня — зі зведення чанка,
+     * тож копії секцій читаємо лише нижче за поверхню (на рівній місцевості під ногами — взагалі ні).
+     */
+    private static void readVolume(WorldSnapshot snap, StateTable t, int ox, int oy, int oz, int[] states) {
+        BlockKinds.Lookup ids = new BlockKinds.Lookup(); // під поверхнею підряд здебільшого той самий стан
+        for (int col = 0; col < COLS; col++) {
+            int x = ox + dxOf(col);
+            int z = oz + dzOf(col);
+            int top = snap.surfaceY(x, z);
+            int topId = (top == TerrainQuery.NONE) ? t.airId : stateId(ids, t, snap.surfaceState(x, z));
+
+            for (int ry = Y_FROM; ry <= Y_TO; ry++) {
+                int y = oy + ry;
+                int id;
+                if (y > top) id = t.airId;              // над поверхнею (і порожня колонка)
+                else if (y == top) id = topId;          // сама поверхня — зі зведення
+                else id = stateId(ids, t, snap.state(x, y, z));
+                states[col * LEVELS + (ry - Y_FROM)] = id;
+            }
+        }
+    }
+
+    /** Та сама логіка, що була з getBlockState по кожній позиції, але по готовому масиву станів. */
+    private static void scanColumn(int[] states, int[] kinds, int col,
+                                   int[] surfaceY, int[] surfaceState,
+                                   int[] waterY, int[] waterState,
+                                   int[] obstacleY, int[] obstacleState,
+                                   boolean[] treeLike) {
+        int base = col * LEVELS - Y_FROM; // states[base + ry]
 
-        list.sort(Comparator
-                .comparingInt((Feature f) -> f.dist)
-                .thenComparingInt(f -> Math.abs(f.dx) + Math.abs(f.dz)));
+        // Find surface within y range: highest non-air in [oy-1..oy+4]
+        surfaceY[col] = Y_FROM; // fallback
+        surfaceState[col] = -1;  // -1 = air
+        for (int ry = Y_TO; ry >= Y_FROM; ry--) {
+            int id = states[base + ry];
+            if ((kinds[id] & BlockKinds.AIR) == 0) {
+                surfaceY[col] = ry;
+                surfaceState[col] = id;
+                break;
+            }
+        }
+
+        // scan build volume y=0..+4 for obstacle/water details
+        waterY[col] = NONE;
+        obstacleY[col] = NONE;
+        boolean tree = false;
+        for (int ry = 0; ry <= Y_TO; ry++) {
+            int id = states[base + ry];
+            int f = kinds[id];
+
+            if ((f & BlockKinds.WATER_MATERIAL) != 0 && waterY[col] == NONE) {
+                waterY[col] = ry;
+                waterState[col] = id;
+            }
+
+            if ((f & BlockKinds.AIR) == 0) {
+                if (obstacleY[col] == NONE) {
+                    obstacleY[col] = ry;
+                    obstacleState[col] = id;
+                }
+                // якщо перший не дерево, але далі є дерево — теж позначимо
+                if ((f & BlockKinds.TREE) != 0) tree = true;
+            }
+        }
+        treeLike[col] = tree;
+    }
+
+    private static int appendTop(StringBuilder sb, String[] stateNames, String label, int[] keys, int n,
+                                 int[] yRel, int[] stateIds, int max, int already) {
+        if (already >= MAX_FEATURE_LINES) return 0;
 
         int count = 0;
-        for (Feature f : list) {
+        for (int i = 0; i < n; i++) {
             if (already + count >= MAX_FEATURE_LINES) break;
             if (count >= max) break;
 
+            int col = colOf(keys[i]);
             sb.append("- ").append(label)
-                    .append(" at dx=").append(f.dx).append(" dz=").append(f.dz)
-                    .append(" y=").append(f.yRel)
-                    .append(" block=").append(f.blockId)
+                    .append(" at dx=").append(dxOf(col)).append(" dz=").append(dzOf(col))
+                    .append(" y=").append(yRel[col])
+                    .append(" block=").append(stateNames[stateIds[col]])
                     .append("\n");
             count++;
         }
         return count;
     }
 
-    private static Feature pickNearest(List<Feature> list) {
-        if (list == null || list.isEmpty()) return null;
-        return list.stream()
-                .min(Comparator
-                        .comparingInt((Feature f) -> f.dist)
-                        .thenComparingInt(f -> Math.abs(f.dx) + Math.abs(f.dz)))
-                .orElse(null);
+    /** (Chebyshev dist, |dx|+|dz|, col): при рівних відстанях лишається порядок обходу колонок. */
+    private static int sortKey(int dx, int dz, int col) {
+        return (distChebyshev(dx, dz) << 15) | ((Math.abs(dx) + Math.abs(dz)) << 9) | col;
+    }
+
+    private static int colOf(int key) {
+        return key & 0x1FF;
+    }
+
+    private static int dxOf(int col) {
+        return col % SIZE - RADIUS_XZ;
+    }
+
+    private static int dzOf(int col) {
+        return col / SIZE - RADIUS_XZ;
     }
 
-    private static String topKey(Map<String, Integer> counts, String def) {
-        if (counts == null || counts.isEmpty()) return def;
-        return counts.entrySet().stream()
-                .max(Comparator.comparingInt(Map.Entry::getValue))
-                .map(Map.Entry::getKey)
-                .orElse(def);
+    /** id стану в BLOCK_STATE_REGISTRY (невідомий стан — як повітря). */
+    private static int stateId(BlockKinds.Lookup ids, StateTable t, BlockState s) {
+        int id = ids.id(s);
+        return (id < 0) ? t.airId : id;
+    }
+
+    private static StateTable table() {
+        StateTable t = table;
+        if (t == null) {
+            t = buildTable();
+            table = t;
+        }
+        return t;
+    }
+
+    private static StateTable buildTable() {
+        int size = Block.BLOCK_STATE_REGISTRY.size();
+        String[] names = new String[size];
+
+        for (int id = 0; id < size; id++) {
+            BlockState s = Block.BLOCK_STATE_REGISTRY.byId(id);
+            names[id] = (s == null) ? "unknown" : blockId(s).intern();
+        }
+        return new StateTable(names, Block.BLOCK_STATE_REGISTRY.getId(Blocks.AIR.defaultBlockState()));
     }
 
     private static String slopeText(int deltaY) {
@@ -205,91 +369,6 @@ public final class WorldContextProvider {
         return Math.max(Math.abs(dx), Math.abs(dz));
     }
 
-    private static CellInfo scanColumn(ServerLevel level, int ox, int oy, int oz, int dx, int dz) {
-        // Find surface within y range: highest non-air in [oy-1..oy+4]
-        int surfaceYRel = Integer.MIN_VALUE;
-        String surfaceBlockId = "unknown";
-
-        boolean hasWater = false;
-        String nearestWaterBlockId = "unknown";
-        int nearestWaterYRel = 0;
-
-        boolean hasObstacle = false;
-        String firstObstacleBlockId = "minecraft:air";
-        int firstObstacleYRel = 0;
-        boolean treeLike = false;
-
-        // scan from top to bottom to find surface
-        for (int ry = Y_TO; ry >= Y_FROM; ry--) {
-            BlockPos p = new BlockPos(ox + dx, oy + ry, oz + dz);
-            BlockState s = level.getBlockState(p);
-            if (!s.isAir()) {
-                surfaceYRel = ry;
-                surfaceBlockId = blockId(s);
-                break;
-            }
-        }
-        if (surfaceYRel == Integer.MIN_VALUE) {
-            surfaceYRel = Y_FROM; // fallback
-            surfaceBlockId = "minecraft:air";
-        }
-
-        // scan build volume y=0..+4 for obstacle/water details
-        for (int ry = 0; ry <= Y_TO; ry++) {
-            BlockPos p = new BlockPos(ox + dx, oy + ry, oz + dz);
-            BlockState s = level.getBlockState(p);
-
-            if (isWater(s)) {
-                if (!hasWater) {
-                    hasWater = true;
-                    nearestWaterYRel = ry;
-                    nearestWaterBlockId = blockId(s);
-                }
-            }
-
-            if (!s.isAir()) {
-                if (!hasObstacle) {
-                    hasObstacle = true;
-                    firstObstacleYRel = ry;
-                    firstObstacleBlockId = blockId(s);
-                    treeLike = isTreeLikeId(firstObstacleBlockId);
-                } else if (!treeLike) {
-                    // якщо перший не дерево, але далі є дерево — теж позначимо
-                    if (isTreeLikeId(blockId(s))) treeLike = true;
-                }
-            }
-        }
-
-        CellInfo ci = new CellInfo();
-        ci.surfaceYRel = surfaceYRel;
-        ci.surfaceBlockId = surfaceBlockId;
-
-        ci.hasWater = hasWater;
-        ci.nearestWaterYRel = nearestWaterYRel;
-        ci.nearestWaterBlockId = nearestWaterBlockId;
-
-        ci.hasObstacle = hasObstacle;
-        ci.firstObstacleYRel = firstObstacleYRel;
-        ci.firstObstacleBlockId = firstObstacleBlockId;
-        ci.isTreeLike = treeLike;
-
-        return ci;
-    }
-
-    private static boolean isWater(BlockState s) {
-        try {
-            return s.getMaterial() == Material.WATER;
-        } catch (Throwable ignored) {
-            return false;
-        }
-    }
-
-    private static boolean isTreeLikeId(String id) {
-        if (id == null) return false;
-        // простий хак: підходить для oak/spruce/birch/jungle/acacia/dark_oak + leaves
-        return id.endsWith("_log") || id.endsWith("_wood") || id.endsWith("_leaves");
-    }
-
     private static String blockId(BlockState s) {
         try {
             Block b = s.getBlock();
@@ -299,38 +378,6 @@ public final class WorldContextProvider {
         }
     }
 
-    private static final class CellInfo {
-        int surfaceYRel;
-        String surfaceBlockId;
-
-        boolean hasWater;
-        int nearestWaterYRel;
-        String nearestWaterBlockId;
-
-        boolean hasObstacle;
-        int firstObstacleYRel;
-        String firstObstacleBlockId;
-
-        boolean isTreeLike;
-    }
-
-    private static final class Feature {
-        final String kind;
-        final int dx, dz;
-        final int yRel;
-        final String blockId;
-        final int dist;
-
-        Feature(String kind, int dx, int dz, int yRel, String blockId, int dist) {
-            this.kind = kind;
-            this.dx = dx;
-            this.dz = dz;
-            this.yRel = yRel;
-            this.blockId = blockId;
-            this.dist = dist;
-        }
-    }
-
     private static String applyContextBudget(String raw) {
         if (raw == null || raw.isEmpty()) return "";
 
@@ -0,0 +1,181 @@
+package com.example.hellomod.build;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * BuildJob – скомпільований план (список BuildOp), який виконується шматками між тиками.
+ *
+ * Всі координати зафіксовані в момент створення (позиція гравця на старті),
+ * тож рух гравця під час будівництва нічого не зсуває.
+ */
+public final class BuildJob {
+
+    /**
+     * Режими відрізняються лише обліком бюджету тика — результат у світі однаковий:
+     * запис того самого стану flush пропускає в обох режимах (як і setBlock, що для однакового стану нічого не робить).
+     *
+     * OVERWRITE – кожна клітинка плану йде в буфер і витрачає бюджет тика, навіть якщо блок уже такий;
+     * SKIP_UNCHANGED – спершу порівнюємо поточний стан, і однакові блоки навіть не потрапляють у запис
+     *                  та не витрачають бюджет тика. Повтор того самого скрипта майже безкоштовний.
+     */
+    public enum WriteMode {
+        OVERWRITE,
+        SKIP_UNCHANGED
+    }
+
+    /** Режим за замовчуванням (OVERWRITE, як було); SKIP_UNCHANGED вмикається system property ai.build.writeMode. */
+    public static final WriteMode DEFAULT_WRITE_MODE = writeModeProperty();
+
+    // Як часто (у клітинках) перевіряємо годинник — System.nanoTime() теж не безкоштовний
+    private static final int TIME_CHECK_EVERY = 64;
+
+    private final ServerLevel level;
+    private final UUID ownerId;
+    private final List<BuildOp> ops;
+    private final String doneMessage;
+    private final long totalCells;
+    private final WriteMode mode;
+
+    private int opIndex;
+    private int cellIndex;
+    private long processedCells;
+    private long writes;
+    private long skipped;
+    private int ticks;
+    private int lastProgressTick;
+
+    public BuildJob(ServerLevel level, ServerPlayer owner, List<BuildOp> ops, String doneMessage) {
+        this(level, owner, ops, doneMessage, DEFAULT_WRITE_MODE);
+    }
+
+    public BuildJob(ServerLevel level, ServerPlayer owner, List<BuildOp> ops, String doneMessage, WriteMode mode) {
+        this.level = level;
+        this.mode = (mode == null) ? DEFAULT_WRITE_MODE : mode;
+        this.ownerId = owner.getUUID();
+        this.ops = List.copyOf(ops);
+        this.doneMessage = doneMessage;
+
+        long total = 0;
+        for (BuildOp op : this.ops) {
+            total += op.volume();
+        }
+        this.totalCells = total;
+    }
+
+    /**
+     * Виконати частину роботи.
+     *
+     * @param maxWrites     скільки блоків ще можна записати в цьому тиці
+     * @param deadlineNanos System.nanoTime(), після якого треба зупинитись
+     * @param out           буфер записів; flush робить BuildJobQueue після run
+     * @return скільки блоків поставлено в запис
+     */
+    int run(int maxWrites, long deadlineNanos, BlockPos.MutableBlockPos cursor, SectionBatchWriter out) {
+        ticks++;
+
+        int written = 0;
+        int sinceTimeCheck = 0;
+
+        while (opIndex < ops.size()) {
+            BuildOp op = ops.get(opIndex);
+            int volume = op.volume();
+
+            while (cellIndex < volume) {
+                if (written >= maxWrites) return written;
+
+                if (++sinceTimeCheck >= TIME_CHECK_EVERY) {
+                    sinceTimeCheck = 0;
+                    if (System.nanoTime() >= deadlineNanos) return written;
+                }
+
+                if (op.apply(level, cellIndex, cursor, out)) {
+                    written++;
+                }
+                cellIndex++;
+                processedCells++;
+            }
+
+            opIndex++;
+            cellIndex = 0;
+        }
+
+        return written;
+    }
+
+    /** Скільки блоків реально змінилося після flush. */
+    void addWrites(int changed) {
+        writes += changed;
+    }
+
+    /** Скільки записів виявилися no-op (блок уже був таким). */
+    void addSkipped(int n) {
+        skipped += n;
+    }
+
+    public boolean isDone() {
+        return opIndex >= ops.size();
+    }
+
+    public UUID ownerId() {
+        return ownerId;
+    }
+
+    public ServerLevel level() {
+        return level;
+    }
+
+    public String doneMessage() {
+        return doneMessage;
+    }
+
+    public long totalCells() {
+        return totalCells;
+    }
+
+    public long processedCells() {
+        return processedCells;
+    }
+
+    public long writes() {
+        return writes;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    public WriteMode mode() {
+        return mode;
+    }
+
+    public int ticks() {
+        return ticks;
+    }
+
+    public int progressPercent() {
+        if (totalCells <= 0) return 100;
+        return (int) Math.min(100, processedCells * 100 / totalCells);
+    }
+
+    /** true, якщо з останнього звіту пройшло щонайменше everyTicks тиків роботи. */
+    boolean shouldReportProgress(int everyTicks) {
+        if (ticks - lastProgressTick < everyTicks) return false;
+        lastProgressTick = ticks;
+        return true;
+    }
+
+    private static WriteMode writeModeProperty() {
+        String v = System.getProperty("ai.build.writeMode");
+        if (v == null || v.isBlank()) return WriteMode.OVERWRITE;
+        try {
+            return WriteMode.valueOf(v.trim().toUpperCase());
+        } catch (Exception ignored) {
+            return WriteMode.OVERWRITE;
+        }
+    }
+}
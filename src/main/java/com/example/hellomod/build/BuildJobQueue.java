@@ -0,0 +1,190 @@
+package com.example.hellomod.build;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * BuildJobQueue – черга будівельних завдань, яку крутить серверний тик (HelloMod.onServerTick).
+ *
+ * Кожного тика виконуємо не більше BLOCKS_PER_TICK записів і не довше MICROS_PER_TICK,
+ * тож навіть BUILD_BOX 64×64×64 не дає стрибка MSPT — просто будується кілька секунд.
+ * Записи кожного шматка йдуть через SectionBatchWriter (один flush на завдання за тик).
+ *
+ * Ліміти можна перевизначити system properties:
+ *   ai.build.blocksPerTick, ai.build.microsPerTick, ai.build.maxJobsPerPlayer
+ *
+ * Тільки server thread (без синхронізації).
+ */
+public final class BuildJobQueue {
+    private static final Logger LOGGER = LogManager.getLogger(BuildJobQueue.class);
+
+    public static final int BLOCKS_PER_TICK = intProperty("ai.build.blocksPerTick", 2048);
+    public static final int MICROS_PER_TICK = intProperty("ai.build.microsPerTick", 4000);
+    public static final int MAX_JOBS_PER_PLAYER = intProperty("ai.build.maxJobsPerPlayer", 3);
+
+    // Прогрес в action bar раз на секунду (20 тиків)
+    private static final int PROGRESS_EVERY_TICKS = 20;
+
+    private static final ArrayDeque<BuildJob> JOBS = new ArrayDeque<>();
+    private static final BlockPos.MutableBlockPos CURSOR = new BlockPos.MutableBlockPos();
+    private static final SectionBatchWriter WRITER = new SectionBatchWriter();
+
+    private BuildJobQueue() {}
+
+    /**
+     * Поставити завдання в чергу.
+     *
+     * @return false, якщо в гравця вже забагато завдань (гравцю вже написано чому)
+     */
+    public static boolean submit(ServerPlayer player, BuildJob job) {
+        if (countFor(player.getUUID()) >= MAX_JOBS_PER_PLAYER) {
+            player.sendMessage(
+                    new TextComponent("Забагато будівельних завдань у черзі (max " + MAX_JOBS_PER_PLAYER + "). Зачекай або /ai cancel"),
+                    player.getUUID()
+            );
+            return false;
+        }
+
+        int ahead = JOBS.size();
+        JOBS.addLast(job);
+
+        if (job.totalCells() > BLOCKS_PER_TICK || ahead > 0) {
+            player.sendMessage(
+                    new TextComponent("Будівництво в черзі: клітинок=" + job.totalCells()
+                            + (ahead > 0 ? ", перед тобою завдань: " + ahead : "")),
+                    player.getUUID()
+            );
+        }
+        return true;
+    }
+
+    /** Викликається раз на тик (фаза END). */
+    public static void tick() {
+        if (JOBS.isEmpty()) return;
+
+        long deadline = System.nanoTime() + MICROS_PER_TICK * 1_000L;
+        int budget = BLOCKS_PER_TICK;
+
+        // Round-robin: незавершене завдання йде в хвіст, наступного тика починає інше
+        int rounds = JOBS.size();
+        for (int i = 0; i < rounds && budget > 0 && System.nanoTime() < deadline; i++) {
+            BuildJob job = JOBS.pollFirst();
+            if (job == null) break;
+
+            try {
+                WRITER.setSkipUnchanged(job.mode() == BuildJob.WriteMode.SKIP_UNCHANGED);
+                budget -= job.run(budget, deadline, CURSOR, WRITER);
+                job.addWrites(WRITER.flush(job.level()));
+                job.addSkipped(WRITER.takeSkipped());
+            } catch (RuntimeException e) {
+                WRITER.discard();
+                WRITER.takeSkipped();
+                LOGGER.error("[build] job failed, dropping it", e);
+                notifyOwner(job, "Будівництво перервано через помилку: " + e.getClass().getSimpleName(), false);
+                continue;
+            }
+
+            if (job.isDone()) {
+                finish(job);
+            } else {
+                JOBS.addLast(job);
+                if (job.shouldReportProgress(PROGRESS_EVERY_TICKS)) {
+                    notifyOwner(job, "Будівництво: " + job.progressPercent() + "% ("
+                            + job.processedCells() + "/" + job.totalCells() + ")", true);
+                }
+            }
+        }
+    }
+
+    /** Скасувати всі завдання гравця. @return скільки скасовано */
+    public static int cancel(UUID playerId) {
+        int removed = 0;
+        Iterator<BuildJob> it = JOBS.iterator();
+        while (it.hasNext()) {
+            if (it.next().ownerId().equals(playerId)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public static List<BuildJob> jobsOf(UUID playerId) {
+        List<BuildJob> out = new ArrayList<>();
+        for (BuildJob job : JOBS) {
+            if (job.ownerId().equals(playerId)) out.add(job);
+        }
+        return out;
+    }
+
+    public static int size() {
+        return JOBS.size();
+    }
+
+    /** При зупинці сервера — просто забуваємо незавершені завдання. */
+    public static void clear() {
+        if (!JOBS.isEmpty()) {
+            LOGGER.info("[build] dropping {} unfinished job(s)", JOBS.size());
+        }
+        JOBS.clear();
+    }
+
+    private static int countFor(UUID playerId) {
+        int n = 0;
+        for (BuildJob job : JOBS) {
+            if (job.ownerId().equals(playerId)) n++;
+        }
+        return n;
+    }
+
+    private static void finish(BuildJob job) {
+        if (job.writes() == 0 && job.skipped() > 0) {
+            notifyOwner(job, "Все вже на місці — нічого не змінено (пропущено: " + job.skipped() + ").", false);
+            return;
+        }
+
+        String msg = job.doneMessage();
+        if (job.ticks() > 1 || job.skipped() > 0) {
+            String stats = "змінено: " + job.writes() + ", без змін: " + job.skipped() + ", тиків: " + job.ticks();
+            msg = (msg == null) ? "Будівництво завершено (" + stats + ")" : msg + " (" + stats + ")";
+        }
+        notifyOwner(job, msg, false);
+    }
+
+    private static void notifyOwner(BuildJob job, String text, boolean actionBar) {
+        if (text == null || text.isEmpty()) return;
+
+        MinecraftServer server = job.level().getServer();
+        if (server == null) return;
+
+        ServerPlayer p = server.getPlayerList().getPlayer(job.ownerId());
+        if (p == null) return;
+
+        if (actionBar) {
+            p.displayClientMessage(new TextComponent(text), true);
+        } else {
+            p.sendMessage(new TextComponent(text), p.getUUID());
+        }
+    }
+
+    private static int intProperty(String key, int def) {
+        String v = System.getProperty(key);
+        if (v == null || v.isBlank()) return def;
+        try {
+            int n = Integer.parseInt(v.trim());
+            return n > 0 ? n : def;
+        } catch (Exception ignored) {
+            return def;
+        }
+    }
+}
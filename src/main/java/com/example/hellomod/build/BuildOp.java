@@ -0,0 +1,148 @@
+package com.example.hellomod.build;
+
+import com.example.hellomod.BlockKinds;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * BuildOp – одна примітивна операція будівельного завдання (коробка, очищення рослинності, один блок).
+ *
+ * Клітинки операції адресуються індексом 0..volume()-1, тому BuildJob може
+ * зупинитися посеред операції й продовжити на наступному тиці.
+ */
+public abstract class BuildOp {
+
+    /** Скільки клітинок обходить операція. */
+    public abstract int volume();
+
+    /**
+     * Обробити клітинку з індексом index.
+     *
+     * Записи йдуть у SectionBatchWriter, читання — теж через нього (бачить ще не записане).
+     *
+     * @return true, якщо блок поставлено в запис (рахується в бюджет тика);
+     *         false — клітинку пропущено (не та рослинність, внутрішність hollow або вже такий блок)
+     */
+    public abstract boolean apply(ServerLevel level, int index, BlockPos.MutableBlockPos cursor, SectionBatchWriter out);
+
+    /** Коробка w×h×d від base; hollow=true — тільки оболонка. */
+    public static BuildOp box(BlockPos base, int w, int h, int d, boolean hollow, BlockState state) {
+        return new Box(base, w, h, d, hollow, state);
+    }
+
+    /** Очищення рослинності: x/z у [-radius..radius], y у [0..height] від center. */
+    public static BuildOp clearVegetation(BlockPos center, int radius, int height) {
+        return new ClearVegetation(center, radius, height);
+    }
+
+    /** Один блок у точці pos. */
+    public static BuildOp single(BlockPos pos, BlockState state) {
+        return new Single(pos, state);
+    }
+
+    // ─────────────────────────────────────
+    // Реалізації
+    // ─────────────────────────────────────
+
+    private static final class Box extends BuildOp {
+        private final int baseX, baseY, baseZ;
+        private final int w, h, d;
+        private final boolean hollow;
+        private final BlockState state;
+
+        Box(BlockPos base, int w, int h, int d, boolean hollow, BlockState state) {
+            this.baseX = base.getX();
+            this.baseY = base.getY();
+            this.baseZ = base.getZ();
+            this.w = w;
+            this.h = h;
+            this.d = d;
+            this.hollow = hollow;
+            this.state = state;
+        }
+
+        @Override
+        public int volume() {
+            return w * h * d;
+        }
+
+        @Override
+        public boolean apply(ServerLevel level, int index, BlockPos.MutableBlockPos cursor, SectionBatchWriter out) {
+            // Порядок обходу як у старому циклі: x -> y -> z
+            int z = index % d;
+            int y = (index / d) % h;
+            int x = index / (d * h);
+
+            if (hollow) {
+                boolean isShell = (x == 0 || x == w - 1 || y == 0 || y == h - 1 || z == 0 || z == d - 1);
+                if (!isShell) return false;
+            }
+
+            cursor.set(baseX + x, baseY + y, baseZ + z);
+            return out.set(level, cursor, state);
+        }
+    }
+
+    private static final class ClearVegetation extends BuildOp {
+        private final int cx, cy, cz;
+        private final int radius;
+        private final int height;
+        private final BlockKinds.Lookup kinds = new BlockKinds.Lookup(); // лише server thread, як і apply
+
+        ClearVegetation(BlockPos center, int radius, int height) {
+            this.cx = center.getX();
+            this.cy = center.getY();
+            this.cz = center.getZ();
+            this.radius = radius;
+            this.height = height;
+        }
+
+        @Override
+        public int volume() {
+            int side = 2 * radius + 1;
+            return side * side * (height + 1);
+        }
+
+        @Override
+        public boolean apply(ServerLevel level, int index, BlockPos.MutableBlockPos cursor, SectionBatchWriter out) {
+            // Порядок обходу як у старому циклі: x -> z -> y
+            int side = 2 * radius + 1;
+            int ySpan = height + 1;
+            int y = index % ySpan;
+            int z = (index / ySpan) % side - radius;
+            int x = index / (ySpan * side) - radius;
+
+            cursor.set(cx + x, cy + y, cz + z);
+            BlockState state = out.getBlockState(level, cursor);
+
+            // Безпечно: чистимо тільки "листя/траву/квіти" — не чіпаємо камінь/будівлі (перелік — у BlockKinds).
+            if (kinds.is(state, BlockKinds.VEGETATION_CLEARABLE)) {
+                out.set(cursor, Blocks.AIR.defaultBlockState());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Single extends BuildOp {
+        private final BlockPos pos;
+        private final BlockState state;
+
+        Single(BlockPos pos, BlockState state) {
+            this.pos = pos;
+            this.state = state;
+        }
+
+        @Override
+        public int volume() {
+            return 1;
+        }
+
+        @Override
+        public boolean apply(ServerLevel level, int index, BlockPos.MutableBlockPos cursor, SectionBatchWriter out) {
+            return out.set(level, pos, state);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.hellomod.build;
+
+import com.example.hellomod.TerrainSummaryCache;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.ThreadedLevelLightEngine;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SectionBatchWriter – буфер записів блоків, згрупованих по LevelChunkSection.
+ *
+ * Замість level.setBlock(..., 3) на кожен блок:
+ *  1) пишемо стани прямо в секцію (без сусідів/світла/пакетів на кожен блок),
+ *  2) світло — окремим проходом по секціях після запису всіх секцій: статус секції (порожня/ні) один раз
+ *     на секцію і перевірки лише для клітинок, де змінилися світлові властивості. Light engine 1.18.1
+ *     приймає тільки поблокові checkBlock (пакетна черга в нього приватна), тож перевірок по одній
+ *     на клітинку, але жодної для блоків, що світла не змінюють,
+ *  3) один ClientboundSectionBlocksUpdatePacket на секцію (світло клієнт отримує звичайним шляхом light engine),
+ *  4) сусідів і форми оновлюємо для кожної зміненої клітинки, як setBlock(..., 3), — крім "простих" кубів
+ *     (блок класу Block або повітря) всередині записаної області, у яких і всі 6 сусідів — прості й із цього ж flush:
+ *     у каменю/дошок немає реакції на сусідів, а сусіди однаково перезаписуються.
+ *     Паркани, стіни, редстоун, факели тощо отримують оновлення завжди, навіть усередині коробки.
+ *
+ * Блоки з BlockEntity (старі чи нові) йдуть звичайним level.setBlock — там забагато побічної логіки.
+ *
+ * Читання через getBlockState бачить ще не записані зміни (read-your-writes), тому порядок
+ * операцій у BuildJob зберігається. Тільки server thread.
+ *
+ * Запис того самого стану flush відкидає завжди (як setBlock). Режим skipUnchanged
+ * (BuildJob.WriteMode.SKIP_UNCHANGED) лише відсіює такі записи ще до буфера — вони не витрачають
+ * бюджет тика і рахуються в takeSkipped(). Вимкнений за замовчуванням.
+ */
+public final class SectionBatchWriter {
+
+    private static final Heightmap.Types[] HEIGHTMAPS = {
+            Heightmap.Types.MOTION_BLOCKING,
+            Heightmap.Types.MOTION_BLOCKING_NO_LEAVES,
+            Heightmap.Types.OCEAN_FLOOR,
+            Heightmap.Types.WORLD_SURFACE
+    };
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Long2ObjectOpenHashMap<SectionBatch> sections = new Long2ObjectOpenHashMap<>();
+    private final ArrayDeque<SectionBatch> pool = new ArrayDeque<>();
+    private final BlockPos.MutableBlockPos scratch = new BlockPos.MutableBlockPos();
+
+    // Маленький кеш останньої секції — у коробках сусідні записи майже завжди в ній
+    private SectionBatch last;
+
+    private int pending;
+
+    private boolean skipUnchanged;
+    private int skipped;
+
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Поставити запис у буфер з урахуванням режиму.
+     *
+     * @return false, якщо запис пропущено (у світі вже такий стан)
+     */
+    public boolean set(ServerLevel level, BlockPos pos, BlockState state) {
+        if (skipUnchanged && getBlockState(level, pos) == state) {
+            skipped++;
+            return false;
+        }
+        set(pos, state);
+        return true;
+    }
+
+    /** Поставити запис у буфер (пізніший запис у ту саму позицію перемагає). */
+    public void set(BlockPos pos, BlockState state) {
+        SectionBatch batch = batchFor(pos.getX(), pos.getY(), pos.getZ(), true);
+        if (batch.set(relIndex(pos.getX(), pos.getY(), pos.getZ()), state)) {
+            pending++;
+        }
+    }
+
+    /** Стан блоку з урахуванням ще не записаних змін. */
+    public BlockState getBlockState(ServerLevel level, BlockPos pos) {
+        SectionBatch batch = batchFor(pos.getX(), pos.getY(), pos.getZ(), false);
+        if (batch != null) {
+            BlockState queued = batch.states[relIndex(pos.getX(), pos.getY(), pos.getZ())];
+            if (queued != null) return queued;
+        }
+        return level.getBlockState(pos);
+    }
+
+    public int pending() {
+        return pending;
+    }
+
+    /** Скільки записів пропущено як no-op з моменту останнього виклику. */
+    public int takeSkipped() {
+        int n = skipped;
+        skipped = 0;
+        return n;
+    }
+
+    /**
+     * Записати все накопичене у світ.
+     *
+     * @return скільки блоків реально змінилося
+     */
+    public int flush(ServerLevel level) {
+        if (sections.isEmpty()) return 0;
+
+        ServerChunkCache chunkSource = level.getChunkSource();
+        ThreadedLevelLightEngine lightEngine = chunkSource.getLightEngine();
+
+        List<SectionBatch> written = new ArrayList<>(sections.size());
+        int changed = 0;
+
+        // 1) Пишемо стани по секціях
+        for (SectionBatch batch : sections.values()) {
+            changed += writeSection(level, batch);
+            written.add(batch);
+        }
+
+        // 2) Світло — один прохід на секцію, коли в усіх секціях уже фінальні стани
+        for (SectionBatch batch : written) {
+            queueLight(lightEngine, batch);
+        }
+
+        // 3) Сусіди/форми — коли всі блоки вже стоять; пропускаємо лише прості куби всередині області
+        for (SectionBatch batch : written) {
+            notifyNeighbors(level, batch);
+        }
+
+        // 4) Пакети клієнтам: по одному на секцію
+        sendUpdates(level, chunkSource, written);
+
+        discard();
+        return changed;
+    }
+
+    /** Забути все незаписане (після flush або якщо завдання впало посеред шматка). */
+    public void discard() {
+        for (SectionBatch batch : sections.values()) {
+            batch.reset();
+            pool.addLast(batch);
+        }
+        sections.clear();
+        last = null;
+        pending = 0;
+    }
+
+    // ─────────────────────────────────────
+    // Запис секції
+    // ─────────────────────────────────────
+
+    private int writeSection(ServerLevel level, SectionBatch batch) {
+        int minY = SectionPos.sectionToBlockCoord(batch.sy);
+        if (level.isOutsideBuildHeight(minY)) return 0;
+
+        LevelChunk chunk = level.getChunk(batch.sx, batch.sz);
+        LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(batch.sy));
+        batch.wasEmpty = section.hasOnlyAir();
+
+        int baseX = SectionPos.sectionToBlockCoord(batch.sx);
+        int baseZ = SectionPos.sectionToBlockCoord(batch.sz);
+        int changed = 0;
+
+        for (int i = 0; i < batch.count; i++) {
+            short rel = batch.touched[i];
+            BlockState state = batch.states[rel];
+            int lx = (rel >>> 8) & 15;
+            int lz = (rel >>> 4) & 15;
+            int ly = rel & 15;
+
+            BlockState old = section.getBlockState(lx, ly, lz);
+            if (old == state) {
+                // Нічого не змінюється — і межа, і пакет цю клітинку не цікавлять
+                batch.states[rel] = null;
+                skipped++;
+                continue;
+            }
+
+            scratch.set(baseX + lx, minY + ly, baseZ + lz);
+
+            if (old.hasBlockEntity() || state.hasBlockEntity()) {
+                // Повільний, але повний шлях
+                level.setBlock(scratch, state, 3);
+                changed++;
+                continue;
+            }
+
+            section.setBlockState(lx, ly, lz, state);
+            for (Heightmap.Types type : HEIGHTMAPS) {
+                chunk.getOrCreateHeightmapUnprimed(type).update(lx, minY + ly, lz, state);
+            }
+
+            if (old.getBlock() != state.getBlock()) {
+                old.onRemove(level, scratch, state, false);
+                state.onPlace(level, scratch, old, false);
+            }
+            level.onBlockStateChange(scratch, old, state);
+
+            if (lightChanged(level, scratch, old, state)) {
+                batch.light[batch.lightCount++] = rel;
+            }
+
+            batch.olds[rel] = old;
+            batch.changed.add(rel);
+            changed++;
+        }
+
+        if (!batch.changed.isEmpty()) {
+            chunk.setUnsaved(true);
+            TerrainSummaryCache.invalidate(level, batch.sx, batch.sz); // подій BlockEvent тут немає
+            batch.nowEmpty = section.hasOnlyAir();
+        }
+        return changed;
+    }
+
+    private static void queueLight(ThreadedLevelLightEngine lightEngine, SectionBatch batch) {
+        if (batch.changed.isEmpty()) return;
+
+        if (batch.wasEmpty != batch.nowEmpty) {
+            lightEngine.updateSectionStatus(SectionPos.of(batch.sx, batch.sy, batch.sz), batch.nowEmpty);
+        }
+
+        int baseX = SectionPos.sectionToBlockCoord(batch.sx);
+        int baseY = SectionPos.sectionToBlockCoord(batch.sy);
+        int baseZ = SectionPos.sectionToBlockCoord(batch.sz);
+        for (int i = 0; i < batch.lightCount; i++) {
+            short rel = batch.light[i];
+            lightEngine.checkBlock(new BlockPos(baseX + ((rel >>> 8) & 15), baseY + (rel & 15), baseZ + ((rel >>> 4) & 15)));
+        }
+    }
+
+    private static boolean lightChanged(ServerLevel level, BlockPos pos, BlockState old, BlockState state) {
+        return old.getLightBlock(level, pos) != state.getLightBlock(level, pos)
+                || old.getLightEmission() != state.getLightEmission()
+                || old.useShapeForLightOcclusion()
+                || state.useShapeForLightOcclusion();
+    }
+
+    private void notifyNeighbors(ServerLevel level, SectionBatch batch) {
+        int baseX = SectionPos.sectionToBlockCoord(batch.sx);
+        int baseY = SectionPos.sectionToBlockCoord(batch.sy);
+        int baseZ = SectionPos.sectionToBlockCoord(batch.sz);
+
+        for (short rel : batch.changed) {
+            int x = baseX + ((rel >>> 8) & 15);
+            int y = baseY + (rel & 15);
+            int z = baseZ + ((rel >>> 4) & 15);
+
+            BlockState old = batch.olds[rel];
+            BlockState state = batch.states[rel];
+            if (isPlain(old) && isPlain(state) && !isBoundary(x, y, z)) continue;
+            BlockPos pos = new BlockPos(x, y, z);
+
+            // Те саме, що робить Level.markAndNotifyBlock для прапорців 3
+            level.blockUpdated(pos, old.getBlock());
+            old.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS);
+            state.updateNeighbourShapes(level, pos, Block.UPDATE_CLIENTS);
+            state.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS);
+        }
+    }
+
+    /** "Простий" блок: без власної реакції на сусідів і без форми, що від них залежить. */
+    private static boolean isPlain(BlockState state) {
+        return state.isAir() || state.getBlock().getClass() == Block.class;
+    }
+
+    /** Клітинка на межі, якщо хоч один сусід не входить у цей flush або сам не простий. */
+    private boolean isBoundary(int x, int y, int z) {
+        for (Direction dir : DIRECTIONS) {
+            int nx = x + dir.getStepX();
+            int ny = y + dir.getStepY();
+            int nz = z + dir.getStepZ();
+
+            SectionBatch nb = sections.get(SectionPos.asLong(
+                    SectionPos.blockToSectionCoord(nx),
+                    SectionPos.blockToSectionCoord(ny),
+                    SectionPos.blockToSectionCoord(nz)));
+            if (nb == null) return true;
+
+            short rel = relIndex(nx, ny, nz);
+            BlockState state = nb.states[rel];
+            BlockState old = nb.olds[rel];
+            if (state == null || !isPlain(state) || (old != null && !isPlain(old))) return true;
+        }
+        return false;
+    }
+
+    // ─────────────────────────────────────
+    // Пакети
+    // ─────────────────────────────────────
+
+    private void sendUpdates(ServerLevel level, ServerChunkCache chunkSource, List<SectionBatch> written) {
+        // Групуємо секції по чанках
+        Long2ObjectOpenHashMap<List<SectionBatch>> byChunk = new Long2ObjectOpenHashMap<>();
+        for (SectionBatch batch : written) {
+            if (batch.changed.isEmpty()) continue;
+            byChunk.computeIfAbsent(ChunkPos.asLong(batch.sx, batch.sz), k -> new ArrayList<>()).add(batch);
+        }
+
+        for (List<SectionBatch> chunkBatches : byChunk.values()) {
+            SectionBatch first = chunkBatches.get(0);
+            List<ServerPlayer> players = chunkSource.chunkMap.getPlayers(new ChunkPos(first.sx, first.sz), false);
+            if (players.isEmpty()) continue;
+
+            LevelChunk chunk = level.getChunk(first.sx, first.sz);
+            for (SectionBatch batch : chunkBatches) {
+                LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(batch.sy));
+                Packet<?> packet = new ClientboundSectionBlocksUpdatePacket(
+                        SectionPos.of(batch.sx, batch.sy, batch.sz), batch.changed, section, false);
+                for (ServerPlayer p : players) {
+                    p.connection.send(packet);
+                }
+            }
+        }
+    }
+
+    // ─────────────────────────────────────
+    // Батчі
+    // ─────────────────────────────────────
+
+    private SectionBatch batchFor(int x, int y, int z, boolean create) {
+        int sx = SectionPos.blockToSectionCoord(x);
+        int sy = SectionPos.blockToSectionCoord(y);
+        int sz = SectionPos.blockToSectionCoord(z);
+
+        if (last != null && last.sx == sx && last.sy == sy && last.sz == sz) return last;
+
+        long key = SectionPos.asLong(sx, sy, sz);
+        SectionBatch batch = sections.get(key);
+        if (batch == null) {
+            if (!create) return null;
+            batch = pool.isEmpty() ? new SectionBatch() : pool.pollFirst();
+            batch.init(sx, sy, sz);
+            sections.put(key, batch);
+        }
+        last = batch;
+        return batch;
+    }
+
+    /** Та сама упаковка, що й SectionPos.sectionRelativePos: x<<8 | z<<4 | y. */
+    private static short relIndex(int x, int y, int z) {
+        return (short) ((x & 15) << 8 | (z & 15) << 4 | (y & 15));
+    }
+
+    private static final class SectionBatch {
+        int sx, sy, sz;
+
+        final BlockState[] states = new BlockState[4096];
+        final BlockState[] olds = new BlockState[4096];
+        final short[] touched = new short[4096];
+        int count;
+
+        // Клітинки, де змінилися світлові властивості (див. queueLight)
+        final short[] light = new short[4096];
+        int lightCount;
+        boolean wasEmpty;
+        boolean nowEmpty;
+
+        final ShortOpenHashSet changed = new ShortOpenHashSet();
+
+        void init(int sx, int sy, int sz) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+        }
+
+        /** @return true, якщо це нова позиція в батчі */
+        boolean set(short rel, BlockState state) {
+            boolean fresh = states[rel] == null;
+            if (fresh) touched[count++] = rel;
+            states[rel] = state;
+            return fresh;
+        }
+
+        void reset() {
+            for (int i = 0; i < count; i++) {
+                states[touched[i]] = null;
+                olds[touched[i]] = null;
+            }
+            count = 0;
+            lightCount = 0;
+            changed.clear();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.hellomod.dsl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * DslCompiler – один прохід по рядках скрипта -> DslProgram.
+ *
+ * Правила рядків ті самі, що були у валідаторі та ScriptRunner:
+ *  - порожні рядки і коментарі (# або //) пропускаємо,
+ *  - ';' в кінці рядка дозволена (LLM іноді любить таке),
+ *  - команда нечутлива до регістру, токени розділені пробілами.
+ *
+ * Без regex/split: токени читаємо індексами, числа — Integer.parseInt(CharSequence, from, to, 10).
+ */
+public final class DslCompiler {
+
+    private DslCompiler() {}
+
+    public static DslProgram compile(List<String> rawLines) {
+        int capacity = (rawLines == null) ? 0 : rawLines.size();
+        int[] code = new int[Math.max(1, capacity) * DslProgram.STRIDE];
+        List<String> lines = new ArrayList<>(capacity);
+        Map<String, Integer> paletteIndex = new HashMap<>();
+        List<String> palette = new ArrayList<>();
+
+        int size = 0;
+        if (rawLines != null) {
+            int[] tok = new int[12]; // до 6 токенів: start/end пари
+
+            for (String raw : rawLines) {
+                if (raw == null) continue;
+                String line = raw.trim();
+                if (line.isEmpty()) continue;
+                if (line.startsWith("#") || line.startsWith("//")) continue;
+                if (line.endsWith(";")) line = line.substring(0, line.length() - 1).trim();
+                if (line.isEmpty()) continue;
+
+                int tokens = tokenize(line, tok);
+                int base = size * DslProgram.STRIDE;
+                if (base + DslProgram.STRIDE > code.length) {
+                    code = Arrays.copyOf(code, code.length * 2);
+                }
+
+                compileLine(line, tok, tokens, code, base, paletteIndex, palette);
+                lines.add(line);
+                size++;
+            }
+        }
+
+        return new DslProgram(
+                Arrays.copyOf(code, size * DslProgram.STRIDE),
+                size,
+                palette.toArray(new String[0]),
+                lines.toArray(new String[0])
+        );
+    }
+
+    private static void compileLine(String line, int[] tok, int tokens, int[] code, int base,
+                                    Map<String, Integer> paletteIndex, List<String> palette) {
+        int op = opcode(line, tok[0], tok[1]);
+        code[base] = op;
+
+        switch (op) {
+            case DslProgram.OP_PLACE_BLOCK -> {
+                // PLACE_BLOCK block dx dy dz
+                if (tokens != 5) {
+                    code[base + 1] = DslProgram.BAD_ARITY;
+                    return;
+                }
+                String block = normalizeBlockToken(line.substring(tok[2], tok[3]));
+                Integer idx = paletteIndex.get(block);
+                if (idx == null) {
+                    idx = palette.size();
+                    palette.add(block);
+                    paletteIndex.put(block, idx);
+                }
+                code[base + 2] = idx;
+                code[base + 1] = parseInts(line, tok, 2, 3, code, base + 3);
+            }
+            case DslProgram.OP_CLEAR_AROUND -> {
+                // CLEAR_AROUND radius
+                if (tokens != 2) {
+                    code[base + 1] = DslProgram.BAD_ARITY;
+                    return;
+                }
+                code[base + 1] = parseInts(line, tok, 1, 1, code, base + 2);
+            }
+            case DslProgram.OP_BUILD_BOX -> {
+                // BUILD_BOX w h d
+                if (tokens != 4) {
+                    code[base + 1] = DslProgram.BAD_ARITY;
+                    return;
+                }
+                code[base + 1] = parseInts(line, tok, 1, 3, code, base + 2);
+            }
+            default -> code[base + 1] = DslProgram.OK;
+        }
+    }
+
+    /** Розбирає count чисел починаючи з токена firstToken у code[out..]. */
+    private static int parseInts(String line, int[] tok, int firstToken, int count, int[] code, int out) {
+        for (int k = 0; k < count; k++) {
+            int t = firstToken + k;
+            try {
+                code[out + k] = Integer.parseInt(line, tok[t * 2], tok[t * 2 + 1], 10);
+            } catch (NumberFormatException e) {
+                return DslProgram.BAD_NUMBER;
+            }
+        }
+        return DslProgram.OK;
+    }
+
+    private static int opcode(String line, int start, int end) {
+        int len = end - start;
+        if (len == 11 && line.regionMatches(true, start, "PLACE_BLOCK", 0, 11)) return DslProgram.OP_PLACE_BLOCK;
+        if (len == 12 && line.regionMatches(true, start, "CLEAR_AROUND", 0, 12)) return DslProgram.OP_CLEAR_AROUND;
+        if (len == 9 && line.regionMatches(true, start, "BUILD_BOX", 0, 9)) return DslProgram.OP_BUILD_BOX;
+        return DslProgram.OP_UNKNOWN;
+    }
+
+    /**
+     * Записує межі токенів у tok (start,end парами) і повертає загальну кількість токенів.
+     * Токенів може бути більше, ніж влазить у tok — тоді рахуємо, але не записуємо.
+     */
+    private static int tokenize(String line, int[] tok) {
+        int count = 0;
+        int i = skipSpaces(line, 0);
+        while (i < line.length()) {
+            int end = tokenEnd(line, i);
+            if (count * 2 + 1 < tok.length) {
+                tok[count * 2] = i;
+                tok[count * 2 + 1] = end;
+            }
+            count++;
+            i = skipSpaces(line, end);
+        }
+        return count;
+    }
+
+    static int skipSpaces(String s, int i) {
+        while (i < s.length() && isSpace(s.charAt(i))) i++;
+        return i;
+    }
+
+    static int tokenEnd(String s, int i) {
+        while (i < s.length() && !isSpace(s.charAt(i))) i++;
+        return i;
+    }
+
+    /** Те саме, що \\s у java.util.regex. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Нормалізує токен блока з/без namespace.
+     *
+     * Приклади:
+     *   "stone" -> "stone"
+     *   "minecraft:oak_fence" -> "oak_fence"
+     *   "my_datapack:custom_block" -> "custom_block"
+     */
+    public static String normalizeBlockToken(String token) {
+        String name = token.toLowerCase(Locale.ROOT);
+        int idx = name.indexOf(':');
+        if (idx >= 0 && idx < name.length() - 1) {
+            name = name.substring(idx + 1);
+        }
+        return name;
+    }
+}
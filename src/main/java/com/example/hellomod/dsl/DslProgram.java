@@ -0,0 +1,108 @@
+package com.example.hellomod.dsl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DslProgram – скомпільований DSL-скрипт (результат DslCompiler.compile).
+ *
+ * Незмінний і без Minecraft-класів, тому його можна будувати/читати з будь-якого потоку.
+ *
+ * Кожен змістовний рядок (не порожній і не коментар) = одна інструкція у packed int[]:
+ *   [op, status, arg0, arg1, arg2, arg3]
+ *
+ *   PLACE_BLOCK block dx dy dz -> arg0=індекс у палітрі, arg1..3 = dx dy dz
+ *   CLEAR_AROUND radius        -> arg0=radius
+ *   BUILD_BOX w h d            -> arg0..2 = w h d
+ *
+ * status каже, чи рядок розібрався: OK / BAD_ARITY (не та кількість токенів) / BAD_NUMBER.
+ * Валідатор, strict-гейт, естіматор і ScriptRunner читають ці самі числа, а не парсять рядки заново.
+ */
+public final class DslProgram {
+
+    // Опкоди
+    public static final int OP_UNKNOWN = 0;
+    public static final int OP_PLACE_BLOCK = 1;
+    public static final int OP_CLEAR_AROUND = 2;
+    public static final int OP_BUILD_BOX = 3;
+
+    // Статус розбору інструкції
+    public static final int OK = 0;
+    public static final int BAD_ARITY = 1;
+    public static final int BAD_NUMBER = 2;
+
+    static final int STRIDE = 6;
+
+    private final int[] code;
+    private final int size;
+    private final String[] palette;
+    private final String[] lines;
+
+    DslProgram(int[] code, int size, String[] palette, String[] lines) {
+        this.code = code;
+        this.size = size;
+        this.palette = palette;
+        this.lines = lines;
+    }
+
+    /** Кількість інструкцій (змістовних рядків, включно з невідомими командами). */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int op(int i) {
+        return code[i * STRIDE];
+    }
+
+    public int status(int i) {
+        return code[i * STRIDE + 1];
+    }
+
+    /** n = 0..3 */
+    public int arg(int i, int n) {
+        return code[i * STRIDE + 2 + n];
+    }
+
+    /** Нормалізований токен блока PLACE_BLOCK (lowercase, без namespace). */
+    public String block(int i) {
+        return palette[arg(i, 0)];
+    }
+
+    public int paletteSize() {
+        return palette.length;
+    }
+
+    public String paletteEntry(int index) {
+        return palette[index];
+    }
+
+    /** Рядок інструкції (trim, без ';' в кінці) — для повідомлень. */
+    public String line(int i) {
+        return lines[i];
+    }
+
+    /** Всі змістовні рядки (без коментарів/порожніх). */
+    public List<String> lines() {
+        return Collections.unmodifiableList(Arrays.asList(lines));
+    }
+
+    /** Перше слово рядка у верхньому регістрі (для повідомлень про невідому команду). */
+    public String commandToken(int i) {
+        String line = lines[i];
+        int end = DslCompiler.tokenEnd(line, 0);
+        return line.substring(0, end).toUpperCase(Locale.ROOT);
+    }
+
+    /** Другий токен рядка як є (для повідомлень про блок). */
+    public String rawBlockToken(int i) {
+        String line = lines[i];
+        int start = DslCompiler.skipSpaces(line, DslCompiler.tokenEnd(line, 0));
+        return line.substring(start, DslCompiler.tokenEnd(line, start));
+    }
+}
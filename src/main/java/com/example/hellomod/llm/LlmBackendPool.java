@@ -0,0 +1,630 @@
+package com.example.hellomod.llm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Пул LLM-бекендів (кілька Ollama / llama.cpp боксів).
+ *
+ * Бекенди беруться з Config.backends; якщо список порожній — один бекенд з baseUrl верхнього рівня,
+ * тож старий local_llm.json працює як раніше.
+ *
+ * call(...):
+ * - обирає здоровий бекенд: LEAST_LOADED (inFlight / weight) або LOWEST_LATENCY (EWMA latency / weight);
+ *   бекенди з вільним слотом (inFlight < maxConcurrent) мають пріоритет;
+ * - на помилці/таймауті (IOException, LocalLlmException) пробує наступний бекенд
+ *   (стрім, що вже почав віддавати текст, не повторюємо);
+ * - hedging (opt-in, Config.hedge): див. call(...);
+ * - рахує per-backend статистику: ok / fail / inFlight / avg latency / ping.
+ *
+ * Health check — окремий daemon-потік, пінгує кожні Config.healthCheckSec секунд.
+ * Бекенд, що впав на пінгу або FAILS_TO_MARK_DOWN разів поспіль на запитах, вважається нездоровим,
+ * поки наступний пінг не пройде. Якщо нездорові всі — все одно пробуємо (краще, ніж одразу відмовити).
+ *
+ * Circuit breaker (LlmCircuitBreaker) — окремо від health check, по реальних запитах:
+ * бекенд з OPEN breaker пул не чіпає зовсім; якщо OPEN у всіх — call одразу кидає
+ * BackendUnavailableException, а unavailableForMs() дозволяє відмовити ще до черги.
+ *
+ * Бекенд — звичайний HTTP endpoint, тож для перевірки достатньо підняти локальні stub-сервери
+ * і прописати їх у "backends".
+ */
+public final class LlmBackendPool {
+    private static final Logger LOGGER = LogManager.getLogger(LlmBackendPool.class);
+
+    private static final int FAILS_TO_MARK_DOWN = 2;
+    private static final double EWMA_ALPHA = 0.3;
+
+    private static final int LATENCY_WINDOW = 64;
+    private static final int HEDGE_MIN_SAMPLES = 8;
+
+    /** Виклик на конкретному клієнті (один бекенд). */
+    @FunctionalInterface
+    public interface LlmCall<T> {
+        T apply(LocalLlmClient client, Attempt attempt) throws Exception;
+    }
+
+    /**
+     * Одна спроба на одному бекенді.
+     * Стрім кличе markStarted() на першому токені і має перестати читати, коли cancelled() == true.
+     */
+    public static final class Attempt {
+        final LlmBackendPool pool;
+        final Backend backend;
+        final long startNanos = System.nanoTime();
+        private final Object signal;
+        private volatile long firstTokenNanos;
+        private volatile boolean cancelled;
+        private Thread thread;
+
+        Attempt(LlmBackendPool pool, Backend backend, Object signal) {
+            this.pool = pool;
+            this.backend = backend;
+            this.signal = signal;
+        }
+
+        public void markStarted() {
+            if (firstTokenNanos != 0) return;
+            firstTokenNanos = System.nanoTime();
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+
+        public boolean started() {
+            return firstTokenNanos != 0;
+        }
+
+        public boolean cancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Додаткові паралельні запити цієї ж спроби (кандидати): до n слотів, вільних і в LlmRequestScheduler,
+         * і на цьому бекенді. Не чекає — повертає, скільки вдалося (0..n); звільняти через releaseSlots.
+         */
+        public int reserveSlots(int n) {
+            if (n <= 0) return 0;
+            int queued = LlmRequestScheduler.reserve(n);
+            int got = pool.reserveOn(backend, queued);
+            LlmRequestScheduler.release(queued - got);
+            return got;
+        }
+
+        public void releaseSlots(int n) {
+            if (n <= 0) return;
+            pool.releaseOn(backend, n);
+            LlmRequestScheduler.release(n);
+        }
+
+        synchronized void bind(Thread t) {
+            thread = t;
+        }
+
+        /** Програла гонку: стрім сам зупиниться на cancelled(), blocking-запит перериваємо. */
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) thread.interrupt();
+        }
+
+        long latencyMs() {
+            long end = started() ? firstTokenNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000L;
+        }
+    }
+
+    /** Усі бекенди за відкритим breaker — запит навіть не відправляли. */
+    public static final class BackendUnavailableException extends LocalLlmClient.LocalLlmException {
+        public final long retryInMs;
+
+        public BackendUnavailableException(long retryInMs) {
+            super("LLM backend unavailable (circuit open, retry in " + ((retryInMs + 999) / 1000) + "s)");
+            this.retryInMs = retryInMs;
+        }
+    }
+
+    /** Результат спроби (значення або помилка). */
+    private static final class Done<T> {
+        final Attempt attempt;
+        final T value;
+        final Exception error;
+
+        Done(Attempt attempt, T value, Exception error) {
+            this.attempt = attempt;
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    /** Стан одного бекенда. Поля міняємо під lock пулу. */
+    public static final class Backend {
+        final String name;
+        final int weight;
+        final int maxConcurrent;
+        final LocalLlmClient client;
+        final LlmCircuitBreaker breaker;
+
+        boolean healthy = true;
+        int inFlight;
+        int consecutiveFails;
+        long ok;
+        long failed;
+        double ewmaMs = -1;  // -1 = ще не міряли
+        long pingMs = -1;
+        long lastUsedMs;     // остання відповідь бекенда (запит або прогрів), для keep-alive
+
+        Backend(String name, int weight, LocalLlmClient client) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+            this.maxConcurrent = Math.max(1, client.config().maxConcurrent);
+            this.client = client;
+            this.breaker = LlmCircuitBreaker.forTimeout(client.config().timeoutSec);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        double latencyScore() {
+            double ms = (ewmaMs >= 0) ? ewmaMs : (pingMs >= 0 ? pingMs : 0);
+            return ms / weight;
+        }
+    }
+
+    private static final AtomicInteger HEDGE_THREAD_ID = new AtomicInteger();
+
+    // Потоки для паралельних спроб при hedging
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "hellomod-llm-hedge-" + HEDGE_THREAD_ID.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static LlmBackendPool current;
+    private static String currentKey;
+
+    private final LocalLlmClient.Config cfg;
+    private final List<Backend> backends;
+
+    // Недавня латентність (ring buffer) для порогу hedging + лічильники
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private long hedgesFired;
+    private long hedgeWins;
+    private ScheduledExecutorService health;
+    private ScheduledFuture<?> healthTask;
+
+    private LlmBackendPool(LocalLlmClient.Config cfg) {
+        this.cfg = cfg;
+
+        List<Backend> list = new ArrayList<>();
+        if (cfg.backends == null || cfg.backends.isEmpty()) {
+            list.add(new Backend(cfg.baseUrl, 1, LlmClientProvider.forConfig(cfg)));
+        } else {
+            for (LocalLlmClient.Backend b : cfg.backends) {
+                LocalLlmClient.Config bc = cfg.forBackend(b);
+                String name = (b.name != null && !b.name.isBlank()) ? b.name : bc.baseUrl;
+                list.add(new Backend(name, b.weight, LlmClientProvider.forConfig(bc)));
+            }
+        }
+        this.backends = Collections.unmodifiableList(list);
+    }
+
+    /** Пул під поточний local_llm.json (перебудовується, якщо конфіг змінився). */
+    public static synchronized LlmBackendPool get() {
+        LocalLlmClient.Config cfg = LlmClientProvider.get().config();
+        String key = cfg.key();
+        if (current == null || !key.equals(currentKey)) {
+            if (current != null) current.stopHealthChecks();
+            current = new LlmBackendPool(cfg);
+            currentKey = key;
+            current.startHealthChecks();
+            LOGGER.info("[llm] backend pool: {} backend(s), routing={}", current.backends.size(), cfg.routing);
+        }
+        return current;
+    }
+
+    /** Окремий пул під довільний конфіг, без health check-ів і без local_llm.json (тести зі stub-серверами). */
+    static LlmBackendPool create(LocalLlmClient.Config cfg) {
+        return new LlmBackendPool(cfg);
+    }
+
+    /** Зупинка сервера. */
+    public static synchronized void shutdown() {
+        if (current != null) current.stopHealthChecks();
+        current = null;
+        currentKey = null;
+    }
+
+    /** Ключ конфігу всього пулу (для кешу відповідей / single-flight). */
+    public String configKey() {
+        return cfg.key();
+    }
+
+    /**
+     * Сумарна кількість слотів здорових бекендів (для планувальника): CLOSED — maxConcurrent,
+     * HALF_OPEN — 1 (пропускає лише пробу), OPEN — 0.
+     */
+    public synchronized int totalSlots() {
+        long now = System.currentTimeMillis();
+        int slots = 0;
+        for (Backend b : backends) {
+            if (!b.healthy) continue;
+            b.breaker.allows(now); // OPEN -> HALF_OPEN, якщо час проби вже настав
+            slots += switch (b.breaker.state()) {
+                case CLOSED -> b.maxConcurrent;
+                case HALF_OPEN -> 1;
+                case OPEN -> 0;
+            };
+        }
+        return Math.max(1, slots);
+    }
+
+    /**
+     * 0 — хоч один бекенд приймає запити; інакше — через скільки мс найближчий breaker пустить запит
+     * (OPEN — до проби, HALF_OPEN з пробою в польоті — поки проба може тривати).
+     */
+    public synchronized long unavailableForMs() {
+        long now = System.currentTimeMillis();
+        long min = Long.MAX_VALUE;
+        for (Backend b : backends) {
+            if (b.breaker.allows(now)) return 0;
+            min = Math.min(min, b.breaker.retryInMs(now));
+        }
+        return min;
+    }
+
+    /**
+     * Виконати call на найкращому бекенді.
+     * - помилка/таймаут -> failover на наступний бекенд (якщо стрім ще не почав віддавати текст);
+     * - hedge у конфігу -> якщо бекенд мовчить довше за hedgePercentile недавньої латентності,
+     *   паралельно пробуємо другий бекенд; перший результат, що пройшов valid, виграє, іншого скасовуємо.
+     */
+    public <T> T call(LlmCall<T> call, Predicate<T> valid) throws Exception {
+        Set<Backend> tried = new HashSet<>();
+        Exception last = null;
+
+        while (true) {
+            Backend primary = acquire(tried, false);
+            if (primary == null) {
+                if (last != null) throw last;
+                throw new BackendUnavailableException(unavailableForMs());
+            }
+            tried.add(primary);
+
+            long delay = hedgeDelayMs();
+            Done<T> d = (delay >= 0 && backends.size() > 1)
+                    ? runHedged(primary, call, valid, tried, delay)
+                    : runInline(primary, call);
+
+            if (d.error == null) return d.value;
+
+            last = d.error;
+            if (!(d.error instanceof IOException || d.error instanceof LocalLlmClient.LocalLlmException)) throw d.error;
+            if (d.attempt.started()) throw d.error; // частину тексту вже показали — не дублюємо
+        }
+    }
+
+    /** Звичайна спроба на потоці, що викликав. */
+    private <T> Done<T> runInline(Backend b, LlmCall<T> call) {
+        Attempt a = new Attempt(this, b, new Object());
+        return attempt(a, call);
+    }
+
+    private <T> Done<T> runHedged(Backend primary, LlmCall<T> call, Predicate<T> valid,
+                                  Set<Backend> tried, long delayMs) throws InterruptedException {
+        Object signal = new Object();
+        BlockingQueue<Done<T>> done = new LinkedBlockingQueue<>();
+        List<Attempt> attempts = new ArrayList<>(2);
+
+        attempts.add(launch(new Attempt(this, primary, signal), call, done));
+
+        try {
+            // Чекаємо результат / перший токен / поріг
+            Attempt first = attempts.get(0);
+            long deadline = System.nanoTime() + delayMs * 1_000_000L;
+            synchronized (signal) {
+                long rem;
+                while (done.isEmpty() && !first.started() && (rem = deadline - System.nanoTime()) > 0) {
+                    signal.wait(Math.max(1, rem / 1_000_000L));
+                }
+            }
+
+            if (done.isEmpty() && !first.started()) {
+                Backend second = acquire(tried, true);
+                if (second != null) {
+                    tried.add(second);
+                    synchronized (this) {
+                        hedgesFired++;
+                    }
+                    LOGGER.info("[llm] hedging: {} silent for {}ms, also trying {}", primary.name, delayMs, second.name);
+                    attempts.add(launch(new Attempt(this, second, signal), call, done));
+                }
+            }
+
+            Done<T> fallback = null;
+            for (int finished = 0; finished < attempts.size(); finished++) {
+                Done<T> d = done.take();
+                if (d.error == null && valid.test(d.value)) {
+                    if (d.attempt != first) {
+                        synchronized (this) {
+                            hedgeWins++;
+                        }
+                    }
+                    return d;
+                }
+                // невалідний результат кращий за помилку — віддамо його, якщо валідного не буде
+                if (fallback == null || (fallback.error != null && d.error == null)) fallback = d;
+            }
+            return fallback;
+        } finally {
+            for (Attempt a : attempts) a.cancel();
+        }
+    }
+
+    private <T> Attempt launch(Attempt a, LlmCall<T> call, BlockingQueue<Done<T>> done) {
+        HEDGE_EXECUTOR.execute(() -> {
+            done.add(attempt(a, call));
+            synchronized (a.signal) {
+                a.signal.notifyAll();
+            }
+        });
+        return a;
+    }
+
+    /** Одна спроба + облік статистики бекенда. */
+    private <T> Done<T> attempt(Attempt a, LlmCall<T> call) {
+        a.bind(Thread.currentThread());
+        try {
+            T value = call.apply(a.backend.client, a);
+            release(a, a.cancelled() ? Outcome.NEUTRAL : Outcome.OK);
+            return new Done<>(a, value, null);
+        } catch (IOException | LocalLlmClient.LocalLlmException e) {
+            release(a, a.cancelled() ? Outcome.NEUTRAL : Outcome.FAILED);
+            if (!a.cancelled()) LOGGER.warn("[llm] backend {} failed: {}", a.backend.name, e.toString());
+            return new Done<>(a, null, e);
+        } catch (Exception e) {
+            // InterruptedException / баги в call — не вина бекенда
+            release(a, Outcome.NEUTRAL);
+            return new Done<>(a, null, e);
+        } finally {
+            a.bind(null);
+            if (a.cancelled()) Thread.interrupted(); // не тягнемо interrupt від cancel() у наступну задачу потоку
+        }
+    }
+
+    /** Поріг hedging: hedgePercentile недавньої латентності (мс) або -1, якщо hedging вимкнено / мало даних. */
+    private synchronized long hedgeDelayMs() {
+        if (!cfg.hedge || latencyCount < HEDGE_MIN_SAMPLES) return -1;
+
+        int n = Math.min(latencyCount, LATENCY_WINDOW);
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(cfg.hedgePercentile / 100.0 * n) - 1;
+        long p = sorted[Math.max(0, Math.min(n - 1, idx))];
+        return Math.max(cfg.hedgeMinDelayMs, p);
+    }
+
+    /**
+     * Прогріти модель на бекендах (LLM/warm-up потік, не server thread).
+     * idleMs > 0 — лише ті, що простоюють довше (keep-alive); зайняті і з OPEN breaker пропускаємо.
+     * Латентність прогріву в статистику/breaker не йде — це час load моделі, а не відповіді.
+     */
+    public void warmUp(long idleMs) {
+        for (Backend b : backends) {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                if (b.inFlight > 0 || b.breaker.state() == LlmCircuitBreaker.State.OPEN) continue;
+                if (idleMs > 0 && now - b.lastUsedMs < idleMs) continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                b.client.warmUp();
+                long ms = (System.nanoTime() - start) / 1_000_000L;
+                synchronized (this) {
+                    b.lastUsedMs = System.currentTimeMillis();
+                }
+                if (idleMs > 0) {
+                    LOGGER.debug("[llm] keep-alive {} {}ms", b.name, ms);
+                } else {
+                    LOGGER.info("[llm] backend {} warmed up in {}ms", b.name, ms);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("[llm] backend {} warm-up failed: {}", b.name, e.toString());
+            }
+        }
+    }
+
+    /** Рядки для /ai llm_status. */
+    public synchronized List<String> stats() {
+        List<String> out = new ArrayList<>();
+        if (cfg.hedge) {
+            long p = hedgeDelayMs();
+            out.add("hedge: p" + cfg.hedgePercentile + "=" + (p < 0 ? "(warming up)" : p + "ms")
+                    + " fired=" + hedgesFired + " hedgeWins=" + hedgeWins);
+        }
+        long now = System.currentTimeMillis();
+        for (Backend b : backends) {
+            out.add("backend " + b.name
+                    + (b.healthy ? " UP" : " DOWN")
+                    + " load=" + b.inFlight + "/" + b.maxConcurrent
+                    + " w=" + b.weight
+                    + " ok=" + b.ok + " fail=" + b.failed
+                    + " avg=" + (b.ewmaMs < 0 ? "-" : (long) b.ewmaMs + "ms")
+                    + " ping=" + (b.pingMs < 0 ? "-" : b.pingMs + "ms")
+                    + " " + b.breaker.describe(now));
+        }
+        return out;
+    }
+
+    /** Рядки для /ai llm_breaker: лише стан breaker по кожному бекенду. */
+    public synchronized List<String> breakerStatus() {
+        long now = System.currentTimeMillis();
+        List<String> out = new ArrayList<>();
+        for (Backend b : backends) {
+            out.add("backend " + b.name + " " + b.breaker.describe(now));
+        }
+        return out;
+    }
+
+    /**
+     * requireFree — тільки здоровий бекенд з вільним слотом (для hedge не перевантажуємо зайнятих).
+     * Бекенди, чий breaker зараз не пускає (OPEN або HALF_OPEN з пробою в польоті), пропускаємо завжди.
+     */
+    private synchronized Backend acquire(Set<Backend> tried, boolean requireFree) {
+        long now = System.currentTimeMillis();
+        Backend best = null;
+        for (Backend b : backends) {
+            if (tried.contains(b)) continue;
+            if (!b.breaker.allows(now)) continue;
+            if (requireFree && (!b.healthy || b.inFlight >= b.maxConcurrent)) continue;
+            if (best == null || better(b, best)) best = b;
+        }
+        if (best != null) {
+            best.inFlight++;
+            if (best.breaker.state() == LlmCircuitBreaker.State.HALF_OPEN) {
+                LOGGER.info("[llm] backend {} breaker HALF_OPEN, sending probe request", best.name);
+            }
+            best.breaker.onAcquire(now);
+        }
+        return best;
+    }
+
+    /** Зайняти до n вільних слотів бекенда поверх вже взятого (лише CLOSED — пробу в HALF_OPEN не множимо). */
+    private synchronized int reserveOn(Backend b, int n) {
+        if (n <= 0 || b.breaker.state() != LlmCircuitBreaker.State.CLOSED) return 0;
+        int k = Math.max(0, Math.min(n, b.maxConcurrent - b.inFlight));
+        b.inFlight += k;
+        return k;
+    }
+
+    private synchronized void releaseOn(Backend b, int n) {
+        b.inFlight -= n;
+    }
+
+    /** Порядок: здоровий > нездоровий, є вільний слот > немає, далі — за routing. */
+    private boolean better(Backend a, Backend b) {
+        if (a.healthy != b.healthy) return a.healthy;
+
+        boolean aFree = a.inFlight < a.maxConcurrent;
+        boolean bFree = b.inFlight < b.maxConcurrent;
+        if (aFree != bFree) return aFree;
+
+        double aLoad = (double) a.inFlight / a.weight;
+        double bLoad = (double) b.inFlight / b.weight;
+
+        if (cfg.routing == LocalLlmClient.Routing.LOWEST_LATENCY) {
+            if (a.latencyScore() != b.latencyScore()) return a.latencyScore() < b.latencyScore();
+            return aLoad < bLoad;
+        }
+        if (aLoad != bLoad) return aLoad < bLoad;
+        return a.latencyScore() < b.latencyScore();
+    }
+
+    private enum Outcome { OK, FAILED, NEUTRAL }
+
+    private synchronized void release(Attempt a, Outcome outcome) {
+        Backend b = a.backend;
+        b.inFlight--;
+
+        long now = System.currentTimeMillis();
+        // Одна метрика для breaker, EWMA і hedging: у стрімі — до першого токена, інакше — до відповіді.
+        // Повний час генерації залежить від довжини відповіді, а не від здоров'я бекенда.
+        long ms = a.latencyMs();
+        LlmCircuitBreaker.State before = b.breaker.state();
+        if (outcome == Outcome.OK) b.lastUsedMs = now;
+
+        switch (outcome) {
+            case OK -> {
+                b.breaker.onSuccess(ms, now);
+                b.consecutiveFails = 0;
+                b.ok++;
+                b.ewmaMs = (b.ewmaMs < 0) ? ms : (EWMA_ALPHA * ms + (1 - EWMA_ALPHA) * b.ewmaMs);
+                latencies[latencyCount % LATENCY_WINDOW] = ms;
+                latencyCount++;
+            }
+            case FAILED -> {
+                b.breaker.onFailure(now);
+                b.failed++;
+                b.consecutiveFails++;
+                if (b.consecutiveFails >= FAILS_TO_MARK_DOWN && b.healthy) {
+                    b.healthy = false;
+                    LOGGER.warn("[llm] backend {} marked DOWN after {} failures", b.name, b.consecutiveFails);
+                }
+            }
+            case NEUTRAL -> b.breaker.onIgnored();
+        }
+
+        LlmCircuitBreaker.State after = b.breaker.state();
+        if (after != before) {
+            LOGGER.warn("[llm] backend {} breaker {} -> {}", b.name, before, after);
+        }
+    }
+
+    private void startHealthChecks() {
+        if (cfg.healthCheckSec <= 0) return;
+
+        health = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hellomod-llm-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthTask = health.scheduleWithFixedDelay(this::checkAll, 0, cfg.healthCheckSec, TimeUnit.SECONDS);
+    }
+
+    private void stopHealthChecks() {
+        if (healthTask != null) healthTask.cancel(false);
+        if (health != null) health.shutdownNow();
+        health = null;
+        healthTask = null;
+    }
+
+    private void checkAll() {
+        Duration timeout = Duration.ofSeconds(Math.min(5, Math.max(1, cfg.healthCheckSec)));
+        for (Backend b : backends) {
+            long start = System.nanoTime();
+            boolean up;
+            try {
+                up = b.client.ping(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                up = false;
+            }
+            long ms = (System.nanoTime() - start) / 1_000_000L;
+
+            synchronized (this) {
+                if (up != b.healthy) {
+                    LOGGER.info("[llm] backend {} is now {}", b.name, up ? "UP" : "DOWN");
+                }
+                b.healthy = up;
+                if (up) {
+                    b.pingMs = ms;
+                    b.consecutiveFails = 0;
+                }
+            }
+        }
+    }
+}
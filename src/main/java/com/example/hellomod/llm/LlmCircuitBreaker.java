@@ -0,0 +1,178 @@
+package com.example.hellomod.llm;
+
+/**
+ * Circuit breaker для одного LLM-бекенда.
+ *
+ * CLOSED    — запити йдуть; рахуємо останні WINDOW результатів.
+ *             Частка помилок >= FAILURE_RATE% або повільних (довше slowCallMs) >= SLOW_RATE%
+ *             (при мінімум MIN_CALLS викликах) -> OPEN.
+ *             "Довго" міряємо до першого токена (стрім) / до відповіді (blocking) — як LlmBackendPool
+ *             латентність для EWMA і hedging, а не повний час генерації: повільна, але здорова модель на CPU
+ *             не має відкривати breaker.
+ * OPEN      — бекенд не чіпаємо взагалі, гравець одразу отримує "backend unavailable".
+ *             Через OPEN_SEC -> HALF_OPEN.
+ * HALF_OPEN — пропускаємо рівно один запит-пробу. Успіх -> CLOSED (вікно з нуля), помилка/повільно -> знову OPEN.
+ *             Поки проба летить, бекенд для інших запитів недоступний так само, як OPEN: retryInMs —
+ *             скільки проба ще може тривати (до probeTimeoutMs), а не 0.
+ *
+ * Не потокобезпечний — викликається під lock LlmBackendPool.
+ *
+ * Налаштування (system properties): ai.llm.breaker.window (10), ai.llm.breaker.minCalls (5),
+ * ai.llm.breaker.failureRate (50), ai.llm.breaker.slowRate (80), ai.llm.breaker.openSec (30),
+ * ai.llm.breaker.slowCallMs (за замовчуванням — 80% від timeoutSec бекенда).
+ */
+public final class LlmCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int WINDOW = Math.max(1, Integer.getInteger("ai.llm.breaker.window", 10));
+    private static final int MIN_CALLS = Math.max(1, Integer.getInteger("ai.llm.breaker.minCalls", 5));
+    private static final int FAILURE_RATE = Integer.getInteger("ai.llm.breaker.failureRate", 50);
+    private static final int SLOW_RATE = Integer.getInteger("ai.llm.breaker.slowRate", 80);
+    private static final long SLOW_CALL_MS = Integer.getInteger("ai.llm.breaker.slowCallMs", 0);
+    private static final long OPEN_MS = Math.max(1, Integer.getInteger("ai.llm.breaker.openSec", 30)) * 1000L;
+
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final long slowCallMs;
+    private final long probeTimeoutMs;
+    private final byte[] window = new byte[WINDOW];
+    private int calls;
+    private int failures;
+    private int slow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long probeStartedAt;
+    private long opens;
+
+    /** slowCallMs — поріг "повільного" виклику; довше за нього проба не чекається (див. forTimeout). */
+    public LlmCircuitBreaker(long slowCallMs) {
+        this(slowCallMs, slowCallMs);
+    }
+
+    /** probeTimeoutMs — скільки найдовше може тривати проба в HALF_OPEN (для retryInMs). */
+    public LlmCircuitBreaker(long slowCallMs, long probeTimeoutMs) {
+        this.slowCallMs = Math.max(1, slowCallMs);
+        this.probeTimeoutMs = Math.max(1, probeTimeoutMs);
+    }
+
+    /** Breaker для бекенда з таким timeoutSec: повільний — той, що майже вичерпав таймаут. */
+    public static LlmCircuitBreaker forTimeout(int timeoutSec) {
+        long timeoutMs = Math.max(1, timeoutSec) * 1000L;
+        return new LlmCircuitBreaker(SLOW_CALL_MS > 0 ? SLOW_CALL_MS : timeoutMs * 8 / 10, timeoutMs);
+    }
+
+    /** Чи можна зараз слати запит (OPEN -> HALF_OPEN по таймеру тут же). */
+    public boolean allows(long now) {
+        if (state == State.OPEN && now - openedAt >= OPEN_MS) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+
+    /** Запит реально пішов (у HALF_OPEN це і є проба). */
+    public void onAcquire(long now) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = true;
+            probeStartedAt = now;
+        }
+    }
+
+    /** ms — латентність до першого токена (blocking: до відповіді). */
+    public void onSuccess(long ms, long now) {
+        boolean isSlow = ms > slowCallMs;
+        if (state == State.HALF_OPEN) {
+            if (isSlow) {
+                open(now);
+            } else {
+                reset();
+            }
+            return;
+        }
+        record(isSlow ? SLOW : OK, now);
+    }
+
+    public void onFailure(long now) {
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        record(FAILED, now);
+    }
+
+    /** Запит скасовано / перервано — не рахуємо, але пробу звільняємо. */
+    public void onIgnored() {
+        if (state == State.HALF_OPEN) probeInFlight = false;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Скільки мс, поки бекенд знову прийме запит: OPEN — до проби, HALF_OPEN з пробою в польоті —
+     * поки проба може ще тривати (мінімум 1). 0 — приймає зараз.
+     */
+    public long retryInMs(long now) {
+        return switch (state) {
+            case CLOSED -> 0;
+            case OPEN -> Math.max(0, OPEN_MS - (now - openedAt));
+            case HALF_OPEN -> probeInFlight ? Math.max(1, probeTimeoutMs - (now - probeStartedAt)) : 0;
+        };
+    }
+
+    public String describe(long now) {
+        int n = Math.min(calls, WINDOW);
+        String rates = (n == 0) ? "" : " fail=" + (failures * 100 / n) + "% slow=" + (slow * 100 / n) + "%";
+        long retryMs = retryInMs(now);
+        String retry = (retryMs > 0) ? " retryIn=" + ((retryMs + 999) / 1000) + "s" : "";
+        return "breaker=" + state + rates + retry + " opened=" + opens;
+    }
+
+    private void record(byte outcome, long now) {
+        int slot = calls % WINDOW;
+        if (calls >= WINDOW) {
+            // викидаємо найстаріший результат з вікна
+            if (window[slot] == FAILED) failures--;
+            if (window[slot] == SLOW) slow--;
+        }
+        window[slot] = outcome;
+        if (outcome == FAILED) failures++;
+        if (outcome == SLOW) slow++;
+        calls++;
+
+        int n = Math.min(calls, WINDOW);
+        if (n < MIN_CALLS) return;
+        if (failures * 100 >= FAILURE_RATE * n || slow * 100 >= SLOW_RATE * n) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        probeInFlight = false;
+        opens++;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        calls = 0;
+        failures = 0;
+        slow = 0;
+    }
+}
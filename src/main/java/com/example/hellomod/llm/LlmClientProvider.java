@@ -0,0 +1,148 @@
+package com.example.hellomod.llm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Довгоживучі LocalLlmClient-и.
+ *
+ * LocalLlmClient.createDefault() на кожен запит = читання local_llm.json з диска + новий HttpClient
+ * (без пулу з'єднань і keep-alive). Тут тримаємо один клієнт на конфіг:
+ * - get() — клієнт для поточного local_llm.json (+ system properties);
+ * - forConfig(cfg) — клієнт для довільного конфігу (кешується по Config.key());
+ * - local_llm.json слухаємо через WatchService і перечитуємо при зміні. Якщо ефективний конфіг
+ *   не змінився — лишаємо старий клієнт разом з його з'єднаннями; якщо змінився — з кешу йдуть усі
+ *   клієнти, яких новий конфіг (разом з бекендами пулу) більше не використовує.
+ */
+public final class LlmClientProvider {
+    private static final Logger LOGGER = LogManager.getLogger(LlmClientProvider.class);
+
+    private static final Map<String, LocalLlmClient> BY_KEY = new ConcurrentHashMap<>();
+
+    private static volatile LocalLlmClient current;
+    private static WatchService watcher;
+
+    private LlmClientProvider() {}
+
+    /** Клієнт для поточного local_llm.json. Перший виклик вантажить конфіг і запускає file watch. */
+    public static LocalLlmClient get() {
+        LocalLlmClient c = current;
+        if (c != null) return c;
+
+        synchronized (LlmClientProvider.class) {
+            if (current == null) {
+                current = forConfig(LocalLlmClient.loadEffectiveConfig());
+                startWatcher();
+                LOGGER.info("[llm] client ready: {}", current.describe());
+            }
+            return current;
+        }
+    }
+
+    /** Один клієнт на однаковий конфіг (по Config.key()). */
+    public static LocalLlmClient forConfig(LocalLlmClient.Config cfg) {
+        return BY_KEY.computeIfAbsent(cfg.key(), k -> new LocalLlmClient(cfg));
+    }
+
+    /** Перечитати local_llm.json зараз (викликає file watch). */
+    public static synchronized void reload() {
+        LocalLlmClient.Config cfg = LocalLlmClient.loadEffectiveConfig();
+        LocalLlmClient old = current;
+        if (old != null && old.config().key().equals(cfg.key())) {
+            return; // нічого суттєвого не змінилось — лишаємо пул з'єднань
+        }
+
+        current = forConfig(cfg);
+
+        // Лишаємо тільки клієнтів нового конфігу (верхній рівень + кожен бекенд пулу);
+        // решта — старі бекенди разом з їхніми HttpClient — більше нікому не потрібні
+        Set<String> live = liveKeys(cfg);
+        int before = BY_KEY.size();
+        BY_KEY.keySet().retainAll(live);
+        LOGGER.info("[llm] local_llm.json reloaded: {} (dropped {} stale client(s))",
+                current.describe(), before - BY_KEY.size());
+    }
+
+    /** Ключі клієнтів, якими користується конфіг: він сам і LlmBackendPool (cfg.forBackend на кожен бекенд). */
+    private static Set<String> liveKeys(LocalLlmClient.Config cfg) {
+        Set<String> keys = new HashSet<>();
+        keys.add(cfg.key());
+        if (cfg.backends != null) {
+            for (LocalLlmClient.Backend b : cfg.backends) keys.add(cfg.forBackend(b).key());
+        }
+        return keys;
+    }
+
+    /** Зупинка сервера: гасимо watch, клієнти забуваємо (наступний get() створить заново). */
+    public static synchronized void shutdown() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ignored) { }
+            watcher = null;
+        }
+        current = null;
+        BY_KEY.clear();
+    }
+
+    private static void startWatcher() {
+        if (watcher != null) return;
+
+        Path file = LocalLlmClient.configPath().toAbsolutePath();
+        Path dir = file.getParent();
+        if (dir == null || !Files.isDirectory(dir)) return;
+
+        try {
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            dir.register(ws,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watcher = ws;
+
+            Thread t = new Thread(() -> watchLoop(ws, file.getFileName()), "hellomod-llm-config");
+            t.setDaemon(true);
+            t.start();
+        } catch (IOException e) {
+            LOGGER.warn("[llm] cannot watch {} (hot reload disabled): {}", file, e.toString());
+        }
+    }
+
+    private static void watchLoop(WatchService ws, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean touched = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    Object ctx = ev.context();
+                    if (ctx instanceof Path p && p.equals(fileName)) touched = true;
+                }
+                key.reset();
+
+                if (touched) {
+                    try {
+                        reload();
+                    } catch (Exception e) {
+                        LOGGER.warn("[llm] local_llm.json reload failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // shutdown()
+        }
+    }
+}
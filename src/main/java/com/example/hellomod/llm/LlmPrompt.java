@@ -0,0 +1,62 @@
+package com.example.hellomod.llm;
+
+/**
+ * Промпт з двох частин.
+ *
+ * system — статичний префікс (правила, DSL, дозволені блоки, приклади). Має бути байт-в-байт однаковим
+ * між запитами: тоді llama.cpp / Ollama перевикористовують KV-кеш префікса і не рахують його заново.
+ * user   — динамічна частина (запит гравця, оточення), завжди ПІСЛЯ префікса.
+ *
+ * Ollama: system -> поле "system" у /api/generate; OpenAI-compatible: окреме system-повідомлення
+ * (+ "cache_prompt" для llama.cpp, див. Config.cachePrompt).
+ *
+ * Обмеження виводу (опційно, діє лише з Config.grammar):
+ * grammar    — GBNF для llama.cpp ("grammar" у запиті): модель фізично не може написати рядок поза граматикою;
+ * jsonSchema — JSON schema для Ollama ("format"): відповідь — JSON за схемою, а не текст.
+ */
+public final class LlmPrompt {
+    public final String system;
+    public final String user;
+    public final String grammar;
+    public final String jsonSchema;
+
+    public LlmPrompt(String system, String user) {
+        this(system, user, null, null);
+    }
+
+    private LlmPrompt(String system, String user, String grammar, String jsonSchema) {
+        this.system = (system == null) ? "" : system;
+        this.user = (user == null) ? "" : user;
+        this.grammar = grammar;
+        this.jsonSchema = jsonSchema;
+    }
+
+    /** Той самий промпт з GBNF-граматикою (llama.cpp). */
+    public LlmPrompt withGrammar(String gbnf) {
+        return new LlmPrompt(system, user, gbnf, null);
+    }
+
+    /** Той самий промпт з JSON schema (Ollama format); extraUser дописується в кінець динамічної частини. */
+    public LlmPrompt withJsonSchema(String schema, String extraUser) {
+        String u = (extraUser == null || extraUser.isEmpty()) ? user : user + extraUser;
+        return new LlmPrompt(system, u, null, schema);
+    }
+
+    /** Старий стиль: усе одним текстом, без статичного префікса. */
+    public static LlmPrompt of(String prompt) {
+        return new LlmPrompt("", prompt);
+    }
+
+    public boolean hasSystem() {
+        return !system.isEmpty();
+    }
+
+    /** Повний текст (для ключів single-flight і логів). */
+    public String text() {
+        return hasSystem() ? system + "\n" + user : user;
+    }
+
+    public int length() {
+        return system.length() + user.length();
+    }
+}
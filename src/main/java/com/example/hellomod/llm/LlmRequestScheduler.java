@@ -0,0 +1,239 @@
+package com.example.hellomod.llm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планувальник LLM-запитів замість одного newSingleThreadExecutor.
+ *
+ * - паралельно біжить не більше, ніж є слотів у здорових бекендів пулу (сума Config.maxConcurrent,
+ *   див. LlmBackendPool); який саме бекенд — вирішує пул;
+ * - решта чекає в обмеженій черзі (ai.llm.queue.max, дефолт 16); повна черга = відмова, а не вічне очікування;
+ * - один гравець не може тримати в черзі більше ai.llm.queue.maxPerPlayer (дефолт 2) запитів;
+ * - черга справедлива: гравці обслуговуються по колу, по одному запиту за раз,
+ *   тож десять запитів одного гравця не відсувають єдиний запит іншого.
+ */
+public final class LlmRequestScheduler {
+    private static final Logger LOGGER = LogManager.getLogger(LlmRequestScheduler.class);
+
+    private static final int MAX_QUEUED = Math.max(1, Integer.getInteger("ai.llm.queue.max", 16));
+    private static final int MAX_QUEUED_PER_PLAYER = Math.max(1, Integer.getInteger("ai.llm.queue.maxPerPlayer", 2));
+
+    /** Результат submit: позиція в черзі (1 = наступний) або причина відмови. */
+    public static final class Ticket {
+        public final boolean accepted;
+        public final int position;
+        public final String rejectReason;
+
+        private Ticket(boolean accepted, int position, String rejectReason) {
+            this.accepted = accepted;
+            this.position = position;
+            this.rejectReason = rejectReason;
+        }
+    }
+
+    private static final class Task {
+        final UUID playerId;
+        final Runnable body;
+        final Runnable onDropped;
+
+        Task(UUID playerId, Runnable body, Runnable onDropped) {
+            this.playerId = playerId;
+            this.body = body;
+            this.onDropped = onDropped;
+        }
+    }
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    // Потоки не лімітуємо тут — ліміт тримає inFlight, пул лише дає потоки під слоти
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "hellomod-llm-" + THREAD_ID.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Черги по гравцях; порядок ключів = порядок обходу по колу
+    private static final LinkedHashMap<UUID, ArrayDeque<Task>> QUEUES = new LinkedHashMap<>();
+    private static int queued;
+    private static int running;
+    private static long completed;
+    private static long rejected;
+
+    private LlmRequestScheduler() {}
+
+    /**
+     * Поставити запит у чергу. Задача виконається на LLM-потоці, коли звільниться слот.
+     * onDropped (може бути null) — якщо задачу викинули з черги, так і не запустивши (вихід гравця, стоп сервера).
+     */
+    public static synchronized Ticket submit(UUID playerId, Runnable body, Runnable onDropped) {
+        ArrayDeque<Task> mine = QUEUES.get(playerId);
+        int mineCount = (mine == null) ? 0 : mine.size();
+
+        if (mineCount >= MAX_QUEUED_PER_PLAYER) {
+            rejected++;
+            return new Ticket(false, 0, "you already have " + mineCount + " requests waiting");
+        }
+        if (queued >= MAX_QUEUED) {
+            rejected++;
+            return new Ticket(false, 0, "LLM queue is full (" + queued + "), try again later");
+        }
+
+        if (mine == null) {
+            mine = new ArrayDeque<>();
+            QUEUES.put(playerId, mine);
+        }
+        Task task = new Task(playerId, body, onDropped);
+        mine.addLast(task);
+        queued++;
+
+        // Позиція рахується до dispatch; якщо слот був вільний — задача вже пішла (позиція 0)
+        int position = positionOfLast(playerId);
+        dispatch();
+
+        ArrayDeque<Task> after = QUEUES.get(playerId);
+        boolean waiting = after != null && after.contains(task);
+        return new Ticket(true, waiting ? position : 0, null);
+    }
+
+    /** Скільки запитів чекає і скільки виконується (для /ai llm_status). */
+    public static synchronized String stats() {
+        return "queue: waiting=" + queued + "/" + MAX_QUEUED
+                + " running=" + running + "/" + LlmBackendPool.get().totalSlots()
+                + " completed=" + completed
+                + " rejected=" + rejected;
+    }
+
+    /**
+     * Задача, що вже біжить, забирає до n вільних слотів під додаткові паралельні запити (кандидати).
+     * Не чекає: повертає, скільки слотів вільно зараз (0..n). Повертати через release.
+     */
+    public static synchronized int reserve(int n) {
+        int k = Math.max(0, Math.min(n, LlmBackendPool.get().totalSlots() - running));
+        running += k;
+        return k;
+    }
+
+    public static synchronized void release(int n) {
+        if (n <= 0) return;
+        running -= n;
+        dispatch();
+    }
+
+    /** Вихід гравця: його запити, що ще чекають, більше не потрібні. */
+    public static int cancel(UUID playerId) {
+        ArrayDeque<Task> mine;
+        synchronized (LlmRequestScheduler.class) {
+            mine = QUEUES.remove(playerId);
+            if (mine == null) return 0;
+            queued -= mine.size();
+        }
+        notifyDropped(mine);
+        return mine.size();
+    }
+
+    /** Зупинка сервера: чергу чистимо, запущені запити доживуть самі (потоки daemon). */
+    public static void clear() {
+        List<Task> dropped = new ArrayList<>();
+        synchronized (LlmRequestScheduler.class) {
+            for (ArrayDeque<Task> q : QUEUES.values()) dropped.addAll(q);
+            QUEUES.clear();
+            queued = 0;
+        }
+        notifyDropped(dropped);
+    }
+
+    private static void notifyDropped(Collection<Task> dropped) {
+        for (Task t : dropped) {
+            if (t.onDropped == null) continue;
+            try {
+                t.onDropped.run();
+            } catch (Exception e) {
+                LOGGER.error("[llm] onDropped failed", e);
+            }
+        }
+    }
+
+    /**
+     * 1-based позиція останньої задачі гравця при обході по колу:
+     * у кожному раунді кожен гравець з непорожньою чергою віддає одну задачу.
+     */
+    private static int positionOfLast(UUID playerId) {
+        int myIndex = QUEUES.get(playerId).size(); // наша задача — у раунді myIndex
+        int pos = 0;
+        for (Map.Entry<UUID, ArrayDeque<Task>> e : QUEUES.entrySet()) {
+            int n = e.getValue().size();
+            if (e.getKey().equals(playerId)) {
+                pos += myIndex;
+            } else {
+                // повні раунди до нашого + ті, що в нашому раунді стоять раніше (порядок ключів)
+                pos += Math.min(n, myIndex - 1);
+                if (n >= myIndex && isBefore(e.getKey(), playerId)) pos++;
+            }
+        }
+        return pos;
+    }
+
+    private static boolean isBefore(UUID a, UUID b) {
+        for (UUID id : QUEUES.keySet()) {
+            if (id.equals(a)) return true;
+            if (id.equals(b)) return false;
+        }
+        return false;
+    }
+
+    /** Роздаємо вільні слоти: по колу, одна задача з голови черги кожного гравця. */
+    private static void dispatch() {
+        int limit = LlmBackendPool.get().totalSlots();
+
+        while (queued > 0 && running < limit) {
+            Task task = pollNextFair();
+            if (task == null) break;
+
+            running++;
+            EXECUTOR.execute(() -> run(task));
+        }
+    }
+
+    private static Task pollNextFair() {
+        Iterator<Map.Entry<UUID, ArrayDeque<Task>>> it = QUEUES.entrySet().iterator();
+        if (!it.hasNext()) return null;
+
+        Map.Entry<UUID, ArrayDeque<Task>> head = it.next();
+        UUID playerId = head.getKey();
+        ArrayDeque<Task> q = head.getValue();
+        Task task = q.pollFirst();
+        queued--;
+
+        // Гравець іде в кінець кола (або зникає, якщо черга порожня)
+        it.remove();
+        if (!q.isEmpty()) QUEUES.put(playerId, q);
+        return task;
+    }
+
+    private static void run(Task task) {
+        try {
+            task.body.run();
+        } catch (Exception e) {
+            LOGGER.error("[llm] request task failed", e);
+        } finally {
+            synchronized (LlmRequestScheduler.class) {
+                running--;
+                completed++;
+                dispatch();
+            }
+        }
+    }
+}
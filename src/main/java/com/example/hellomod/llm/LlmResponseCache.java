@@ -0,0 +1,189 @@
+package com.example.hellomod.llm;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Кеш відповідей LLM (LRU + TTL).
+ *
+ * Ключ = конфіг клієнта (модель/бекенд) + нормалізований запит гравця + хеш контексту світу.
+ * Кладемо тільки відповіді, що пройшли DRY-RUN, — зламаний скрипт не повинен повторюватись з кешу.
+ *
+ * Налаштування (system properties):
+ * - ai.llm.cache.size    — максимум записів (0 = кеш вимкнено), дефолт 256
+ * - ai.llm.cache.ttlSec  — час життя запису, дефолт 3600
+ * - ai.llm.cache.persist — зберігати на диск (config/hellomod_llm_cache.json), дефолт false
+ */
+public final class LlmResponseCache {
+    private static final Logger LOGGER = LogManager.getLogger(LlmResponseCache.class);
+    private static final Gson GSON = new Gson();
+
+    private static final int MAX_ENTRIES = Math.max(0, Integer.getInteger("ai.llm.cache.size", 256));
+    private static final long TTL_MS = Math.max(1, Integer.getInteger("ai.llm.cache.ttlSec", 3600)) * 1000L;
+    private static final boolean PERSIST = Boolean.getBoolean("ai.llm.cache.persist");
+
+    private static final class Entry {
+        String key;
+        String response;
+        long createdAt;
+
+        Entry(String key, String response, long createdAt) {
+            this.key = key;
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // accessOrder=true -> LRU; найстаріший за доступом вилітає першим
+    private static final LinkedHashMap<String, Entry> MAP = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+    private static long expirations;
+    private static boolean loaded;
+
+    private LlmResponseCache() {}
+
+    public static boolean enabled() {
+        return MAX_ENTRIES > 0;
+    }
+
+    /** Ключ кешу: конфіг клієнта + нормалізований thing + хеш worldContext. */
+    public static String key(String clientKey, String thing, String worldContext) {
+        return Long.toHexString(fnv64(clientKey)) + "|" + normalizeThing(thing) + "|" + Long.toHexString(fnv64(worldContext));
+    }
+
+    /** "  Small   Platform! " -> "small platform" */
+    public static String normalizeThing(String thing) {
+        if (thing == null) return "";
+        String t = thing.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        int end = t.length();
+        while (end > 0 && ".,!?;:".indexOf(t.charAt(end - 1)) >= 0) end--;
+        return t.substring(0, end).trim();
+    }
+
+    /** Відповідь з кешу або null (прострочені записи викидаємо). */
+    public static synchronized String get(String key) {
+        if (!enabled()) return null;
+        loadIfNeeded();
+
+        Entry e = MAP.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (System.currentTimeMillis() - e.createdAt > TTL_MS) {
+            MAP.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.response;
+    }
+
+    public static synchronized void put(String key, String response) {
+        if (!enabled() || response == null || response.isBlank()) return;
+        loadIfNeeded();
+        MAP.put(key, new Entry(key, response, System.currentTimeMillis()));
+    }
+
+    public static synchronized void clear() {
+        MAP.clear();
+    }
+
+    /** Для /ai llm_status */
+    public static synchronized String stats() {
+        if (!enabled()) return "cache: off";
+        long total = hits + misses;
+        int hitPct = total == 0 ? 0 : (int) (hits * 100 / total);
+        return "cache: " + MAP.size() + "/" + MAX_ENTRIES
+                + " hits=" + hits + " misses=" + misses + " (" + hitPct + "%)"
+                + " evictions=" + evictions + " expired=" + expirations
+                + " ttl=" + (TTL_MS / 1000) + "s"
+                + (PERSIST ? " persist=on" : "");
+    }
+
+    /** Зупинка сервера: скидаємо живі записи на диск (якщо persist увімкнено). */
+    public static synchronized void save() {
+        if (!enabled() || !PERSIST || !loaded) return;
+
+        long now = System.currentTimeMillis();
+        List<Entry> out = new ArrayList<>(MAP.size());
+        for (Entry e : MAP.values()) {
+            if (now - e.createdAt <= TTL_MS) out.add(e);
+        }
+
+        Path path = cachePath();
+        try {
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, GSON.toJson(out), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            LOGGER.warn("[llm] cannot save response cache to {}: {}", path, e.toString());
+        }
+    }
+
+    private static void loadIfNeeded() {
+        if (loaded) return;
+        loaded = true;
+        if (!PERSIST) return;
+
+        Path path = cachePath();
+        if (!Files.exists(path)) return;
+
+        try {
+            String json = Files.readString(path, StandardCharsets.UTF_8);
+            List<Entry> in = GSON.fromJson(json, new TypeToken<List<Entry>>() { }.getType());
+            if (in == null) return;
+
+            long now = System.currentTimeMillis();
+            for (Entry e : in) {
+                if (e == null || e.key == null || e.response == null) continue;
+                if (now - e.createdAt > TTL_MS) continue;
+                MAP.put(e.key, e);
+            }
+            LOGGER.info("[llm] response cache loaded: {} entries", MAP.size());
+        } catch (Exception e) {
+            // битий файл — просто стартуємо з порожнім кешем
+            LOGGER.warn("[llm] cannot load response cache from {}: {}", path, e.toString());
+        }
+    }
+
+    private static Path cachePath() {
+        Path cfg = LocalLlmClient.configPath();
+        Path dir = cfg.getParent() == null ? Path.of("config") : cfg.getParent();
+        return dir.resolve("hellomod_llm_cache.json");
+    }
+
+    /** 64-bit FNV-1a — стабільний між запусками (на відміну від String.hashCode у 32 біти). */
+    static long fnv64(String s) {
+        long h = 0xcbf29ce484222325L;
+        if (s == null) return h;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.hellomod.llm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Single-flight для однакових LLM-запитів.
+ *
+ * Перший, хто прийшов з ключем (join -> true), — лідер: він і робить запит, а потім викликає complete.
+ * Усі, хто прийшов з тим самим ключем, поки запит ще летить (join -> false), просто чекають
+ * той самий результат. Після complete ключ звільняється — наступний такий запит піде заново
+ * (або в кеш відповідей).
+ *
+ * Якщо запит лідера так і не стартував (задачу викинули з черги — гравець вийшов), handOff віддає
+ * лідерство першому, хто чекає: він і робить запит замість лідера, решта чекає далі.
+ */
+public final class LlmSingleFlight<T> {
+    private static final Logger LOGGER = LogManager.getLogger(LlmSingleFlight.class);
+
+    private static final class Waiter<T> {
+        final UUID owner;
+        final BiConsumer<T, Throwable> callback;
+
+        Waiter(UUID owner, BiConsumer<T, Throwable> callback) {
+            this.owner = owner;
+            this.callback = callback;
+        }
+    }
+
+    // Перший у списку — поточний лідер
+    private final Map<String, List<Waiter<T>>> flights = new HashMap<>();
+    private long leaders;
+    private long coalesced;
+    private long handOffs;
+
+    /** true = ти лідер (роби запит і виклич complete); false = приєднався до вже активного. */
+    public synchronized boolean join(String key, UUID owner, BiConsumer<T, Throwable> waiter) {
+        List<Waiter<T>> waiters = flights.get(key);
+        if (waiters != null) {
+            waiters.add(new Waiter<>(owner, waiter));
+            coalesced++;
+            return false;
+        }
+
+        waiters = new ArrayList<>(2);
+        waiters.add(new Waiter<>(owner, waiter));
+        flights.put(key, waiters);
+        leaders++;
+        return true;
+    }
+
+    /**
+     * Лідер (leader) не зробить запит: прибираємо з ключа всі його очікування (той самий гравець міг
+     * приєднатися до власного запиту іншою командою) і віддаємо лідерство першому іншому гравцю.
+     * Повертає нового лідера (він має зробити запит і викликати complete) або null — більше ніхто
+     * не чекав, ключ звільнено. Кожне прибране очікування отримує error.
+     * Якщо leader уже не лідер цього ключа (запит завершився і ключ зайняв хтось інший) — нічого не робимо.
+     */
+    public UUID handOff(String key, UUID leader, Throwable error) {
+        List<Waiter<T>> dropped = new ArrayList<>(1);
+        UUID next = null;
+        synchronized (this) {
+            List<Waiter<T>> waiters = flights.get(key);
+            if (waiters == null || !waiters.get(0).owner.equals(leader)) return null;
+
+            for (Iterator<Waiter<T>> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter<T> w = it.next();
+                if (w.owner.equals(leader)) {
+                    dropped.add(w);
+                    it.remove();
+                }
+            }
+            if (waiters.isEmpty()) {
+                flights.remove(key);
+            } else {
+                next = waiters.get(0).owner;
+                handOffs++;
+            }
+        }
+
+        for (Waiter<T> w : dropped) notify(w, null, error);
+        return next;
+    }
+
+    /** Роздати результат (або помилку) всім, хто чекав на ключ. */
+    public void complete(String key, T result, Throwable error) {
+        List<Waiter<T>> waiters;
+        synchronized (this) {
+            waiters = flights.remove(key);
+        }
+        if (waiters == null) return;
+
+        for (Waiter<T> w : waiters) notify(w, result, error);
+    }
+
+    private void notify(Waiter<T> w, T result, Throwable error) {
+        try {
+            w.callback.accept(result, error);
+        } catch (Exception e) {
+            LOGGER.error("[llm] single-flight waiter failed", e);
+        }
+    }
+
+    public synchronized String stats() {
+        return "single-flight: inFlight=" + flights.size() + " requests=" + leaders + " coalesced=" + coalesced
+                + " handOffs=" + handOffs;
+    }
+
+    /** Ключ з конфігу клієнта + повного промпту (64-bit FNV-1a по кожній частині). */
+    public static String key(String clientKey, String prompt) {
+        return Long.toHexString(LlmResponseCache.fnv64(clientKey)) + ":" + Long.toHexString(LlmResponseCache.fnv64(prompt)) + ":" + prompt.length();
+    }
+}
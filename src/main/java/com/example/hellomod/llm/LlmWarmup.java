@@ -0,0 +1,94 @@
+package com.example.hellomod.llm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прогрів моделі, щоб перший /ai build_local не чекав load моделі на бекенді (часто десятки секунд).
+ *
+ * - старт сервера: один прогрів усіх бекендів пулу (Config.warmup);
+ * - Ollama: keep_alive на кожному запиті (Config.keepAlive) тримає модель у пам'яті між запитами;
+ * - поки на сервері є гравці: кожні Config.keepAliveSec секунд пінгуємо бекенди, що простоювали довше,
+ *   тож модель не вивантажується, навіть якщо ніхто нічого не будує;
+ * - перший гравець після порожнього сервера — одразу прогрів (модель могла вже вивантажитись).
+ *
+ * Усе на окремому daemon-потоці "hellomod-llm-warmup", гравці цього не чекають.
+ */
+public final class LlmWarmup {
+    private static final Logger LOGGER = LogManager.getLogger(LlmWarmup.class);
+
+    private static ScheduledExecutorService executor;
+    private static ScheduledFuture<?> keepAliveTask;
+    private static int online;
+
+    private LlmWarmup() {}
+
+    /** ServerStartedEvent. */
+    public static synchronized void start() {
+        stop();
+
+        LocalLlmClient.Config cfg = LlmClientProvider.get().config();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hellomod-llm-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (cfg.warmup) {
+            executor.execute(() -> run(0));
+        }
+        if (cfg.keepAliveSec > 0) {
+            long periodSec = cfg.keepAliveSec;
+            keepAliveTask = executor.scheduleWithFixedDelay(LlmWarmup::keepAlive, periodSec, periodSec, TimeUnit.SECONDS);
+        }
+        LOGGER.info("[llm] warm-up={} keepAlive={} ping every {}s while players online",
+                cfg.warmup, cfg.keepAlive, cfg.keepAliveSec);
+    }
+
+    /** ServerStoppingEvent. */
+    public static synchronized void stop() {
+        if (keepAliveTask != null) keepAliveTask.cancel(false);
+        if (executor != null) executor.shutdownNow();
+        keepAliveTask = null;
+        executor = null;
+        online = 0;
+    }
+
+    public static synchronized void playerJoined() {
+        online++;
+        // Сервер стояв порожній — модель могла вивантажитись, прогріваємо тих, хто простоював
+        if (online == 1 && executor != null) {
+            long idleMs = keepAliveIdleMs();
+            if (idleMs > 0) executor.execute(() -> run(idleMs));
+        }
+    }
+
+    public static synchronized void playerLeft() {
+        online = Math.max(0, online - 1);
+    }
+
+    private static void keepAlive() {
+        synchronized (LlmWarmup.class) {
+            if (online == 0) return;
+        }
+        long idleMs = keepAliveIdleMs();
+        if (idleMs > 0) run(idleMs);
+    }
+
+    private static long keepAliveIdleMs() {
+        return LlmClientProvider.get().config().keepAliveSec * 1000L;
+    }
+
+    private static void run(long idleMs) {
+        try {
+            LlmBackendPool.get().warmUp(idleMs);
+        } catch (Exception e) {
+            LOGGER.warn("[llm] warm-up failed: {}", e.toString());
+        }
+    }
+}
@@ -2,20 +2,36 @@ package com.example.hellomod.llm;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.minecraftforge.fml.loading.FMLPaths;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Мінімальний LLM-клієнт: "відправити текст -> отримати текст".
@@ -26,7 +42,21 @@ import java.util.concurrent.CompletableFuture;
  *
  * Конфіг:
  * - файл: <game>/config/local_llm.json (у dev це run/config/local_llm.json)
- * - або system properties (мають пріоритет): ai.llm.mode, ai.llm.baseUrl, ai.llm.model, ai.llm.timeoutSec, ai.llm.apiKey
+ * - або system properties (мають пріоритет): ai.llm.mode, ai.llm.baseUrl, ai.llm.model, ai.llm.timeoutSec, ai.llm.apiKey,
+ *   ai.llm.stream, ai.llm.maxConcurrent, ai.llm.routing, ai.llm.hedge, ai.llm.warmup, ai.llm.keepAlive, ai.llm.grammar,
+ *   ai.llm.candidates
+ * - кілька бекендів: "backends": [{"name":"box1","baseUrl":"http://10.0.0.5:11434","weight":2,"maxConcurrent":2}, ...]
+ *   (див. LlmBackendPool)
+ *
+ * Streaming (sendStreaming): Ollama віддає NDJSON ({"response":"...","done":false} на рядок),
+ * OpenAI-compatible — SSE ("data: {...choices[0].delta.content...}", в кінці "data: [DONE]").
+ * Шматки тексту віддаємо в onChunk одразу, як прийшли — так preview можна показати до кінця генерації.
+ * Якщо onChunk повертає false — закриваємо з'єднання (бекенд припиняє генерацію і звільняється).
+ * HttpRequest.timeout покриває лише заголовки, тому тіло стріму стереже watchdog: тиша довше timeoutSec
+ * або вся генерація довше streamTotalSec — закриваємо потік і кидаємо HttpTimeoutException.
+ *
+ * Промпт — LlmPrompt: статичний префікс (system) + динамічна частина (user), щоб бекенд
+ * перевикористовував KV-кеш префікса між запитами.
  *
  * Важливо для Forge: мережеві виклики роби НЕ на серверному треді. Для цього є sendAsync(...).
  */
@@ -37,6 +67,26 @@ public final class LocalLlmClient {
         OPENAI_CHAT
     }
 
+    /** Як LlmBackendPool обирає бекенд серед здорових. */
+    public enum Routing {
+        LEAST_LOADED,
+        LOWEST_LATENCY
+    }
+
+    /**
+     * Один бекенд у пулі (config "backends": [...]).
+     * Порожні поля (null / 0) беруться з верхнього рівня конфігу.
+     */
+    public static final class Backend {
+        public String name;
+        public String baseUrl;
+        public Mode mode;
+        public String model;
+        public String apiKey;
+        public int weight = 1;
+        public int maxConcurrent;
+    }
+
     public static final class Config {
         public Mode mode = Mode.OLLAMA_GENERATE;
 
@@ -52,18 +102,119 @@ public final class LocalLlmClient {
         /** Для OPENAI_CHAT (якщо потрібно). Для локальних зазвичай порожньо. */
         public String apiKey = "";
 
-        /** Температура для OPENAI_CHAT (опційно). */
+        /** Температура (OPENAI_CHAT: temperature, Ollama: options.temperature). */
         public double temperature = 0.2;
 
-        /** Обмеження генерації для OPENAI_CHAT (щоб не висіло/не писало вічно) */
+        /** Обмеження генерації (OPENAI_CHAT: max_tokens, Ollama: options.num_predict), щоб не висіло/не писало вічно */
         public int maxTokens = 400;
 
         /** Stop marker для завершення DSL. */
         public String stopMarker = "END_DSL";
+
+        /** Потокова відповідь (NDJSON/SSE) замість одного JSON в кінці (opt-in). */
+        public boolean stream = false;
+
+        /**
+         * Стрім: жорсткий ліміт на всю генерацію, сек (0 = без ліміту). Окремо від нього між рядками
+         * не має минати більше timeoutSec — інакше з'єднання рвемо (див. sendStreaming).
+         */
+        public int streamTotalSec = 300;
+
+        /** Скільки запитів бекенд тягне паралельно (llama.cpp: --parallel N, Ollama: OLLAMA_NUM_PARALLEL). */
+        public int maxConcurrent = 1;
+
+        /** Кілька бекендів (Ollama / llama.cpp боксів). Порожньо -> один бекенд з baseUrl вище. */
+        public List<Backend> backends = new ArrayList<>();
+
+        /** Вибір бекенда в пулі. */
+        public Routing routing = Routing.LEAST_LOADED;
+
+        /** Як часто пінгувати бекенди (0 = без health check). */
+        public int healthCheckSec = 30;
+
+        /**
+         * Hedging (opt-in): якщо бекенд не відповів (у стрімі — не дав першого токена) за hedgePercentile
+         * недавньої латентності, той самий промпт іде на другий бекенд; перший валідний результат виграє.
+         */
+        public boolean hedge = false;
+        public int hedgePercentile = 95;
+        public int hedgeMinDelayMs = 300;
+
+        /** Прогріти модель на старті сервера (див. LlmWarmup). */
+        public boolean warmup = true;
+
+        /** Ollama keep_alive на кожному запиті ("30m", "-1" = назавжди; порожньо = дефолт Ollama, 5 хв). */
+        public String keepAlive = "30m";
+
+        /**
+         * Обмежена генерація: граматика з LlmPrompt іде на бекенд (OPENAI_CHAT/llama.cpp: "grammar" GBNF,
+         * Ollama: "format" JSON schema). Вимкнено за замовчуванням — не всі сервери це підтримують.
+         */
+        public boolean grammar = false;
+
+        /**
+         * Скільки варіантів відповіді генерувати на один запит (1 = як раніше).
+         * OPENAI_CHAT: параметр "n"; чого сервер не дав (llama.cpp n ігнорує) і Ollama — окремі запити.
+         * Паралельно їх іде лише стільки, скільки слотів зараз вільно і в черзі LlmRequestScheduler,
+         * і на бекенді (maxConcurrent); решта генерується хвилями в уже зайнятих слотах — ліміт бекенда
+         * не перевищується, але на зайнятому сервері кандидати йдуть довше. Кандидати не стрімляться.
+         */
+        public int candidates = 1;
+
+        /** llama.cpp server: "cache_prompt" у запиті (перевикористати KV-кеш спільного префікса). */
+        public boolean cachePrompt = true;
+
+        /** Поки на сервері є гравці — пінгувати модель, якщо бекенд простоює довше (0 = не пінгувати). */
+        public int keepAliveSec = 240;
+
+        /** Ключ для кешу клієнтів: однаковий ключ = можна перевикористати той самий клієнт. */
+        public String key() {
+            return mode + "|" + baseUrl + "|" + model + "|" + timeoutSec + "|" + Objects.hashCode(apiKey)
+                    + "|" + temperature + "|" + maxTokens + "|" + stopMarker + "|" + stream + "|" + streamTotalSec + "|" + maxConcurrent
+                    + "|" + routing + "|" + healthCheckSec + "|" + Objects.hashCode(GSON.toJson(backends))
+                    + "|" + hedge + "|" + hedgePercentile + "|" + hedgeMinDelayMs
+                    + "|" + warmup + "|" + keepAlive + "|" + keepAliveSec + "|" + cachePrompt + "|" + grammar + "|" + candidates;
+        }
+
+        /** Конфіг одного бекенда: поля верхнього рівня + те, що задано в Backend. */
+        public Config forBackend(Backend b) {
+            Config c = new Config();
+            c.mode = (b.mode != null) ? b.mode : mode;
+            c.baseUrl = (b.baseUrl != null && !b.baseUrl.isBlank()) ? b.baseUrl : baseUrl;
+            c.model = (b.model != null && !b.model.isBlank()) ? b.model : model;
+            c.timeoutSec = timeoutSec;
+            c.apiKey = (b.apiKey != null) ? b.apiKey : apiKey;
+            c.temperature = temperature;
+            c.maxTokens = maxTokens;
+            c.stopMarker = stopMarker;
+            c.stream = stream;
+            c.streamTotalSec = streamTotalSec;
+            c.maxConcurrent = (b.maxConcurrent > 0) ? b.maxConcurrent : maxConcurrent;
+            c.backends = new ArrayList<>();
+            c.routing = routing;
+            c.healthCheckSec = healthCheckSec;
+            c.hedge = hedge;
+            c.hedgePercentile = hedgePercentile;
+            c.hedgeMinDelayMs = hedgeMinDelayMs;
+            c.warmup = warmup;
+            c.keepAlive = keepAlive;
+            c.keepAliveSec = keepAliveSec;
+            c.cachePrompt = cachePrompt;
+            c.grammar = grammar;
+            c.candidates = candidates;
+            return c;
+        }
     }
 
     private static final Gson GSON = new Gson();
 
+    // Watchdog для стрімів: один потік на всі клієнти, перевірка раз на секунду
+    private static final ScheduledExecutorService STREAM_WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hellomod-llm-stream-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final HttpClient http;
     private final Config cfg;
 
@@ -76,11 +227,23 @@ public final class LocalLlmClient {
                 .build();
     }
 
-    /** Дефолтний клієнт з config/local_llm.json (або дефолти, якщо файла немає). */
+    /**
+     * Новий клієнт з config/local_llm.json (або дефолти, якщо файла немає).
+     * Для запитів бери LlmClientProvider.get() — він тримає один клієнт і його пул з'єднань.
+     */
     public static LocalLlmClient createDefault() {
+        return new LocalLlmClient(loadEffectiveConfig());
+    }
+
+    /** local_llm.json + system properties. */
+    static Config loadEffectiveConfig() {
         Config cfg = loadConfig();
         applySystemOverrides(cfg);
-        return new LocalLlmClient(cfg);
+        return cfg;
+    }
+
+    public Config config() {
+        return cfg;
     }
 
     /** Для логів/діагностики */
@@ -90,12 +253,92 @@ public final class LocalLlmClient {
                 + " model=" + cfg.model
                 + " timeoutSec=" + cfg.timeoutSec
                 + " maxTokens=" + cfg.maxTokens
-                + " stopMarker=" + cfg.stopMarker;
+                + " stopMarker=" + cfg.stopMarker
+                + " stream=" + cfg.stream
+                + " maxConcurrent=" + cfg.maxConcurrent
+                + (cfg.candidates > 1 ? " candidates=" + cfg.candidates : "")
+                + (cfg.grammar ? " grammar=" + (cfg.mode == Mode.OLLAMA_GENERATE ? "json-schema" : "gbnf") : "")
+                + (cfg.backends.isEmpty() ? "" : " backends=" + cfg.backends.size() + " routing=" + cfg.routing);
+    }
+
+    public boolean isStreaming() {
+        return cfg.stream;
+    }
+
+    /** Обмежена генерація, де відповідь — JSON за схемою (Ollama format), а не DSL-текст. */
+    public boolean usesJsonSchema() {
+        return cfg.grammar && cfg.mode == Mode.OLLAMA_GENERATE;
+    }
+
+    /** Обмежена генерація GBNF-граматикою (llama.cpp). */
+    public boolean usesGrammar() {
+        return cfg.grammar && cfg.mode == Mode.OPENAI_CHAT;
+    }
+
+    /**
+     * Health check: легкий GET (Ollama: /api/tags, OpenAI-compatible: /v1/models).
+     * true = бекенд відповів 2xx.
+     */
+    public boolean ping(Duration timeout) throws IOException, InterruptedException {
+        String path = (cfg.mode == Mode.OLLAMA_GENERATE) ? "/api/tags" : "/v1/models";
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(normalizeBase(cfg.baseUrl) + path))
+                .timeout(timeout)
+                .GET();
+        if (cfg.mode == Mode.OPENAI_CHAT && cfg.apiKey != null && !cfg.apiKey.isBlank()) {
+            b.header("Authorization", "Bearer " + cfg.apiKey.trim());
+        }
+        HttpResponse<Void> resp = http.send(b.build(), HttpResponse.BodyHandlers.discarding());
+        return resp.statusCode() >= 200 && resp.statusCode() < 300;
+    }
+
+    /**
+     * Прогрів: змусити бекенд завантажити модель, нічого не генеруючи (не викликай на server thread).
+     * Ollama: /api/generate з порожнім prompt — лише load моделі (+ keep_alive).
+     * OpenAI-compatible: chat з max_tokens=1 (llama.cpp модель і так тримає, але перший запит прогріває кеші).
+     */
+    public void warmUp() throws IOException, InterruptedException {
+        HttpRequest req;
+        if (cfg.mode == Mode.OLLAMA_GENERATE) {
+            JsonObject body = new JsonObject();
+            body.addProperty("model", cfg.model);
+            body.addProperty("prompt", "");
+            body.addProperty("stream", false);
+            addKeepAlive(body);
+            req = HttpRequest.newBuilder(URI.create(normalizeBase(cfg.baseUrl) + "/api/generate"))
+                    .timeout(Duration.ofSeconds(Math.max(5, cfg.timeoutSec)))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(body), StandardCharsets.UTF_8))
+                    .build();
+        } else {
+            JsonObject body = new JsonObject();
+            body.addProperty("model", cfg.model);
+            JsonArray messages = new JsonArray();
+            JsonObject msg = new JsonObject();
+            msg.addProperty("role", "user");
+            msg.addProperty("content", "ok");
+            messages.add(msg);
+            body.add("messages", messages);
+            body.addProperty("stream", false);
+            body.addProperty("max_tokens", 1);
+
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(normalizeBase(cfg.baseUrl) + "/v1/chat/completions"))
+                    .timeout(Duration.ofSeconds(Math.max(5, cfg.timeoutSec)))
+                    .header("Content-Type", "application/json");
+            if (cfg.apiKey != null && !cfg.apiKey.isBlank()) {
+                b.header("Authorization", "Bearer " + cfg.apiKey.trim());
+            }
+            req = b.POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(body), StandardCharsets.UTF_8)).build();
+        }
+
+        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            throw new LocalLlmException("LLM warm-up HTTP " + resp.statusCode() + ": " + trimForLog(resp.body()));
+        }
     }
 
     /** Асинхронний запит (рекомендовано викликати з команди). */
     public CompletableFuture<String> sendAsync(String prompt) {
-        HttpRequest req = buildRequest(prompt);
+        HttpRequest req = buildRequest(LlmPrompt.of(prompt), false);
         return http.sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
                 .thenApply(resp -> {
                     int code = resp.statusCode();
@@ -109,7 +352,12 @@ public final class LocalLlmClient {
 
     /** Синхронний запит (не викликай на server thread). */
     public String sendBlocking(String prompt) throws IOException, InterruptedException {
-        HttpRequest req = buildRequest(prompt);
+        return sendBlocking(LlmPrompt.of(prompt));
+    }
+
+    /** Синхронний запит зі статичним префіксом (не викликай на server thread). */
+    public String sendBlocking(LlmPrompt prompt) throws IOException, InterruptedException {
+        HttpRequest req = buildRequest(prompt, false);
         HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
         int code = resp.statusCode();
         String body = resp.body() == null ? "" : resp.body();
@@ -119,22 +367,227 @@ public final class LocalLlmClient {
         return parseResponse(body);
     }
 
-    private HttpRequest buildRequest(String prompt) {
-        String p = prompt == null ? "" : prompt;
+    /**
+     * Кілька варіантів відповіді на той самий промпт (не викликай на server thread).
+     * OPENAI_CHAT — один запит з "n"; якщо сервер повернув менше (llama.cpp) або це Ollama —
+     * решту добираємо окремими запитами, не більше parallel одночасно (стільки слотів бекенда взяв виклик).
+     * Повертаємо всі, що вдалися; помилка — лише якщо не вдався жоден.
+     */
+    public List<String> sendCandidates(LlmPrompt prompt, int n, int parallel) throws IOException, InterruptedException {
+        int want = Math.max(1, n);
+        int width = Math.max(1, parallel);
+        List<String> out = new ArrayList<>(want);
+
+        if (cfg.mode == Mode.OPENAI_CHAT) {
+            HttpResponse<String> resp = http.send(buildOpenAiChat(prompt, false, want),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            String body = resp.body() == null ? "" : resp.body();
+            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                throw new LocalLlmException("LLM HTTP " + resp.statusCode() + ": " + trimForLog(body));
+            }
+            out.addAll(parseChoices(body));
+        }
+
+        int missing = want - out.size();
+        if (missing <= 0) return out.subList(0, want);
+
+        Exception first = null;
+        // Хвилями по width запитів: одночасно не більше, ніж слотів бекенда в нашому розпорядженні
+        for (int sent = 0; sent < missing; ) {
+            int wave = Math.min(width, missing - sent);
+            List<CompletableFuture<String>> futures = new ArrayList<>(wave);
+            for (int i = 0; i < wave; i++) {
+                futures.add(http.sendAsync(buildRequest(prompt, false), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                        .thenApply(resp -> {
+                            String body = resp.body() == null ? "" : resp.body();
+                            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                                throw new LocalLlmException("LLM HTTP " + resp.statusCode() + ": " + trimForLog(body));
+                            }
+                            return parseResponse(body);
+                        }));
+            }
+            sent += wave;
+
+            try {
+                for (CompletableFuture<String> f : futures) {
+                    try {
+                        out.add(f.get());
+                    } catch (ExecutionException e) {
+                        if (first == null) first = (e.getCause() instanceof Exception ex) ? ex : e;
+                    }
+                }
+            } catch (InterruptedException e) {
+                for (CompletableFuture<String> f : futures) f.cancel(true);
+                throw e;
+            }
+        }
+
+        if (out.isEmpty()) {
+            if (first instanceof IOException io) throw io;
+            if (first instanceof LocalLlmException le) throw le;
+            throw new LocalLlmException("All " + want + " candidate requests failed.", first);
+        }
+        return out;
+    }
+
+    /**
+     * Потоковий синхронний запит (не викликай на server thread).
+     * onChunk отримує шматки тексту в порядку генерації; false = досить, рвемо запит.
+     * Повертається весь отриманий текст (до обриву включно).
+     */
+    public String sendStreaming(String prompt, Predicate<String> onChunk) throws IOException, InterruptedException {
+        return sendStreaming(LlmPrompt.of(prompt), onChunk);
+    }
+
+    /** Потоковий запит зі статичним префіксом (не викликай на server thread). */
+    public String sendStreaming(LlmPrompt prompt, Predicate<String> onChunk) throws IOException, InterruptedException {
+        HttpRequest req = buildRequest(prompt, true);
+        HttpResponse<Stream<String>> resp = http.send(req, HttpResponse.BodyHandlers.ofLines());
+        int code = resp.statusCode();
+
+        try (Stream<String> body = resp.body()) {
+            if (code < 200 || code >= 300) {
+                throw new LocalLlmException("LLM HTTP " + code + ": " + trimForLog(body.collect(Collectors.joining("\n"))));
+            }
+
+            // it.hasNext() на завислому бекенді блокує назавжди; close() з іншого потоку його будить
+            long start = System.nanoTime();
+            AtomicLong lastLine = new AtomicLong(start);
+            AtomicReference<String> expired = new AtomicReference<>();
+            long idleNanos = TimeUnit.SECONDS.toNanos(Math.max(5, cfg.timeoutSec));
+            long totalNanos = TimeUnit.SECONDS.toNanos(cfg.streamTotalSec);
+
+            ScheduledFuture<?> watchdog = STREAM_WATCHDOG.scheduleWithFixedDelay(() -> {
+                long now = System.nanoTime();
+                String why = null;
+                if (now - lastLine.get() > idleNanos) {
+                    why = "no data for " + TimeUnit.NANOSECONDS.toSeconds(idleNanos) + "s";
+                } else if (totalNanos > 0 && now - start > totalNanos) {
+                    why = "stream longer than " + cfg.streamTotalSec + "s";
+                }
+                if (why != null && expired.compareAndSet(null, why)) body.close();
+            }, 1, 1, TimeUnit.SECONDS);
+
+            StringBuilder full = new StringBuilder();
+            try {
+                Iterator<String> it = body.iterator();
+                while (it.hasNext()) {
+                    String line = it.next();
+                    lastLine.set(System.nanoTime());
+                    if (line == null || line.isBlank()) continue;
+
+                    String chunk = switch (cfg.mode) {
+                        case OLLAMA_GENERATE -> parseOllamaStreamLine(line);
+                        case OPENAI_CHAT -> parseOpenAiStreamLine(line);
+                    };
+                    if (chunk == null) break; // кінець потоку (done / [DONE])
+
+                    if (!chunk.isEmpty()) {
+                        full.append(chunk);
+                        if (!onChunk.test(chunk)) break; // close() нижче обриває з'єднання
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                if (expired.get() == null) throw e.getCause();
+            } finally {
+                watchdog.cancel(false);
+            }
+
+            // Закритий watchdog-ом потік може просто "закінчитися" — це все одно таймаут, а не кінець відповіді
+            if (expired.get() != null) {
+                throw new HttpTimeoutException("LLM stream stalled: " + expired.get()
+                        + " (" + full.length() + " chars received)");
+            }
+
+            if (full.length() == 0) {
+                throw new LocalLlmException("Empty streamed response.");
+            }
+            return full.toString();
+        }
+    }
+
+    /** NDJSON рядок Ollama -> шматок тексту; null = done. */
+    private String parseOllamaStreamLine(String line) {
+        JsonObject obj = parseStreamJson(line);
+        if (obj.has("error")) {
+            throw new LocalLlmException("Ollama error: " + obj.get("error").getAsString());
+        }
+        String chunk = obj.has("response") ? obj.get("response").getAsString() : "";
+        if (obj.has("done") && obj.get("done").getAsBoolean()) {
+            return chunk.isEmpty() ? null : chunk;
+        }
+        return chunk;
+    }
+
+    /** SSE рядок OpenAI-compatible -> шматок тексту; null = [DONE]. */
+    private String parseOpenAiStreamLine(String line) {
+        // Нас цікавлять лише "data:" рядки; "event:", ":keep-alive" тощо пропускаємо
+        if (!line.startsWith("data:")) return "";
+
+        String data = line.substring(5).trim();
+        if (data.equals("[DONE]")) return null;
+
+        JsonObject obj = parseStreamJson(data);
+        if (!obj.has("choices")) return "";
+        JsonArray choices = obj.getAsJsonArray("choices");
+        if (choices.size() == 0) return "";
+
+        JsonObject choice0 = choices.get(0).getAsJsonObject();
+        if (choice0.has("delta")) {
+            JsonObject delta = choice0.getAsJsonObject("delta");
+            if (delta.has("content") && !delta.get("content").isJsonNull()) {
+                return delta.get("content").getAsString();
+            }
+        }
+        // деякі сервери стрімлять "text" (completions-стиль)
+        if (choice0.has("text") && !choice0.get("text").isJsonNull()) {
+            return choice0.get("text").getAsString();
+        }
+        return "";
+    }
+
+    private static JsonObject parseStreamJson(String json) {
+        try {
+            JsonObject obj = GSON.fromJson(json, JsonObject.class);
+            if (obj == null) throw new LocalLlmException("Invalid JSON chunk.");
+            return obj;
+        } catch (RuntimeException e) {
+            throw new LocalLlmException("Failed to parse streamed chunk: " + trimForLog(json), e);
+        }
+    }
+
+    private HttpRequest buildRequest(LlmPrompt prompt, boolean stream) {
+        LlmPrompt p = (prompt == null) ? LlmPrompt.of("") : prompt;
 
         return switch (cfg.mode) {
-            case OLLAMA_GENERATE -> buildOllamaGenerate(p);
-            case OPENAI_CHAT -> buildOpenAiChat(p);
+            case OLLAMA_GENERATE -> buildOllamaGenerate(p, stream);
+            case OPENAI_CHAT -> buildOpenAiChat(p, stream, 1);
         };
     }
 
-    private HttpRequest buildOllamaGenerate(String prompt) {
+    private HttpRequest buildOllamaGenerate(LlmPrompt prompt, boolean stream) {
         // Ollama: POST /api/generate
-        // body: { "model": "...", "prompt": "...", "stream": false }
+        // body: { "model": "...", "system": "...", "prompt": "...", "stream": true|false }
+        // system іде першим у шаблоні моделі — однаковий system = Ollama бере KV-кеш префікса з минулого запиту
         JsonObject body = new JsonObject();
         body.addProperty("model", cfg.model);
-        body.addProperty("prompt", prompt);
-        body.addProperty("stream", false);
+        if (prompt.hasSystem()) body.addProperty("system", prompt.system);
+        body.addProperty("prompt", prompt.user);
+        body.addProperty("stream", stream);
+
+        // Без options Ollama не знає про stop marker і пише прозу після END_DSL
+        JsonObject options = new JsonObject();
+        options.addProperty("temperature", cfg.temperature);
+        options.addProperty("num_predict", cfg.maxTokens > 0 ? cfg.maxTokens : 400);
+        JsonArray stop = new JsonArray();
+        stop.add(stopMarker());
+        options.add("stop", stop);
+        body.add("options", options);
+        addKeepAlive(body);
+
+        if (cfg.grammar && prompt.jsonSchema != null) {
+            body.add("format", GSON.fromJson(prompt.jsonSchema, JsonObject.class));
+        }
 
         String url = normalizeBase(cfg.baseUrl) + "/api/generate";
 
@@ -145,30 +598,40 @@ public final class LocalLlmClient {
                 .build();
     }
 
-    private HttpRequest buildOpenAiChat(String prompt) {
+    private HttpRequest buildOpenAiChat(LlmPrompt prompt, boolean stream, int n) {
         // OpenAI-compatible: POST /v1/chat/completions
-        // body: { model, messages:[{role:"user",content:"..."}], temperature, stream:false, max_tokens, stop:[...] }
+        // body: { model, messages:[{role:"system",...},{role:"user",content:"..."}], temperature, stream, max_tokens, stop:[...] }
         JsonObject body = new JsonObject();
         body.addProperty("model", cfg.model);
 
         JsonArray messages = new JsonArray();
+        if (prompt.hasSystem()) {
+            JsonObject sys = new JsonObject();
+            sys.addProperty("role", "system");
+            sys.addProperty("content", prompt.system);
+            messages.add(sys);
+        }
         JsonObject msg = new JsonObject();
         msg.addProperty("role", "user");
-        msg.addProperty("content", prompt);
+        msg.addProperty("content", prompt.user);
         messages.add(msg);
 
         body.add("messages", messages);
+        // llama.cpp: тримати KV-кеш спільного префікса (system) між запитами; інші сервери поле ігнорують
+        if (cfg.cachePrompt) body.addProperty("cache_prompt", true);
+        // llama.cpp: GBNF — токени поза граматикою семплер просто не розглядає
+        if (cfg.grammar && prompt.grammar != null) body.addProperty("grammar", prompt.grammar);
         body.addProperty("temperature", cfg.temperature);
 
         // IMPORTANT: keep it bounded to avoid request hanging until timeout
-        body.addProperty("stream", false);
+        body.addProperty("stream", stream);
 
         int mt = cfg.maxTokens > 0 ? cfg.maxTokens : 400;
         body.addProperty("max_tokens", mt);
+        if (n > 1) body.addProperty("n", n);
 
-        String stopMarker = (cfg.stopMarker == null || cfg.stopMarker.isBlank()) ? "END_DSL" : cfg.stopMarker.trim();
         JsonArray stop = new JsonArray();
-        stop.add(stopMarker);
+        stop.add(stopMarker());
         body.add("stop", stop);
 
         String url = normalizeBase(cfg.baseUrl) + "/v1/chat/completions";
@@ -190,6 +653,17 @@ public final class LocalLlmClient {
                 .build();
     }
 
+    /** Ollama вивантажує модель після keep_alive простою — без нього кожен запит після паузи чекає load. */
+    private void addKeepAlive(JsonObject body) {
+        if (cfg.keepAlive != null && !cfg.keepAlive.isBlank()) {
+            body.addProperty("keep_alive", cfg.keepAlive.trim());
+        }
+    }
+
+    private String stopMarker() {
+        return (cfg.stopMarker == null || cfg.stopMarker.isBlank()) ? "END_DSL" : cfg.stopMarker.trim();
+    }
+
     private String parseResponse(String json) {
         String raw = json == null ? "" : json.trim();
         if (raw.isEmpty()) {
@@ -242,17 +716,44 @@ public final class LocalLlmClient {
         }
     }
 
-    private static Config loadConfig() {
-        Config cfg = new Config();
+    /** OpenAI chat: content кожного з choices (для n > 1). */
+    private List<String> parseChoices(String json) {
+        List<String> out = new ArrayList<>();
+        try {
+            JsonObject obj = GSON.fromJson(json == null ? "" : json.trim(), JsonObject.class);
+            if (obj == null || !obj.has("choices")) {
+                throw new LocalLlmException("OpenAI response missing 'choices'.");
+            }
+            for (JsonElement el : obj.getAsJsonArray("choices")) {
+                JsonObject choice = el.getAsJsonObject();
+                if (choice.has("message") && choice.getAsJsonObject("message").has("content")) {
+                    out.add(choice.getAsJsonObject("message").get("content").getAsString());
+                } else if (choice.has("text")) {
+                    out.add(choice.get("text").getAsString());
+                }
+            }
+        } catch (LocalLlmException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new LocalLlmException("Failed to parse LLM response JSON: " + e.getMessage() + " | body=" + trimForLog(json), e);
+        }
+        return out;
+    }
 
-        Path path;
+    static Path configPath() {
         try {
             // Forge стандарт: <gameDir>/config/local_llm.json (у dev це run/config)
-            path = FMLPaths.CONFIGDIR.get().resolve("local_llm.json");
+            return FMLPaths.CONFIGDIR.get().resolve("local_llm.json");
         } catch (Throwable t) {
             // fallback
-            path = Path.of("config", "local_llm.json");
+            return Path.of("config", "local_llm.json");
         }
+    }
+
+    private static Config loadConfig() {
+        Config cfg = new Config();
+
+        Path path = configPath();
 
         if (!Files.exists(path)) {
             return cfg;
@@ -271,6 +772,25 @@ public final class LocalLlmClient {
 
                 if (from.maxTokens > 0) cfg.maxTokens = from.maxTokens;
                 if (from.stopMarker != null) cfg.stopMarker = from.stopMarker;
+                cfg.stream = from.stream;
+                if (from.streamTotalSec >= 0) cfg.streamTotalSec = from.streamTotalSec;
+                if (from.maxConcurrent > 0) cfg.maxConcurrent = from.maxConcurrent;
+                if (from.backends != null) {
+                    for (Backend b : from.backends) {
+                        if (b != null && b.baseUrl != null && !b.baseUrl.isBlank()) cfg.backends.add(b);
+                    }
+                }
+                if (from.routing != null) cfg.routing = from.routing;
+                if (from.healthCheckSec >= 0) cfg.healthCheckSec = from.healthCheckSec;
+                cfg.hedge = from.hedge;
+                if (from.hedgePercentile > 0 && from.hedgePercentile <= 100) cfg.hedgePercentile = from.hedgePercentile;
+                if (from.hedgeMinDelayMs >= 0) cfg.hedgeMinDelayMs = from.hedgeMinDelayMs;
+                cfg.warmup = from.warmup;
+                if (from.keepAlive != null) cfg.keepAlive = from.keepAlive;
+                if (from.keepAliveSec >= 0) cfg.keepAliveSec = from.keepAliveSec;
+                cfg.cachePrompt = from.cachePrompt;
+                cfg.grammar = from.grammar;
+                if (from.candidates > 0) cfg.candidates = Math.min(8, from.candidates);
             }
         } catch (Exception ignored) {
             // якщо конфіг битий — працюємо з дефолтами
@@ -314,6 +834,44 @@ public final class LocalLlmClient {
 
         String stopMarker = System.getProperty("ai.llm.stopMarker");
         if (stopMarker != null && !stopMarker.isBlank()) cfg.stopMarker = stopMarker.trim();
+
+        String maxConcurrent = System.getProperty("ai.llm.maxConcurrent");
+        if (maxConcurrent != null && !maxConcurrent.isBlank()) {
+            try {
+                int t = Integer.parseInt(maxConcurrent.trim());
+                if (t > 0) cfg.maxConcurrent = t;
+            } catch (Exception ignored) { }
+        }
+
+        String routing = System.getProperty("ai.llm.routing");
+        if (routing != null && !routing.isBlank()) {
+            try {
+                cfg.routing = Routing.valueOf(routing.trim().toUpperCase());
+            } catch (Exception ignored) { }
+        }
+
+        String hedge = System.getProperty("ai.llm.hedge");
+        if (hedge != null && !hedge.isBlank()) cfg.hedge = Boolean.parseBoolean(hedge.trim());
+
+        String warmup = System.getProperty("ai.llm.warmup");
+        if (warmup != null && !warmup.isBlank()) cfg.warmup = Boolean.parseBoolean(warmup.trim());
+
+        String keepAlive = System.getProperty("ai.llm.keepAlive");
+        if (keepAlive != null) cfg.keepAlive = keepAlive.trim();
+
+        String grammar = System.getProperty("ai.llm.grammar");
+        if (grammar != null && !grammar.isBlank()) cfg.grammar = Boolean.parseBoolean(grammar.trim());
+
+        String candidates = System.getProperty("ai.llm.candidates");
+        if (candidates != null && !candidates.isBlank()) {
+            try {
+                int t = Integer.parseInt(candidates.trim());
+                if (t > 0) cfg.candidates = Math.min(8, t);
+            } catch (Exception ignored) { }
+        }
+
+        String stream = System.getProperty("ai.llm.stream");
+        if (stream != null && !stream.isBlank()) cfg.stream = Boolean.parseBoolean(stream.trim());
     }
 
     private static String normalizeBase(String baseUrl) {
@@ -329,7 +887,7 @@ public final class LocalLlmClient {
         return t;
     }
 
-    public static final class LocalLlmException extends RuntimeException {
+    public static class LocalLlmException extends RuntimeException {
         public LocalLlmException(String message) { super(message); }
         public LocalLlmException(String message, Throwable cause) { super(message, cause); }
     }
@@ -0,0 +1,58 @@
+package com.example.hellomod.ai.local;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DslCandidatesTest {
+
+    @Test
+    void validBeatsInvalid() {
+        DslCandidates.Score best = DslCandidates.pick(List.of(
+                "PLACE_BLOCK tnt 0 0 0",
+                "PLACE_BLOCK stone 0 0 0"));
+
+        assertEquals(1, best.index);
+        assertTrue(best.valid);
+    }
+
+    @Test
+    void fewerErrorsWinAmongInvalid() {
+        DslCandidates.Score best = DslCandidates.pick(List.of(
+                "PLACE_BLOCK tnt 0 0 0\nPLACE_BLOCK lava 1 0 0",
+                "PLACE_BLOCK tnt 0 0 0\nPLACE_BLOCK stone 1 0 0"));
+
+        assertEquals(1, best.index);
+        assertFalse(best.valid);
+    }
+
+    @Test
+    void smallerPlanWinsAmongValid() {
+        DslCandidates.Score best = DslCandidates.pick(List.of(
+                "BUILD_BOX 4 4 4",
+                "BUILD_BOX 2 2 2",
+                "BUILD_BOX 3 3 3"));
+
+        assertEquals(1, best.index);
+    }
+
+    @Test
+    void unparsedLosesToAnything() {
+        DslCandidates.Score best = DslCandidates.pick(List.of("", "PLACE_BLOCK tnt 0 0 0"));
+
+        assertEquals(1, best.index);
+    }
+
+    @Test
+    void tieKeepsServerOrder() {
+        DslCandidates.Score best = DslCandidates.pick(List.of(
+                "PLACE_BLOCK stone 0 0 0",
+                "PLACE_BLOCK stone 0 0 0"));
+
+        assertEquals(0, best.index);
+    }
+}
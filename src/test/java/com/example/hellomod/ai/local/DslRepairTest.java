@@ -0,0 +1,73 @@
+package com.example.hellomod.ai.local;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DslRepairTest {
+
+    @Test
+    void validScriptNeedsNoRepair() {
+        assertNull(DslRepair.find(List.of("PLACE_BLOCK stone 0 0 0", "CLEAR_AROUND 2")));
+        assertNull(DslRepair.find(List.of()));
+        assertNull(DslRepair.find(null));
+    }
+
+    @Test
+    void findsOnlyTheInvalidLines() {
+        List<String> lines = List.of(
+                "PLACE_BLOCK stone 0 0 0",
+                "PLACE_BLOCK tnt 1 0 0",
+                "CLEAR_AROUND 2",
+                "PLACE_BLOCK stone 99 0 0");
+
+        DslRepair.Plan plan = DslRepair.find(lines);
+
+        assertNotNull(plan);
+        assertEquals(List.of(1, 3), plan.indices);
+        assertEquals(List.of("PLACE_BLOCK tnt 1 0 0", "PLACE_BLOCK stone 99 0 0"), plan.lines);
+        assertEquals(2, plan.errors.size());
+    }
+
+    @Test
+    void spliceReplacesLinesInPlace() {
+        List<String> lines = List.of("PLACE_BLOCK stone 0 0 0", "PLACE_BLOCK tnt 1 0 0", "CLEAR_AROUND 2");
+        DslRepair.Plan plan = DslRepair.find(lines);
+
+        List<String> out = DslRepair.splice(lines, plan, List.of("PLACE_BLOCK stone 1 0 0"));
+
+        assertEquals(List.of("PLACE_BLOCK stone 0 0 0", "PLACE_BLOCK stone 1 0 0", "CLEAR_AROUND 2"), out);
+    }
+
+    @Test
+    void spliceRejectsWrongLineCount() {
+        List<String> lines = List.of("PLACE_BLOCK tnt 1 0 0");
+        DslRepair.Plan plan = DslRepair.find(lines);
+
+        assertNull(DslRepair.splice(lines, plan, List.of()));
+        assertNull(DslRepair.splice(lines, plan, List.of("CLEAR_AROUND 1", "CLEAR_AROUND 2")));
+        assertNull(DslRepair.splice(lines, plan, null));
+    }
+
+    @Test
+    void tooManyBadLinesIsNotRepaired() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 9; i++) lines.add("PLACE_BLOCK tnt " + i + " 0 0");
+
+        assertNull(DslRepair.find(lines));
+    }
+
+    @Test
+    void scriptWideErrorsAreNotRepaired() {
+        // кожен рядок валідний сам по собі, але PLACE_BLOCK забагато на весь скрипт
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 601; i++) lines.add("PLACE_BLOCK stone " + (i % 40) + " 0 0");
+
+        assertNull(DslRepair.find(lines));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.hellomod.ai.local;
+
+import com.example.hellomod.AiPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Правила, що не читають світ (box, clear, platform, torch), — без level і гравця. */
+class IntentRouterTest {
+
+    @Test
+    void boxRule() {
+        IntentRouter.Match m = route("Build box 5 4 6");
+
+        assertEquals("box", m.rule);
+        assertEquals(List.of("BUILD_BOX 5 4 6"), m.lines);
+        assertEquals(List.of("BUILD_BOX 3 3 3"), route("a box 3x3x3").lines);
+    }
+
+    @Test
+    void boxOverLimitGoesToLlm() {
+        assertNull(route("box " + (AiPolicy.MAX_BOX_SIZE + 1) + " 1 1"));
+        assertNull(route("box 0 1 1"));
+    }
+
+    @Test
+    void clearRule() {
+        assertEquals(List.of("CLEAR_AROUND 5"), route("clear around 5").lines);
+        assertEquals(List.of("CLEAR_AROUND 7"), route("clear 7").lines);
+        assertNull(route("clear " + (AiPolicy.MAX_CLEAR_RADIUS + 1)));
+    }
+
+    @Test
+    void defaultPlatformIsSevenBySeven() {
+        IntentRouter.Match m = route("platform");
+
+        assertEquals("platform", m.rule);
+        assertEquals(49, placeCount(m));
+    }
+
+    @Test
+    void evenPlatformHasExactSize() {
+        IntentRouter.Match m = route("a 4x4 platform");
+
+        assertEquals(16, placeCount(m));
+        assertEquals(Set.of(-1, 0, 1, 2), offsets(m, 3));
+        assertEquals(Set.of(-1, 0, 1, 2), offsets(m, 5));
+    }
+
+    @Test
+    void rectangularPlatformKeepsBothSides() {
+        IntentRouter.Match m = route("platform 5x9");
+
+        assertEquals(45, placeCount(m));
+        assertEquals(Set.of(-2, -1, 0, 1, 2), offsets(m, 3));
+        assertEquals(9, offsets(m, 5).size());
+        assertEquals(m.lines, route("5x9 floor").lines);
+    }
+
+    @Test
+    void platformOverPlaceLimitGoesToLlm() {
+        // 30x30 = 900 PLACE_BLOCK > MAX_PLACE_BLOCKS: DRY-RUN відхилив би — хай будує LLM
+        assertNull(route("platform 30"));
+        assertNull(route("platform 20x40"));
+
+        IntentRouter.Match biggest = route("platform 24");
+        assertNotNull(biggest);
+        assertTrue(placeCount(biggest) <= AiPolicy.MAX_PLACE_BLOCKS);
+    }
+
+    @Test
+    void torchRule() {
+        assertEquals(List.of("PLACE_BLOCK torch 0 2 0"), route("Place a torch above me!").lines);
+        assertEquals("torch", route("torch").rule);
+    }
+
+    @Test
+    void unknownRequestsGoToLlm() {
+        assertNull(route("a small castle with towers"));
+        assertNull(route(""));
+        assertNull(route(null));
+    }
+
+    private static IntentRouter.Match route(String thing) {
+        return IntentRouter.route(null, null, thing);
+    }
+
+    private static long placeCount(IntentRouter.Match m) {
+        return m.lines.stream().filter(l -> l.startsWith("PLACE_BLOCK")).count();
+    }
+
+    /** Множина значень token-го токена в рядках PLACE_BLOCK (3 = dx, 5 = dz). */
+    private static Set<Integer> offsets(IntentRouter.Match m, int token) {
+        Set<Integer> out = new HashSet<>();
+        for (String l : m.lines) {
+            if (!l.startsWith("PLACE_BLOCK")) continue;
+            out.add(Integer.parseInt(l.split(" ")[token - 1]));
+        }
+        return out;
+    }
+}
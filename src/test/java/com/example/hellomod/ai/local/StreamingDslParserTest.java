@@ -0,0 +1,83 @@
+package com.example.hellomod.ai.local;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingDslParserTest {
+
+    @Test
+    void emitsCompletedLinesAcrossChunkBoundaries() {
+        List<String> seen = new ArrayList<>();
+        StreamingDslParser p = new StreamingDslParser(seen::add);
+
+        assertTrue(p.feed("BEGIN_DSL\nPLACE_BLO"));
+        assertTrue(seen.isEmpty());
+        assertTrue(p.feed("CK stone 1 0 0\nCLEAR_"));
+        assertEquals(List.of("PLACE_BLOCK stone 1 0 0"), seen);
+        assertTrue(p.feed("AROUND 2\n"));
+
+        assertEquals(List.of("PLACE_BLOCK stone 1 0 0", "CLEAR_AROUND 2"), seen);
+        assertEquals(seen, p.emittedLines());
+    }
+
+    @Test
+    void stopsAtEndMarker() {
+        List<String> seen = new ArrayList<>();
+        StreamingDslParser p = new StreamingDslParser(seen::add);
+
+        assertFalse(p.feed("BEGIN_DSL\nCLEAR_AROUND 2\nEND_DSL\nPLACE_BLOCK stone 0 0 0\n"));
+
+        assertTrue(p.ended());
+        assertNull(p.abortReason());
+        assertEquals(List.of("CLEAR_AROUND 2"), seen);
+        assertFalse(p.feed("more"));
+    }
+
+    @Test
+    void abortsOnInvalidLineWithoutEmittingIt() {
+        List<String> seen = new ArrayList<>();
+        StreamingDslParser p = new StreamingDslParser(seen::add);
+
+        assertTrue(p.feed("BEGIN_DSL\nPLACE_BLOCK stone 0 0 0\n"));
+        assertFalse(p.feed("PLACE_BLOCK tnt 0 0 0\nPLACE_BLOCK stone 1 0 0\n"));
+
+        assertNotNull(p.abortReason());
+        assertFalse(p.ended());
+        assertEquals(List.of("PLACE_BLOCK stone 0 0 0"), seen);
+    }
+
+    @Test
+    void withoutMarkersSkipsChatter() {
+        List<String> seen = new ArrayList<>();
+        StreamingDslParser p = new StreamingDslParser(seen::add);
+
+        p.feed("Sure, here is your build:\nBUILD_BOX 3 3 3\n```\n");
+
+        assertNull(p.abortReason());
+        assertEquals(List.of("BUILD_BOX 3 3 3"), seen);
+    }
+
+    @Test
+    void finishFlushesTailAndMatchesFullParse() {
+        String text = "BEGIN_DSL\nCLEAR_AROUND 2\nBUILD_BOX 2 2 2";
+        List<String> seen = new ArrayList<>();
+        StreamingDslParser p = new StreamingDslParser(seen::add);
+
+        p.feed(text.substring(0, 7));
+        p.feed(text.substring(7));
+        LlmResponseParser.ParseResult streamed = p.finish();
+        LlmResponseParser.ParseResult whole = LlmResponseParser.parse(text);
+
+        assertEquals(List.of("CLEAR_AROUND 2", "BUILD_BOX 2 2 2"), seen);
+        assertTrue(streamed.ok());
+        assertEquals(whole.dslLines(), streamed.dslLines());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.hellomod.dsl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DslCompilerTest {
+
+    @Test
+    void skipsBlankLinesAndComments() {
+        DslProgram p = DslCompiler.compile(List.of("", "   ", "# comment", "// comment", "CLEAR_AROUND 3"));
+
+        assertEquals(1, p.size());
+        assertEquals(DslProgram.OP_CLEAR_AROUND, p.op(0));
+        assertEquals(3, p.arg(0, 0));
+    }
+
+    @Test
+    void commandsAreCaseInsensitiveAndTolerateTrailingSemicolon() {
+        DslProgram p = DslCompiler.compile(List.of("place_block Stone 1 -2 3;", "Build_Box 2 3 4 ;"));
+
+        assertEquals(2, p.size());
+        assertEquals(DslProgram.OP_PLACE_BLOCK, p.op(0));
+        assertEquals(DslProgram.OK, p.status(0));
+        assertEquals("stone", p.block(0));
+        assertEquals(1, p.arg(0, 1));
+        assertEquals(-2, p.arg(0, 2));
+        assertEquals(3, p.arg(0, 3));
+        assertEquals("place_block Stone 1 -2 3", p.line(0));
+
+        assertEquals(DslProgram.OP_BUILD_BOX, p.op(1));
+        assertEquals(4, p.arg(1, 2));
+    }
+
+    @Test
+    void paletteIsSharedAndNamespaceStripped() {
+        DslProgram p = DslCompiler.compile(List.of(
+                "PLACE_BLOCK minecraft:oak_planks 0 0 0",
+                "PLACE_BLOCK OAK_PLANKS 1 0 0",
+                "PLACE_BLOCK torch 2 0 0"));
+
+        assertEquals(2, p.paletteSize());
+        assertEquals(p.arg(0, 0), p.arg(1, 0));
+        assertEquals("oak_planks", p.block(0));
+        assertEquals("torch", p.block(2));
+        assertEquals("minecraft:oak_planks", p.rawBlockToken(0));
+    }
+
+    @Test
+    void reportsArityAndNumberErrors() {
+        DslProgram p = DslCompiler.compile(List.of(
+                "PLACE_BLOCK stone 1 2",
+                "CLEAR_AROUND x",
+                "BUILD_BOX 1 2 3 4",
+                "BUILD_BOX 1 two 3"));
+
+        assertEquals(DslProgram.BAD_ARITY, p.status(0));
+        assertEquals(DslProgram.BAD_NUMBER, p.status(1));
+        assertEquals(DslProgram.BAD_ARITY, p.status(2));
+        assertEquals(DslProgram.BAD_NUMBER, p.status(3));
+    }
+
+    @Test
+    void unknownCommandsAreKeptAsInstructions() {
+        DslProgram p = DslCompiler.compile(List.of("explode 5"));
+
+        assertEquals(1, p.size());
+        assertEquals(DslProgram.OP_UNKNOWN, p.op(0));
+        assertEquals("EXPLODE", p.commandToken(0));
+    }
+
+    @Test
+    void nullInputAndNullLinesCompileToEmpty() {
+        assertTrue(DslCompiler.compile(null).isEmpty());
+        assertTrue(DslCompiler.compile(Arrays.asList(null, null)).isEmpty());
+    }
+
+    @Test
+    void tabsSeparateTokens() {
+        DslProgram p = DslCompiler.compile(List.of("CLEAR_AROUND\t7"));
+
+        assertEquals(DslProgram.OK, p.status(0));
+        assertEquals(7, p.arg(0, 0));
+    }
+}
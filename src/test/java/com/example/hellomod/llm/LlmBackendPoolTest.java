@@ -0,0 +1,187 @@
+package com.example.hellomod.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LlmBackendPool проти локальних stub-серверів, що прикидаються Ollama (/api/generate, stream=false).
+ */
+class LlmBackendPoolTest {
+
+    private final List<StubBackend> stubs = new ArrayList<>();
+
+    @AfterEach
+    void stopStubs() {
+        for (StubBackend s : stubs) s.stop();
+    }
+
+    @Test
+    void failsOverToNextBackend() throws Exception {
+        StubBackend a = stub("a", 500);
+        StubBackend b = stub("b", 200);
+        LlmBackendPool pool = LlmBackendPool.create(config(a, b));
+
+        assertEquals("from b", generate(pool));
+        assertEquals(1, a.hits.get());
+        assertEquals(1, b.hits.get());
+    }
+
+    @Test
+    void throwsLastErrorWhenAllBackendsFail() throws Exception {
+        StubBackend a = stub("a", 500);
+        StubBackend b = stub("b", 503);
+        LlmBackendPool pool = LlmBackendPool.create(config(a, b));
+
+        assertThrows(LocalLlmClient.LocalLlmException.class, () -> generate(pool));
+        assertEquals(1, a.hits.get());
+        assertEquals(1, b.hits.get());
+    }
+
+    @Test
+    void openBreakerFailsFastWithoutTouchingBackend() throws Exception {
+        StubBackend a = stub("a", 500);
+        LlmBackendPool pool = LlmBackendPool.create(config(a));
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(LocalLlmClient.LocalLlmException.class, () -> generate(pool));
+        }
+        assertTrue(pool.unavailableForMs() > 0);
+
+        assertThrows(LlmBackendPool.BackendUnavailableException.class, () -> generate(pool));
+        assertEquals(5, a.hits.get());
+    }
+
+    @Test
+    void hedgesToSecondBackendWhenPrimaryIsSilent() throws Exception {
+        AtomicBoolean stallNext = new AtomicBoolean();
+        StubBackend a = stub("a", 200, stallNext);
+        StubBackend b = stub("b", 200, stallNext);
+        LocalLlmClient.Config cfg = config(a, b);
+        cfg.hedge = true;
+        cfg.hedgeMinDelayMs = 100;
+        LlmBackendPool pool = LlmBackendPool.create(cfg);
+
+        // hedging вмикається лише після HEDGE_MIN_SAMPLES відповідей
+        for (int i = 0; i < 8; i++) generate(pool);
+        assertTrue(String.join("\n", pool.stats()).contains("fired=0"));
+
+        stallNext.set(true);
+        long start = System.nanoTime();
+        String result = generate(pool);
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+
+        assertTrue(result.startsWith("from "));
+        assertTrue(ms < 2000, "hedged call took " + ms + "ms");
+        String stats = String.join("\n", pool.stats());
+        assertTrue(stats.contains("fired=1 hedgeWins=1"), stats);
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws Exception {
+        StubBackend a = stub("a", 200);
+        StubBackend b = stub("b", 200);
+        LocalLlmClient.Config cfg = config(a, b);
+        cfg.hedge = true;
+        cfg.hedgeMinDelayMs = 1000;
+        LlmBackendPool pool = LlmBackendPool.create(cfg);
+
+        for (int i = 0; i < 12; i++) generate(pool);
+
+        assertEquals(12, a.hits.get() + b.hits.get());
+        assertTrue(String.join("\n", pool.stats()).contains("fired=0"));
+    }
+
+    private static String generate(LlmBackendPool pool) throws Exception {
+        return pool.call((client, attempt) -> client.sendBlocking("prompt"), r -> true);
+    }
+
+    private StubBackend stub(String name, int status) throws IOException {
+        return stub(name, status, new AtomicBoolean());
+    }
+
+    private StubBackend stub(String name, int status, AtomicBoolean stallNext) throws IOException {
+        StubBackend s = new StubBackend(name, status, stallNext);
+        stubs.add(s);
+        return s;
+    }
+
+    private static LocalLlmClient.Config config(StubBackend... stubs) {
+        LocalLlmClient.Config cfg = new LocalLlmClient.Config();
+        cfg.mode = LocalLlmClient.Mode.OLLAMA_GENERATE;
+        cfg.timeoutSec = 5;
+        cfg.healthCheckSec = 0;
+        cfg.keepAlive = "";
+        for (StubBackend s : stubs) {
+            LocalLlmClient.Backend b = new LocalLlmClient.Backend();
+            b.name = s.name;
+            b.baseUrl = s.baseUrl();
+            cfg.backends.add(b);
+        }
+        return cfg;
+    }
+
+    /** Ollama-подібний бекенд: фіксований HTTP-статус, stallNext — перший запит, що його побачить, мовчить 3 с. */
+    private static final class StubBackend {
+        final String name;
+        final AtomicInteger hits = new AtomicInteger();
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        StubBackend(String name, int status, AtomicBoolean stallNext) throws IOException {
+            this.name = name;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/generate", ex -> {
+                hits.incrementAndGet();
+                if (stallNext.compareAndSet(true, false)) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        ex.close();
+                        return;
+                    }
+                }
+                respond(ex, status, status == 200
+                        ? "{\"response\":\"from " + name + "\",\"done\":true}"
+                        : "{\"error\":\"boom\"}");
+            });
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        private static void respond(HttpExchange ex, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.hellomod.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmCircuitBreakerTest {
+
+    private static final long T0 = 1_000_000L;
+    private static final long OPEN_MS = 30_000L;
+
+    @Test
+    void opensAfterMinCallsOfFailures() {
+        LlmCircuitBreaker b = new LlmCircuitBreaker(1000);
+
+        for (int i = 0; i < 4; i++) b.onFailure(T0);
+        assertEquals(LlmCircuitBreaker.State.CLOSED, b.state());
+
+        b.onFailure(T0);
+        assertEquals(LlmCircuitBreaker.State.OPEN, b.state());
+        assertFalse(b.allows(T0 + 1));
+        assertEquals(OPEN_MS - 1, b.retryInMs(T0 + 1));
+    }
+
+    @Test
+    void halfOpenLetsExactlyOneProbeThrough() {
+        LlmCircuitBreaker b = openBreaker(1000);
+
+        assertTrue(b.allows(T0 + OPEN_MS));
+        assertEquals(LlmCircuitBreaker.State.HALF_OPEN, b.state());
+        b.onAcquire(T0 + OPEN_MS);
+        assertFalse(b.allows(T0 + OPEN_MS));
+
+        b.onSuccess(10, T0 + OPEN_MS + 10);
+        assertEquals(LlmCircuitBreaker.State.CLOSED, b.state());
+        assertTrue(b.allows(T0 + OPEN_MS + 10));
+    }
+
+    @Test
+    void probeInFlightReportsRetryTime() {
+        LlmCircuitBreaker b = openBreaker(1000, 5000);
+
+        assertTrue(b.allows(T0 + OPEN_MS));
+        assertEquals(0, b.retryInMs(T0 + OPEN_MS));
+        b.onAcquire(T0 + OPEN_MS);
+
+        // інший запит проба не пускає — і "доступно через 0 мс" казати не можна
+        assertFalse(b.allows(T0 + OPEN_MS + 1000));
+        assertEquals(4000, b.retryInMs(T0 + OPEN_MS + 1000));
+        assertEquals(1, b.retryInMs(T0 + OPEN_MS + 60_000));
+
+        b.onSuccess(10, T0 + OPEN_MS + 1000);
+        assertEquals(0, b.retryInMs(T0 + OPEN_MS + 1000));
+    }
+
+    @Test
+    void slowProbeReopens() {
+        LlmCircuitBreaker b = openBreaker(1000);
+
+        assertTrue(b.allows(T0 + OPEN_MS));
+        b.onAcquire(T0 + OPEN_MS);
+        b.onSuccess(5000, T0 + OPEN_MS + 5000);
+
+        assertEquals(LlmCircuitBreaker.State.OPEN, b.state());
+        assertFalse(b.allows(T0 + OPEN_MS + 5001));
+    }
+
+    @Test
+    void ignoredProbeFreesTheSlot() {
+        LlmCircuitBreaker b = openBreaker(1000);
+
+        assertTrue(b.allows(T0 + OPEN_MS));
+        b.onAcquire(T0 + OPEN_MS);
+        b.onIgnored();
+
+        assertTrue(b.allows(T0 + OPEN_MS + 1));
+    }
+
+    @Test
+    void slowThresholdFollowsBackendTimeout() {
+        // timeoutSec=60 -> повільний лише той, хто чекав > 48 с до першого токена
+        LlmCircuitBreaker healthy = LlmCircuitBreaker.forTimeout(60);
+        for (int i = 0; i < 5; i++) healthy.onSuccess(45_000, T0);
+        assertEquals(LlmCircuitBreaker.State.CLOSED, healthy.state());
+
+        LlmCircuitBreaker stalling = LlmCircuitBreaker.forTimeout(60);
+        for (int i = 0; i < 5; i++) stalling.onSuccess(50_000, T0);
+        assertEquals(LlmCircuitBreaker.State.OPEN, stalling.state());
+    }
+
+    @Test
+    void successesKeepFailureRateBelowThreshold() {
+        LlmCircuitBreaker b = new LlmCircuitBreaker(1000);
+
+        for (int i = 0; i < 6; i++) b.onSuccess(10, T0);
+        for (int i = 0; i < 4; i++) b.onFailure(T0);
+
+        assertEquals(LlmCircuitBreaker.State.CLOSED, b.state());
+    }
+
+    private static LlmCircuitBreaker openBreaker(long slowCallMs) {
+        return openBreaker(slowCallMs, slowCallMs);
+    }
+
+    private static LlmCircuitBreaker openBreaker(long slowCallMs, long probeTimeoutMs) {
+        LlmCircuitBreaker b = new LlmCircuitBreaker(slowCallMs, probeTimeoutMs);
+        for (int i = 0; i < 5; i++) b.onFailure(T0);
+        assertEquals(LlmCircuitBreaker.State.OPEN, b.state());
+        return b;
+    }
+}
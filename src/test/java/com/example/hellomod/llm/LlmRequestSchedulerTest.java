@@ -0,0 +1,119 @@
+package com.example.hellomod.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Без local_llm.json пул має один бекенд з maxConcurrent=1 — тобто рівно один слот:
+ * поки працює blocker, усе інше чекає в черзі.
+ */
+class LlmRequestSchedulerTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID owner = UUID.randomUUID();
+
+    @Test
+    void servesPlayersRoundRobin() throws Exception {
+        CountDownLatch release = occupySlot();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+
+        LlmRequestScheduler.Ticket a1 = LlmRequestScheduler.submit(alice, record(order, "A1", done), null);
+        LlmRequestScheduler.submit(alice, record(order, "A2", done), null);
+        LlmRequestScheduler.Ticket b1 = LlmRequestScheduler.submit(bob, record(order, "B1", done), null);
+
+        assertEquals(1, a1.position);
+        assertEquals(2, b1.position);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("A1", "B1", "A2"), order);
+    }
+
+    @Test
+    void rejectsThirdRequestFromSamePlayer() throws Exception {
+        CountDownLatch release = occupySlot();
+        try {
+            assertTrue(LlmRequestScheduler.submit(alice, () -> {}, null).accepted);
+            assertTrue(LlmRequestScheduler.submit(alice, () -> {}, null).accepted);
+
+            LlmRequestScheduler.Ticket third = LlmRequestScheduler.submit(alice, () -> {}, null);
+            assertFalse(third.accepted);
+            assertNotNull(third.rejectReason);
+
+            // інший гравець не страждає від чужого ліміту
+            assertTrue(LlmRequestScheduler.submit(bob, () -> {}, null).accepted);
+        } finally {
+            LlmRequestScheduler.cancel(alice);
+            LlmRequestScheduler.cancel(bob);
+            release.countDown();
+        }
+    }
+
+    @Test
+    void cancelDropsQueuedTasksWithoutRunningThem() throws Exception {
+        CountDownLatch release = occupySlot();
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger dropped = new AtomicInteger();
+
+        LlmRequestScheduler.submit(alice, ran::incrementAndGet, dropped::incrementAndGet);
+        LlmRequestScheduler.submit(alice, ran::incrementAndGet, dropped::incrementAndGet);
+
+        assertEquals(2, LlmRequestScheduler.cancel(alice));
+        assertEquals(2, dropped.get());
+        assertEquals(0, LlmRequestScheduler.cancel(alice));
+
+        CountDownLatch after = new CountDownLatch(1);
+        LlmRequestScheduler.submit(bob, after::countDown, null);
+        release.countDown();
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void busySlotsCannotBeReservedForExtraRequests() throws Exception {
+        CountDownLatch release = occupySlot();
+        try {
+            assertEquals(0, LlmRequestScheduler.reserve(3));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /** Займає єдиний слот, поки не відпустять повернутий latch. */
+    private CountDownLatch occupySlot() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LlmRequestScheduler.Ticket t = LlmRequestScheduler.submit(owner, () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null);
+        assertTrue(t.accepted);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static Runnable record(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+}
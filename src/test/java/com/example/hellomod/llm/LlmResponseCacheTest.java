@@ -0,0 +1,66 @@
+package com.example.hellomod.llm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LlmResponseCacheTest {
+
+    @AfterEach
+    void clearCache() {
+        LlmResponseCache.clear();
+    }
+
+    @Test
+    void normalizesThing() {
+        assertEquals("small platform", LlmResponseCache.normalizeThing("  Small   Platform! "));
+        assertEquals("tower", LlmResponseCache.normalizeThing("TOWER?!"));
+        assertEquals("", LlmResponseCache.normalizeThing(null));
+    }
+
+    @Test
+    void equivalentRequestsShareKey() {
+        assertEquals(
+                LlmResponseCache.key("cfg", "Small platform", "ctx"),
+                LlmResponseCache.key("cfg", "  small   PLATFORM.", "ctx"));
+    }
+
+    @Test
+    void keyDependsOnConfigAndWorldContext() {
+        String base = LlmResponseCache.key("cfg", "tower", "ctx");
+
+        assertNotEquals(base, LlmResponseCache.key("other-cfg", "tower", "ctx"));
+        assertNotEquals(base, LlmResponseCache.key("cfg", "tower", "ctx2"));
+    }
+
+    @Test
+    void returnsStoredResponse() {
+        String key = LlmResponseCache.key("cfg", "tower", "ctx");
+
+        assertNull(LlmResponseCache.get(key));
+        LlmResponseCache.put(key, "BEGIN_DSL\nBUILD_BOX 3 5 3\nEND_DSL");
+
+        assertEquals("BEGIN_DSL\nBUILD_BOX 3 5 3\nEND_DSL", LlmResponseCache.get(key));
+        assertNull(LlmResponseCache.get(LlmResponseCache.key("cfg", "tower", "other-ctx")));
+    }
+
+    @Test
+    void blankResponsesAreNotStored() {
+        String key = LlmResponseCache.key("cfg", "wall", "ctx");
+
+        LlmResponseCache.put(key, "   ");
+        LlmResponseCache.put(key, null);
+
+        assertNull(LlmResponseCache.get(key));
+    }
+
+    @Test
+    void fnv64IsStable() {
+        // еталон 64-bit FNV-1a для "a"
+        assertEquals(0xaf63dc4c8601ec8cL, LlmResponseCache.fnv64("a"));
+        assertEquals(0xcbf29ce484222325L, LlmResponseCache.fnv64(""));
+    }
+}
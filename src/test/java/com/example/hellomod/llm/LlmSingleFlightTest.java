@@ -0,0 +1,131 @@
+package com.example.hellomod.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmSingleFlightTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @Test
+    void firstJoinLeadsAndOthersCoalesce() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        List<String> got = new ArrayList<>();
+
+        assertTrue(flight.join("k", alice, (r, e) -> got.add("alice:" + r)));
+        assertFalse(flight.join("k", bob, (r, e) -> got.add("bob:" + r)));
+        flight.complete("k", "dsl", null);
+
+        assertEquals(List.of("alice:dsl", "bob:dsl"), got);
+        // ключ звільнено — наступний запит знову лідер
+        assertTrue(flight.join("k", bob, (r, e) -> {}));
+    }
+
+    @Test
+    void differentKeysDoNotCoalesce() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+
+        assertTrue(flight.join("a", alice, (r, e) -> {}));
+        assertTrue(flight.join("b", bob, (r, e) -> {}));
+    }
+
+    @Test
+    void handOffPromotesNextWaiter() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        RuntimeException dropped = new RuntimeException("dropped");
+        List<Object> aliceGot = new ArrayList<>();
+        List<Object> bobGot = new ArrayList<>();
+
+        flight.join("k", alice, (r, e) -> aliceGot.add(e));
+        flight.join("k", bob, (r, e) -> bobGot.add(r));
+
+        assertEquals(bob, flight.handOff("k", alice, dropped));
+        assertEquals(List.of(dropped), aliceGot);
+        assertTrue(bobGot.isEmpty());
+
+        flight.complete("k", "dsl", null);
+        assertEquals(List.of("dsl"), bobGot);
+        assertEquals(List.of(dropped), aliceGot);
+    }
+
+    @Test
+    void handOffWithoutWaitersFreesKey() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        RuntimeException dropped = new RuntimeException("dropped");
+        List<Throwable> got = new ArrayList<>();
+
+        flight.join("k", alice, (r, e) -> got.add(e));
+
+        assertNull(flight.handOff("k", alice, dropped));
+        assertEquals(1, got.size());
+        assertSame(dropped, got.get(0));
+        assertTrue(flight.join("k", bob, (r, e) -> {}));
+    }
+
+    @Test
+    void handOffDropsEveryWaiterOfTheLeavingPlayer() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        RuntimeException dropped = new RuntimeException("dropped");
+        List<String> got = new ArrayList<>();
+
+        // build_local і build_local_exec того самого гравця — два очікування під одним UUID
+        flight.join("k", alice, (r, e) -> got.add("alice-preview"));
+        flight.join("k", alice, (r, e) -> got.add("alice-exec"));
+        flight.join("k", bob, (r, e) -> got.add("bob:" + r));
+
+        assertEquals(bob, flight.handOff("k", alice, dropped));
+        assertEquals(List.of("alice-preview", "alice-exec"), got);
+
+        flight.complete("k", "dsl", null);
+        assertEquals(List.of("alice-preview", "alice-exec", "bob:dsl"), got);
+    }
+
+    @Test
+    void handOffNeverPromotesTheSameOwner() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        List<Throwable> got = new ArrayList<>();
+
+        flight.join("k", alice, (r, e) -> got.add(e));
+        flight.join("k", alice, (r, e) -> got.add(e));
+
+        assertNull(flight.handOff("k", alice, new RuntimeException("dropped")));
+        assertEquals(2, got.size());
+        assertTrue(flight.join("k", bob, (r, e) -> {}));
+    }
+
+    @Test
+    void staleHandOffLeavesNewFlightAlone() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        List<Object> bobGot = new ArrayList<>();
+
+        flight.join("k", bob, (r, e) -> bobGot.add(e));
+        flight.join("k", alice, (r, e) -> {});
+
+        // alice не лідер цього ключа — передавати нічого
+        assertNull(flight.handOff("k", alice, new RuntimeException("dropped")));
+        assertTrue(bobGot.isEmpty());
+        assertFalse(flight.join("k", bob, (r, e) -> {}));
+    }
+
+    @Test
+    void failingWaiterDoesNotStarveOthers() {
+        LlmSingleFlight<String> flight = new LlmSingleFlight<>();
+        List<String> got = new ArrayList<>();
+
+        flight.join("k", alice, (r, e) -> { throw new IllegalStateException("boom"); });
+        flight.join("k", bob, (r, e) -> got.add(r));
+        flight.complete("k", "dsl", null);
+
+        assertEquals(List.of("dsl"), got);
+    }
+}
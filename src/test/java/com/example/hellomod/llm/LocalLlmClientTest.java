@@ -0,0 +1,84 @@
+package com.example.hellomod.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** LocalLlmClient проти stub-сервера Ollama (/api/generate, stream=false). */
+class LocalLlmClientTest {
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/generate", ex -> {
+            int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(100);
+                byte[] body = ("{\"response\":\"BUILD_BOX 2 2 " + hits.incrementAndGet() + "\",\"done\":true}")
+                        .getBytes(StandardCharsets.UTF_8);
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                ex.close();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void candidatesNeverExceedGrantedParallelism() throws Exception {
+        List<String> out = client().sendCandidates(LlmPrompt.of("prompt"), 4, 2);
+
+        assertEquals(4, out.size());
+        assertEquals(4, hits.get());
+        assertEquals(2, maxActive.get());
+    }
+
+    @Test
+    void singleSlotGeneratesCandidatesOneByOne() throws Exception {
+        List<String> out = client().sendCandidates(LlmPrompt.of("prompt"), 3, 1);
+
+        assertEquals(3, out.size());
+        assertEquals(1, maxActive.get());
+    }
+
+    private LocalLlmClient client() {
+        LocalLlmClient.Config cfg = new LocalLlmClient.Config();
+        cfg.mode = LocalLlmClient.Mode.OLLAMA_GENERATE;
+        cfg.baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        cfg.timeoutSec = 5;
+        cfg.keepAlive = "";
+        return new LocalLlmClient(cfg);
+    }
+}